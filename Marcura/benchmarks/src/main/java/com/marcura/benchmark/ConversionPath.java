@@ -0,0 +1,5 @@
+package com.marcura.benchmark;
+
+public enum ConversionPath {
+    MATRIX, CACHE, QUERY, RESPONSE_CACHE
+}
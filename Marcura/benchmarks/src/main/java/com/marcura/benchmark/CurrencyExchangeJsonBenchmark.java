@@ -0,0 +1,58 @@
+package com.marcura.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.marcura.model.api.response.CurrencyExchange;
+import com.marcura.model.api.response.CurrencyExchangeResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyExchangeJsonBenchmark {
+
+    @Param({"100"})
+    public int batchSize;
+
+    private final CurrencyExchange currencyExchange = new CurrencyExchange("EUR", "PLN",
+                                                                           new BigDecimal("4.49781250"));
+    private ObjectWriter objectWriter;
+    private List<CurrencyExchangeResult> currencyExchangeResults;
+
+    @Setup
+    public void setUp() {
+        final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        objectWriter = objectMapper.writer();
+        currencyExchangeResults = Collections.nCopies(batchSize, new CurrencyExchangeResult(currencyExchange, null));
+    }
+
+    @Benchmark
+    public byte[] writeCurrencyExchange() throws JsonProcessingException {
+        return objectWriter.writeValueAsBytes(currencyExchange);
+    }
+
+    @Benchmark
+    public byte[] writeCurrencyExchangeResults() throws JsonProcessingException {
+        return objectWriter.writeValueAsBytes(currencyExchangeResults);
+    }
+}
@@ -0,0 +1,50 @@
+package com.marcura.benchmark;
+
+import com.marcura.model.api.response.CurrencyExchange;
+import com.marcura.model.cache.ConversionResponse;
+import com.marcura.service.CurrencyExchangeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyExchangeServiceBenchmark {
+
+    @Param({"MATRIX", "CACHE", "QUERY", "RESPONSE_CACHE"})
+    public ConversionPath conversionPath;
+
+    public String from = " eur";
+    public String to = "PLN ";
+
+    private CurrencyExchangeService currencyExchangeService;
+
+    @Setup
+    public void setUp() {
+        currencyExchangeService = CurrencyExchangeServiceFixture.create(conversionPath);
+    }
+
+    @Benchmark
+    public CurrencyExchange getExchangeRate() {
+        return currencyExchangeService.getExchangeRate(from, to, CurrencyExchangeServiceFixture.EXCHANGE_DATE);
+    }
+
+    @Benchmark
+    public ConversionResponse getExchangeRateResponse() {
+        return currencyExchangeService.getExchangeRateResponse(from, to, CurrencyExchangeServiceFixture.EXCHANGE_DATE);
+    }
+}
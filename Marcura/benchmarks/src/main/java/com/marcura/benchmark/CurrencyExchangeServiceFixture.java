@@ -0,0 +1,198 @@
+package com.marcura.benchmark;
+
+import com.marcura.model.entity.CurrencySpread;
+import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.projection.AsOfExchangeRate;
+import com.marcura.model.projection.ConversionQuote;
+import com.marcura.repository.CurrencyExchangeRateRepository;
+import com.marcura.repository.CurrencySpreadRepository;
+import com.marcura.repository.ExchangeRateJdbcRepository;
+import com.marcura.service.ConversionMetrics;
+import com.marcura.service.ConversionResponseCache;
+import com.marcura.service.CrossRateMatrixCache;
+import com.marcura.service.CurrencyExchangeService;
+import com.marcura.service.CurrencyOrdinals;
+import com.marcura.service.CurrencySpreadCache;
+import com.marcura.service.ExchangeRateAccessCounter;
+import com.marcura.service.ExchangeRateCache;
+import com.marcura.service.ExchangeRateUpsertService;
+import com.marcura.service.IngestionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wires {@link CurrencyExchangeService} and its caches by hand, with repositories answering from memory, so that
+ * benchmarks measure the conversion itself and not Spring or the database.
+ */
+final class CurrencyExchangeServiceFixture {
+    static final String BASE_CURRENCY = "USD";
+    static final LocalDate EXCHANGE_DATE = LocalDate.of(2023, 1, 2);
+    static final Map<String, BigDecimal> RATES = Map.of("EUR", new BigDecimal("0.800000"),
+                                                        "PLN", new BigDecimal("3.700000"),
+                                                        "JPY", new BigDecimal("130.000000"),
+                                                        "GBP", new BigDecimal("0.750000"));
+    private static final Map<String, BigDecimal> SPREADS = Map.of("JPY", new BigDecimal("3.25"));
+
+    private CurrencyExchangeServiceFixture() {
+    }
+
+    static CurrencyExchangeService create(ConversionPath conversionPath) {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final ApplicationEventPublisher applicationEventPublisher = event -> {
+        };
+        final var currencyExchangeRateRepository = currencyExchangeRateRepository();
+        final var exchangeRateJdbcRepository = new InMemoryExchangeRateJdbcRepository();
+
+        final var currencySpreadCache = new CurrencySpreadCache(currencySpreadRepository(), applicationEventPublisher);
+        ReflectionTestUtils.setField(currencySpreadCache, "baseCurrency", BASE_CURRENCY);
+        ReflectionTestUtils.setField(currencySpreadCache, "spreadBase", BigDecimal.ZERO);
+        ReflectionTestUtils.setField(currencySpreadCache, "spreadDefault", new BigDecimal("2.75"));
+        ReflectionTestUtils.invokeMethod(currencySpreadCache, "init");
+
+        final var exchangeRateCache = new ExchangeRateCache(currencyExchangeRateRepository, meterRegistry);
+        ReflectionTestUtils.setField(exchangeRateCache, "enabled", conversionPath == ConversionPath.CACHE);
+        ReflectionTestUtils.setField(exchangeRateCache, "maximumSize", 1000L);
+        ReflectionTestUtils.setField(exchangeRateCache, "expireAfterAccess", Duration.ofHours(1));
+        ReflectionTestUtils.invokeMethod(exchangeRateCache, "init");
+
+        final var currencyOrdinals = new CurrencyOrdinals();
+        final var crossRateMatrixCache = new CrossRateMatrixCache(exchangeRateJdbcRepository, currencyOrdinals,
+                                                                  currencySpreadCache, meterRegistry);
+        ReflectionTestUtils.setField(crossRateMatrixCache, "enabled",
+                                     conversionPath == ConversionPath.MATRIX
+                                             || conversionPath == ConversionPath.RESPONSE_CACHE);
+        ReflectionTestUtils.setField(crossRateMatrixCache, "memoryBudget", DataSize.ofMegabytes(64));
+        ReflectionTestUtils.setField(crossRateMatrixCache, "baseCurrency", BASE_CURRENCY);
+
+        final var exchangeRateAccessCounter = new ExchangeRateAccessCounter(exchangeRateJdbcRepository,
+                                                                            meterRegistry);
+        final var conversionMetrics = new ConversionMetrics(meterRegistry);
+        ReflectionTestUtils.setField(conversionMetrics, "hotCurrencyPairs", 20);
+        ReflectionTestUtils.invokeMethod(conversionMetrics, "registerMetrics");
+
+        final var conversionResponseCache = new ConversionResponseCache(Jackson2ObjectMapperBuilder.json().build(),
+                                                                          meterRegistry);
+        ReflectionTestUtils.setField(conversionResponseCache, "enabled",
+                                     conversionPath == ConversionPath.RESPONSE_CACHE);
+        ReflectionTestUtils.setField(conversionResponseCache, "maximumSize", 10_000L);
+        ReflectionTestUtils.setField(conversionResponseCache, "expireAfterWrite", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(conversionResponseCache, "todayMaxAge", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(conversionResponseCache, "baseCurrency", BASE_CURRENCY);
+        ReflectionTestUtils.invokeMethod(conversionResponseCache, "init");
+
+        final var currencyExchangeService = new CurrencyExchangeService(currencyExchangeRateRepository,
+                                                                        exchangeRateJdbcRepository,
+                                                                        null,
+                                                                        exchangeRateCache,
+                                                                        crossRateMatrixCache,
+                                                                        currencyOrdinals,
+                                                                        currencySpreadCache,
+                                                                        exchangeRateAccessCounter,
+                                                                        conversionMetrics,
+                                                                        new IngestionMetrics(meterRegistry),
+                                                                        null,
+                                                                        new ExchangeRateUpsertService(
+                                                                                exchangeRateJdbcRepository,
+                                                                                applicationEventPublisher),
+                                                                        conversionResponseCache);
+        ReflectionTestUtils.setField(currencyExchangeService, "baseCurrency", BASE_CURRENCY);
+        return currencyExchangeService;
+    }
+
+    private static long rateId(String currency) {
+        return currency.hashCode() & 0xffffL;
+    }
+
+    private static CurrencyExchangeRateRepository currencyExchangeRateRepository() {
+        return (CurrencyExchangeRateRepository) Proxy.newProxyInstance(
+                CurrencyExchangeRateRepository.class.getClassLoader(),
+                new Class<?>[]{CurrencyExchangeRateRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findConversionQuote" -> conversionQuote((String) args[1], (String) args[2]);
+                    case "findByCurrencyFromAndCurrencyTo" -> exchangeRates((String) args[1]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static CurrencySpreadRepository currencySpreadRepository() {
+        return (CurrencySpreadRepository) Proxy.newProxyInstance(
+                CurrencySpreadRepository.class.getClassLoader(),
+                new Class<?>[]{CurrencySpreadRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findLatest" -> SPREADS.entrySet().stream().map(entry -> {
+                        final var currencySpread = new CurrencySpread();
+                        currencySpread.setCurrency(entry.getKey());
+                        currencySpread.setSpread(entry.getValue());
+                        return currencySpread;
+                    }).toList();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static ConversionQuote conversionQuote(String currencyFrom, String currencyTo) {
+        return new ConversionQuote() {
+            @Override
+            public Long getFromRateId() {
+                return RATES.containsKey(currencyFrom) ? rateId(currencyFrom) : null;
+            }
+
+            @Override
+            public BigDecimal getFromRate() {
+                return RATES.get(currencyFrom);
+            }
+
+            @Override
+            public Long getToRateId() {
+                return RATES.containsKey(currencyTo) ? rateId(currencyTo) : null;
+            }
+
+            @Override
+            public BigDecimal getToRate() {
+                return RATES.get(currencyTo);
+            }
+        };
+    }
+
+    private static List<ExchangeRate> exchangeRates(String currencyTo) {
+        if (!RATES.containsKey(currencyTo)) {
+            return List.of();
+        }
+        final var exchangeRate = new ExchangeRate();
+        exchangeRate.setId(rateId(currencyTo));
+        exchangeRate.setCurrencyFrom(BASE_CURRENCY);
+        exchangeRate.setCurrencyTo(currencyTo);
+        exchangeRate.setRate(RATES.get(currencyTo));
+        exchangeRate.setExchangeDate(EXCHANGE_DATE);
+        return List.of(exchangeRate);
+    }
+
+    private static final class InMemoryExchangeRateJdbcRepository extends ExchangeRateJdbcRepository {
+
+        InMemoryExchangeRateJdbcRepository() {
+            super(null);
+        }
+
+        @Override
+        public void incrementAccessCounters(Map<Long, Long> accessCountDeltas) {
+        }
+
+        @Override
+        public List<AsOfExchangeRate> findAsOfExchangeRatesForAllCurrencies(String currencyFrom, LocalDate date) {
+            return RATES.entrySet()
+                        .stream()
+                        .map(entry -> new AsOfExchangeRate(entry.getKey(), date, rateId(entry.getKey()),
+                                                           entry.getValue()))
+                        .toList();
+        }
+    }
+}
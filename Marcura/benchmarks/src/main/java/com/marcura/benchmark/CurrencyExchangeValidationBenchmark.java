@@ -0,0 +1,64 @@
+package com.marcura.benchmark;
+
+import com.marcura.controller.validation.CurrencyExchangeValidator;
+import com.marcura.model.api.request.NewCurrencyExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyExchangeValidationBenchmark {
+    public NewCurrencyExchange newCurrencyExchange = new NewCurrencyExchange(
+            "EUR", "PLN", new BigDecimal("4.625000"), LocalDate.of(2023, 1, 2));
+
+    private final CurrencyExchangeValidator currencyExchangeValidator = new CurrencyExchangeValidator();
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public void validateCurrencyExchange() {
+        currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(newCurrencyExchange.from(),
+                                                                           newCurrencyExchange.to());
+        currencyExchangeValidator.validateDateIsNotInFuture(newCurrencyExchange.date());
+        currencyExchangeValidator.validateExchangeRateIsNotNegative(newCurrencyExchange.exchange());
+        currencyExchangeValidator.validateExchangeRateNotOverflow(newCurrencyExchange.exchange());
+        currencyExchangeValidator.validateExchangeRateScaleNotOverflow(newCurrencyExchange.exchange());
+    }
+
+    @Benchmark
+    public void validateConstraints(Blackhole blackhole) {
+        blackhole.consume(validator.validate(newCurrencyExchange));
+    }
+}
@@ -0,0 +1,41 @@
+package com.marcura.benchmark;
+
+import com.marcura.service.CurrencyNames;
+import com.marcura.service.ExchangeRateCalculator;
+import com.marcura.service.FixedPointRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeRateArithmeticBenchmark {
+    public long exchangeRateFrom = FixedPointRate.of(new BigDecimal("0.800000"));
+    public long exchangeRateTo = FixedPointRate.of(new BigDecimal("3.700000"));
+    public int spreadFrom = 275;
+    public int spreadTo = 325;
+    public String currency = " eur ";
+
+    @Benchmark
+    public BigDecimal calculateExchange() {
+        return ExchangeRateCalculator.calculateExchange(exchangeRateFrom, exchangeRateTo, spreadFrom, spreadTo);
+    }
+
+    @Benchmark
+    public String sanitizeCurrencyName() {
+        return CurrencyNames.sanitize(currency);
+    }
+}
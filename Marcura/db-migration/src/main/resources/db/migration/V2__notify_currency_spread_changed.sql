@@ -0,0 +1,15 @@
+CREATE FUNCTION notify_currency_spread_changed_task()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM pg_notify('currency_spread_changed', TG_OP);
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+CREATE TRIGGER notify_currency_spread_task_changed
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+    ON
+        currency_spread
+    FOR EACH STATEMENT
+EXECUTE PROCEDURE notify_currency_spread_changed_task();
@@ -0,0 +1,22 @@
+CREATE TABLE IF NOT EXISTS ingestion_run
+(
+    id                     BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    job                    VARCHAR(255)             NOT NULL,
+    scheduled_at           TIMESTAMP WITH TIME ZONE NOT NULL,
+    instance               VARCHAR(255)             NOT NULL,
+    status                 VARCHAR(32)              NOT NULL,
+    started_at             TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_at            TIMESTAMP WITH TIME ZONE,
+    inserted               INTEGER,
+    updated                INTEGER,
+    unchanged              INTEGER,
+    currencies_from        VARCHAR(255)[],
+    currencies_to          VARCHAR(255)[],
+    earliest_exchange_date DATE,
+    latest_exchange_date   DATE,
+    error                  TEXT
+);
+CREATE UNIQUE INDEX ingestion_run_job_scheduled_at_unique_index
+    ON ingestion_run (job, scheduled_at);
+CREATE INDEX ingestion_run_finished_at_index
+    ON ingestion_run (finished_at);
@@ -0,0 +1,28 @@
+CREATE TABLE IF NOT EXISTS exchange_rate_backfill
+(
+    id          BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    base        VARCHAR(255)             NOT NULL,
+    start_date  DATE                     NOT NULL,
+    end_date    DATE                     NOT NULL,
+    status      VARCHAR(32)              NOT NULL,
+    created_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_at TIMESTAMP WITH TIME ZONE
+);
+CREATE INDEX exchange_rate_backfill_unfinished_index
+    ON exchange_rate_backfill (base, start_date, end_date) WHERE status <> 'SUCCEEDED';
+
+CREATE TABLE IF NOT EXISTS exchange_rate_backfill_chunk
+(
+    backfill_id           BIGINT                   NOT NULL REFERENCES exchange_rate_backfill (id) ON DELETE CASCADE,
+    start_date            DATE                     NOT NULL,
+    end_date              DATE                     NOT NULL,
+    status                VARCHAR(32)              NOT NULL,
+    attempts              INTEGER                  NOT NULL DEFAULT 0,
+    inserted              INTEGER,
+    updated               INTEGER,
+    unchanged             INTEGER,
+    changed_currencies_to VARCHAR(255)[],
+    finished_at           TIMESTAMP WITH TIME ZONE,
+    error                 TEXT,
+    PRIMARY KEY (backfill_id, start_date)
+);
@@ -0,0 +1,127 @@
+-- Yearly range partitions on exchange_date. Rows of years without a partition land in the default partition and
+-- are moved out by create_currency_exchange_rate_partitions. PostgreSQL 12 supports neither identity columns nor
+-- BEFORE row triggers on partitioned tables, so ids come from a plain sequence and every partition gets its own
+-- updated_at trigger.
+ALTER TABLE currency_exchange_rate
+    RENAME TO currency_exchange_rate_unpartitioned;
+ALTER INDEX currency_exchange_rate_currency_from_to_date_desc_unique_index
+    RENAME TO currency_exchange_rate_unpartitioned_unique_index;
+ALTER TABLE currency_exchange_rate_unpartitioned
+    ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE currency_exchange_rate_id_seq AS INT;
+
+CREATE TABLE currency_exchange_rate
+(
+    id             INT                      NOT NULL DEFAULT nextval('currency_exchange_rate_id_seq'),
+    currency_from  VARCHAR(255)             NOT NULL,
+    currency_to    VARCHAR(255)             NOT NULL,
+    rate           NUMERIC(19, 6)           NOT NULL,
+    exchange_date  DATE                     NOT NULL,
+    access_counter INTEGER                  NOT NULL DEFAULT 0,
+    created_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, exchange_date)
+) PARTITION BY RANGE (exchange_date);
+ALTER SEQUENCE currency_exchange_rate_id_seq OWNED BY currency_exchange_rate.id;
+CREATE UNIQUE INDEX currency_exchange_rate_currency_from_to_date_desc_unique_index
+    ON currency_exchange_rate (currency_from, currency_to, exchange_date DESC);
+CREATE INDEX currency_exchange_rate_exchange_date_brin_index
+    ON currency_exchange_rate USING brin (exchange_date);
+
+CREATE TABLE currency_exchange_rate_default PARTITION OF currency_exchange_rate DEFAULT;
+CREATE TRIGGER update_currency_exchange_rate_task_updated_at
+    BEFORE UPDATE
+    ON
+        currency_exchange_rate_default
+    FOR EACH ROW
+EXECUTE PROCEDURE update_updated_at_currency_exchange_rate_task();
+
+-- Creates the missing yearly partitions for the years from from_date to to_date, moving their rows out of the
+-- default partition, and returns how many were created.
+CREATE FUNCTION create_currency_exchange_rate_partitions(from_date DATE, to_date DATE)
+    RETURNS INTEGER AS
+$$
+DECLARE
+    partition_year  INTEGER;
+    partition_name  TEXT;
+    partition_start DATE;
+    partition_end   DATE;
+    created         INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('currency_exchange_rate_partitions'));
+    FOR partition_year IN extract(YEAR FROM from_date)::INTEGER .. extract(YEAR FROM to_date)::INTEGER
+        LOOP
+            partition_name := format('currency_exchange_rate_y%s', partition_year);
+            IF to_regclass(partition_name) IS NOT NULL THEN
+                CONTINUE;
+            END IF;
+            partition_start := make_date(partition_year, 1, 1);
+            partition_end := make_date(partition_year + 1, 1, 1);
+            LOCK TABLE currency_exchange_rate_default IN EXCLUSIVE MODE;
+            EXECUTE format('CREATE TABLE %I (LIKE currency_exchange_rate INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                           partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM currency_exchange_rate_default ' ||
+                           'WHERE exchange_date >= %L AND exchange_date < %L RETURNING *) ' ||
+                           'INSERT INTO %I SELECT * FROM moved', partition_start, partition_end, partition_name);
+            EXECUTE format('ALTER TABLE currency_exchange_rate ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, partition_start, partition_end);
+            EXECUTE format('CREATE TRIGGER update_currency_exchange_rate_task_updated_at BEFORE UPDATE ON %I ' ||
+                           'FOR EACH ROW EXECUTE PROCEDURE update_updated_at_currency_exchange_rate_task()',
+                           partition_name);
+            created := created + 1;
+        END LOOP;
+    RETURN created;
+END;
+$$ language 'plpgsql';
+
+-- Detaches the yearly partitions that end on or before before_date. Detached partitions are kept as
+-- currency_exchange_rate_archive_y<year> tables unless drop_detached is set. Returns the detached years.
+CREATE FUNCTION detach_currency_exchange_rate_partitions(before_date DATE, drop_detached BOOLEAN)
+    RETURNS SETOF INTEGER AS
+$$
+DECLARE
+    partition_name TEXT;
+    partition_year INTEGER;
+    archive_name   TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('currency_exchange_rate_partitions'));
+    FOR partition_name IN SELECT child.relname
+                          FROM pg_inherits
+                                   JOIN pg_class AS child ON child.oid = pg_inherits.inhrelid
+                          WHERE pg_inherits.inhparent = 'currency_exchange_rate'::REGCLASS
+                            AND child.relname ~ '^currency_exchange_rate_y[0-9]{4}$'
+                          ORDER BY child.relname
+        LOOP
+            partition_year := substring(partition_name FROM '[0-9]{4}$')::INTEGER;
+            IF make_date(partition_year + 1, 1, 1) > before_date THEN
+                CONTINUE;
+            END IF;
+            EXECUTE format('ALTER TABLE currency_exchange_rate DETACH PARTITION %I', partition_name);
+            archive_name := 'currency_exchange_rate_archive_y' || partition_year;
+            IF drop_detached THEN
+                EXECUTE format('DROP TABLE %I', partition_name);
+            ELSIF to_regclass(archive_name) IS NULL THEN
+                EXECUTE format('ALTER TABLE %I RENAME TO %I', partition_name, archive_name);
+            ELSE
+                -- the year was archived before and received rows since
+                EXECUTE format('INSERT INTO %I SELECT * FROM %I', archive_name, partition_name);
+                EXECUTE format('DROP TABLE %I', partition_name);
+            END IF;
+            RETURN NEXT partition_year;
+        END LOOP;
+END;
+$$ language 'plpgsql';
+
+SELECT create_currency_exchange_rate_partitions(coalesce(min(exchange_date), current_date),
+                                                (current_date + INTERVAL '1 year')::DATE)
+FROM currency_exchange_rate_unpartitioned;
+
+INSERT INTO currency_exchange_rate (id, currency_from, currency_to, rate, exchange_date, access_counter, created_at,
+                                    updated_at)
+SELECT id, currency_from, currency_to, rate, exchange_date, access_counter, created_at, updated_at
+FROM currency_exchange_rate_unpartitioned;
+SELECT setval('currency_exchange_rate_id_seq', coalesce(max(id), 0) + 1, false)
+FROM currency_exchange_rate_unpartitioned;
+
+DROP TABLE currency_exchange_rate_unpartitioned;
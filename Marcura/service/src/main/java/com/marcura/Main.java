@@ -2,10 +2,16 @@ package com.marcura;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @SpringBootApplication
 public class Main {
     public static void main(String[] args) {
-        SpringApplication.run(Main.class, args);
+        final var context = SpringApplication.run(Main.class, args);
+        // the training run of the cds build profile records the classes loaded up to readiness, see pom.xml
+        if (Boolean.getBoolean("cds.training")) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.marcura.client;
+
+import com.marcura.model.flixer.LatestExchangeRate;
+import com.marcura.model.flixer.TimeseriesExchangeRates;
+import feign.Headers;
+import feign.Param;
+import feign.RequestLine;
+
+/**
+ * Fixer's historical endpoints, for backfills. Backfills retry every call with backoff and within their rate limit,
+ * so unlike {@link FixerClient} this client does not retry on its own.
+ */
+public interface BackfillFixerClient {
+
+    /**
+     * Same shape as {@code /latest}, for a single past date given as yyyy-MM-dd.
+     */
+    @Headers("apikey: {accessKey}")
+    @RequestLine("GET /{date}?access_key={accessKey}&base={base}")
+    LatestExchangeRate getHistoricalExchangeRate(@Param("accessKey") String accessKey,
+                                                 @Param("date") String date,
+                                                 @Param("base") String base);
+
+    /**
+     * Daily rates for every date of the range, both ends inclusive. Fixer accepts at most 365 days per call.
+     */
+    @Headers("apikey: {accessKey}")
+    @RequestLine("GET /timeseries?access_key={accessKey}&start_date={startDate}&end_date={endDate}&base={base}")
+    TimeseriesExchangeRates getTimeseriesExchangeRates(@Param("accessKey") String accessKey,
+                                                       @Param("startDate") String startDate,
+                                                       @Param("endDate") String endDate,
+                                                       @Param("base") String base);
+}
@@ -0,0 +1,43 @@
+package com.marcura.client;
+
+import com.marcura.exception.FixerUnavailableException;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+
+/**
+ * Counts I/O errors, 5xx and 429 responses as failures of the wrapped client. Other statuses, including 4xx caused
+ * by the request itself, mean that Fixer answered and count as successes.
+ */
+@RequiredArgsConstructor
+class CircuitBreakingClient implements Client {
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int INTERNAL_SERVER_ERROR = 500;
+
+    private final Client delegate;
+    private final FixerCircuitBreaker circuitBreaker;
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        final var retryIn = circuitBreaker.tryAcquirePermission();
+        if (!retryIn.isZero()) {
+            throw new FixerUnavailableException(retryIn);
+        }
+        final Response response;
+        try {
+            response = delegate.execute(request, options);
+        } catch (IOException | RuntimeException ex) {
+            circuitBreaker.onFailure();
+            throw ex;
+        }
+        if (response.status() == TOO_MANY_REQUESTS || response.status() >= INTERNAL_SERVER_ERROR) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+        return response;
+    }
+}
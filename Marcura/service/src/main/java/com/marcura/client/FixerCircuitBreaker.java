@@ -0,0 +1,88 @@
+package com.marcura.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * Stops calling Fixer after {@code failure-threshold} consecutive failed calls. While open every call fails fast;
+ * after {@code open-duration} a single trial call is let through, which closes the circuit if it succeeds and
+ * opens it again otherwise.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FixerCircuitBreaker {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${api.fixer.circuit-breaker.failure-threshold}")
+    private int failureThreshold;
+
+    @Value("${api.fixer.circuit-breaker.open-duration}")
+    private Duration openDuration;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("fixer.circuit.state", this, breaker -> breaker.getState().ordinal())
+             .description("Fixer circuit breaker state: 0 closed, 1 open, 2 half-open")
+             .register(meterRegistry);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return how long calls stay suspended, or {@link Duration#ZERO} if the call may go ahead
+     */
+    synchronized Duration tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return Duration.ZERO;
+        }
+        final var openFor = Duration.ofNanos(System.nanoTime() - openedAt);
+        if (state == State.OPEN && openFor.compareTo(openDuration) >= 0) {
+            state = State.HALF_OPEN;
+            return Duration.ZERO;
+        }
+        // while half-open the trial call is in flight, other callers keep failing fast
+        return state == State.HALF_OPEN ? openDuration : openDuration.minus(openFor);
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Fixer circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Fixer circuit opened after {} consecutive failures", consecutiveFailures);
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized void reset() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
@@ -0,0 +1,36 @@
+package com.marcura.client;
+
+import feign.Capability;
+import feign.Client;
+import feign.Util;
+import feign.codec.Decoder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Puts {@link FixerCircuitBreaker} in front of the HTTP client, below Feign's retries, so that every attempt is
+ * counted and none is sent while the circuit is open. Bodies are read to the end before decoding, because OkHttp
+ * only commits a response to its cache once the body is exhausted, and Jackson stops at the closing brace.
+ */
+@RequiredArgsConstructor
+public class FixerClientCapability implements Capability {
+    private final FixerCircuitBreaker fixerCircuitBreaker;
+
+    @Override
+    public Client enrich(Client client) {
+        return new CircuitBreakingClient(client, fixerCircuitBreaker);
+    }
+
+    @Override
+    public Decoder enrich(Decoder decoder) {
+        return (response, type) -> {
+            if (response.body() == null) {
+                return decoder.decode(response, type);
+            }
+            final byte[] body;
+            try (final var inputStream = response.body().asInputStream()) {
+                body = Util.toByteArray(inputStream);
+            }
+            return decoder.decode(response.toBuilder().body(body).build(), type);
+        };
+    }
+}
@@ -1,34 +1,124 @@
 package com.marcura.client.configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcura.client.BackfillFixerClient;
+import com.marcura.client.FixerCircuitBreaker;
 import com.marcura.client.FixerClient;
+import com.marcura.client.FixerClientCapability;
 import feign.Feign;
 import feign.Logger;
+import feign.Request;
+import feign.Retryer;
 import feign.jackson.JacksonDecoder;
 import feign.jackson.JacksonEncoder;
+import feign.micrometer.MicrometerCapability;
 import feign.okhttp.OkHttpClient;
 import feign.slf4j.Slf4jLogger;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Protocol;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @RequiredArgsConstructor
 public class FixerClientConfig {
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final FixerCircuitBreaker fixerCircuitBreaker;
 
     @Value("${api.fixer.url}")
     private String serviceUrl;
 
+    @Value("${api.fixer.http.connect-timeout}")
+    private Duration connectTimeout;
+
+    @Value("${api.fixer.http.read-timeout}")
+    private Duration readTimeout;
+
+    @Value("${api.fixer.http.call-timeout}")
+    private Duration callTimeout;
+
+    @Value("${api.fixer.http.max-idle-connections}")
+    private int maxIdleConnections;
+
+    @Value("${api.fixer.http.keep-alive}")
+    private Duration keepAlive;
+
+    @Value("${api.fixer.http.http2}")
+    private boolean http2;
+
+    @Value("${api.fixer.http.cache.directory:}")
+    private String cacheDirectory;
+
+    @Value("${api.fixer.http.cache.max-size}")
+    private DataSize cacheMaxSize;
+
+    @Value("${api.fixer.http.retry.max-attempts}")
+    private int retryMaxAttempts;
+
+    @Value("${api.fixer.http.retry.period}")
+    private Duration retryPeriod;
+
+    @Value("${api.fixer.http.retry.max-period}")
+    private Duration retryMaxPeriod;
+
     @Bean
     public FixerClient fixerClient() {
+        return fixerClient(FixerClient.class,
+                           retryMaxAttempts > 1
+                                   ? new Retryer.Default(retryPeriod.toMillis(), retryMaxPeriod.toMillis(),
+                                                         retryMaxAttempts)
+                                   : Retryer.NEVER_RETRY);
+    }
+
+    @Bean
+    public BackfillFixerClient backfillFixerClient() {
+        return fixerClient(BackfillFixerClient.class, Retryer.NEVER_RETRY);
+    }
+
+    /**
+     * OkHttp asks for gzip and inflates responses on its own. HTTP/2 is negotiated over TLS only, plain HTTP
+     * stays on HTTP/1.1. With a cache directory set, responses are stored on disk and revalidated with
+     * conditional requests as far as Fixer's caching headers allow. Shared by the clients, a cache directory takes
+     * a single cache.
+     */
+    @Bean
+    public okhttp3.OkHttpClient fixerOkHttpClient() {
+        final var builder = new okhttp3.OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .callTimeout(callTimeout)
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1));
+        if (!cacheDirectory.isBlank()) {
+            builder.cache(new Cache(new File(cacheDirectory), cacheMaxSize.toBytes()));
+        }
+        return builder.build();
+    }
+
+    private <T> T fixerClient(Class<T> type, Retryer retryer) {
         return Feign.builder()
-                    .client(new OkHttpClient())
+                    .client(new OkHttpClient(fixerOkHttpClient()))
+                    // Feign hands these to OkHttp on every call, overriding the timeouts of the client itself
+                    .options(new Request.Options(connectTimeout.toMillis(), TimeUnit.MILLISECONDS,
+                                                 readTimeout.toMillis(), TimeUnit.MILLISECONDS, true))
+                    .retryer(retryer)
                     .encoder(new JacksonEncoder(objectMapper))
                     .decoder(new JacksonDecoder(objectMapper))
                     .logger(new Slf4jLogger(FixerClient.class))
                     .logLevel(Logger.Level.BASIC)
-                    .target(FixerClient.class, serviceUrl);
+                    .addCapability(new MicrometerCapability(meterRegistry))
+                    .addCapability(new FixerClientCapability(fixerCircuitBreaker))
+                    .target(type, serviceUrl);
     }
 }
@@ -0,0 +1,158 @@
+package com.marcura.configuration;
+
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections of a healthy replica, picked round-robin, inside read-only transactions and connections of
+ * the primary otherwise. A replica is healthy when its last check connected and found it streaming from the primary
+ * and replaying at most {@code maxLag} behind. For {@code maxLag} after this instance changed rates every read stays on
+ * the primary, so that it sees its own writes. Has to sit behind a {@link LazyConnectionDataSourceProxy}, the read-only
+ * flag of a transaction is only known after the transaction manager asked for its connection.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    // the status is hidden from users without pg_read_all_stats, to them a running WAL receiver is all there is
+    private static final String REPLICATION_LAG_SQL =
+            "SELECT EXISTS (SELECT FROM pg_stat_wal_receiver WHERE status = 'streaming' OR status IS NULL), " +
+                    "CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+                    "ELSE coalesce(extract(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private volatile long primaryReadsUntilNanos = System.nanoTime();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagNanos = maxLag.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final var replica = selectReplica();
+        if (replica != null) {
+            try {
+                return replica.dataSource().getConnection();
+            } catch (SQLException ex) {
+                markDown(replica, ex.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getHealthyReplicas() {
+        return replicas.stream().filter(Replica::isHealthy).count();
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onExchangeRatesChanged(ExchangeRatesChangedEvent event) {
+        // runs before the caches rebuild from the changed rates
+        primaryReadsUntilNanos = System.nanoTime() + maxLagNanos;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.health-check-interval}")
+    public void checkReplicas() {
+        for (final var replica : replicas) {
+            try (final var connection = replica.dataSource().getConnection();
+                 final var statement = connection.createStatement();
+                 final var resultSet = statement.executeQuery(REPLICATION_LAG_SQL)) {
+                resultSet.next();
+                // having replayed all it received says nothing about its lag once it stopped receiving
+                final var streaming = resultSet.getBoolean(1);
+                final var lag = Duration.ofMillis((long) (resultSet.getDouble(2) * 1000));
+                if (!streaming) {
+                    markDown(replica, "not streaming from the primary");
+                } else if (lag.toNanos() > maxLagNanos) {
+                    markDown(replica, "replaying " + lag + " behind");
+                } else if (!replica.healthy) {
+                    log.info("Routing read-only transactions to replica {}", replica.name());
+                    replica.healthy = true;
+                }
+            } catch (SQLException ex) {
+                markDown(replica, ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (final var replica : replicas) {
+            if (replica.dataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Replica selectReplica() {
+        if (replicas.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || System.nanoTime() - primaryReadsUntilNanos < 0) {
+            return null;
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            final var replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            log.warn("Routing reads of replica {} to the primary: {}", replica.name(), reason);
+            replica.healthy = false;
+        }
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+    }
+}
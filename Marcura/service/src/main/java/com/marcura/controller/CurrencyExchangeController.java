@@ -1,33 +1,72 @@
 package com.marcura.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcura.controller.format.ExchangeRateFormat;
+import com.marcura.controller.reader.ExchangeRateImportReader;
+import com.marcura.controller.validation.CurrencyExchangeValidator;
+import com.marcura.controller.writer.ExchangeRateExportWriter;
 import com.marcura.exception.CurrencyExchangeDateSetToFutureException;
-import com.marcura.exception.CurrencyExchangeRateIsNegativeOrZeroException;
-import com.marcura.exception.CurrencyExchangeRateOverflowException;
-import com.marcura.exception.CurrencyExchangeRateScaleOverflowException;
+import com.marcura.exception.DateRangeTooLongException;
 import com.marcura.exception.DuplicateCurrencyExchangeException;
+import com.marcura.exception.InvalidCurrencyPairException;
+import com.marcura.exception.TooManyCurrencyExchangeQueriesException;
+import com.marcura.exception.TooManyCurrencyPairsException;
+import com.marcura.model.ApiError;
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.api.request.CurrencyExchangeQuery;
+import com.marcura.model.api.request.ExchangeRateStatsInterval;
 import com.marcura.model.api.request.NewCurrencyExchange;
 import com.marcura.model.api.response.CurrencyExchange;
+import com.marcura.model.api.response.CurrencyExchangeResult;
+import com.marcura.model.api.response.ExchangeRateBackfillStatus;
+import com.marcura.model.api.response.ExchangeRateImportResult;
+import com.marcura.model.api.response.ExchangeRateStats;
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
 import com.marcura.service.CurrencyExchangeService;
+import com.marcura.service.ExchangeRateBackfillService;
+import com.marcura.service.ExchangeRateExportService;
+import com.marcura.service.ExchangeRateImportService;
+import com.marcura.service.ExchangeRateStatsService;
+import com.marcura.service.ExchangeRateStreamService;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
 import javax.validation.constraints.NotBlank;
-import java.math.BigDecimal;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 
-import static com.marcura.model.entity.ExchangeRate.MAX_VALUE_LENGTH;
-import static com.marcura.model.entity.ExchangeRate.SCALE;
-
 @Slf4j
 @Validated
 @RestController
@@ -35,65 +74,206 @@ import static com.marcura.model.entity.ExchangeRate.SCALE;
 @RequiredArgsConstructor
 public class CurrencyExchangeController {
     private final CurrencyExchangeService currencyExchangeService;
+    private final CurrencyExchangeValidator currencyExchangeValidator;
+    private final ExchangeRateImportService exchangeRateImportService;
+    private final ExchangeRateExportService exchangeRateExportService;
+    private final ExchangeRateBackfillService exchangeRateBackfillService;
+    private final ExchangeRateStatsService exchangeRateStatsService;
+    private final ExchangeRateStreamService exchangeRateStreamService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${ingestion.import.max-reported-rejections}")
+    private int maxReportedRejections;
+
+    @Value("${http-cache.exchange.past-date-max-age}")
+    private Duration pastDateMaxAge;
+
+    @Value("${http-cache.exchange.today-max-age}")
+    private Duration todayMaxAge;
+
+    @Value("${stats.max-days}")
+    private long maxStatsDays;
 
-    @GetMapping
-    public CurrencyExchange getExchangeRate(@RequestParam @NotBlank String from,
-                                            @RequestParam @NotBlank String to,
-                                            @RequestParam(required = false)
-                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        log.info("getExchangeRate endpoint triggered with currency from %s and to %s and date %s"
-                         .formatted(from, to, date));
-        validateCurrencyFromAndToAreNotDuplicate(from, to);
-        validateDateIsNotInFuture(date);
-        final var notNullDate = date == null ? LocalDate.now() : date;
-        return currencyExchangeService.getExchangeRate(from, to, notNullDate);
+    @Value("${stream.max-currency-pairs}")
+    private int maxStreamCurrencyPairs;
+
+    @Value("${batch.max-queries}")
+    private int maxBatchQueries;
+
+    /**
+     * Answers {@code If-None-Match} with 304 when the conversion is unchanged. Rates of past dates are rarely
+     * corrected and may be cached by clients for longer than those of today.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = CurrencyExchange.class)))
+    public ResponseEntity<byte[]> getExchangeRate(@RequestParam @NotBlank String from,
+                                                  @RequestParam @NotBlank String to,
+                                                  @RequestParam(required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        log.info("getExchangeRate endpoint triggered with currency from {} and to {} and date {}", from, to, date);
+        currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(from, to);
+        currencyExchangeValidator.validateDateIsNotInFuture(date);
+        final var today = LocalDate.now();
+        final var notNullDate = date == null ? today : date;
+        final var response = currencyExchangeService.getExchangeRateResponse(from, to, notNullDate);
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .eTag(response.etag())
+                             .cacheControl(CacheControl.maxAge(notNullDate.isBefore(today) ? pastDateMaxAge
+                                                                                           : todayMaxAge))
+                             .body(response.body());
     }
 
-    @PutMapping
-    public void forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates(
-            @RequestBody @Valid List<NewCurrencyExchange> newCurrencyExchangeList) {
-        log.info("forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates endpoint triggered for number of elements %s"
-                         .formatted(newCurrencyExchangeList.size()));
-        newCurrencyExchangeList.forEach(currency ->
-                                                validateCurrencyFromAndToAreNotDuplicate(currency.from(), currency.to()));
-        newCurrencyExchangeList.forEach(currencyExchange ->
-                                                validateDateIsNotInFuture(currencyExchange.date()));
-        newCurrencyExchangeList.forEach(currencyExchange ->
-                                                validateExchangeRateIsNotNegative(currencyExchange.exchange()));
-        newCurrencyExchangeList.forEach(currencyExchange ->
-                                                validateExchangeRateNotOverflow(currencyExchange.exchange()));
-        newCurrencyExchangeList.forEach(currencyExchange ->
-                                                validateExchangeRateScaleNotOverflow(currencyExchange.exchange()));
-        currencyExchangeService.forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates(newCurrencyExchangeList);
+    @GetMapping(value = "history", produces = {MediaType.APPLICATION_NDJSON_VALUE, ExchangeRateFormat.TEXT_CSV_VALUE})
+    public ResponseEntity<StreamingResponseBody> getExchangeRateHistory(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("getExchangeRateHistory endpoint triggered with currency from {} and to {} and dates {} - {}",
+                 from, to, start, end);
+        currencyExchangeValidator.validateDateRange(start, end);
+        final var format = ExchangeRateFormat.fromAcceptHeader(accept, ExchangeRateFormat.NDJSON);
+        final StreamingResponseBody body = outputStream -> {
+            final var writer = new ExchangeRateExportWriter(outputStream, format, objectMapper);
+            exchangeRateExportService.exportExchangeRates(from, to, start, end, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(format.getMediaType()).body(body);
     }
 
-    private void validateCurrencyFromAndToAreNotDuplicate(String from, String to) {
-        if (from.equalsIgnoreCase(to)) {
-            throw new DuplicateCurrencyExchangeException();
+    @GetMapping("stats")
+    public ExchangeRateStats getExchangeRateStats(
+            @RequestParam @NotBlank String from,
+            @RequestParam @NotBlank String to,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            @RequestParam(defaultValue = "month") ExchangeRateStatsInterval interval) {
+        log.info("getExchangeRateStats endpoint triggered with currency from {} and to {} and dates {} - {} by {}",
+                 from, to, start, end, interval);
+        currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(from, to);
+        currencyExchangeValidator.validateDateRange(start, end);
+        currencyExchangeValidator.validateDateIsNotInFuture(end);
+        if (ChronoUnit.DAYS.between(start, end) >= maxStatsDays) {
+            throw new DateRangeTooLongException(maxStatsDays);
         }
+        return exchangeRateStatsService.getStats(from, to, start, end, interval);
     }
 
-    private void validateDateIsNotInFuture(LocalDate date) {
-        if (date != null && date.isAfter(LocalDate.now())) {
-            throw new CurrencyExchangeDateSetToFutureException();
+    /**
+     * Streams today's conversion of every pair, given as {@code FROM:TO,FROM:TO}, first as it is and then whenever
+     * its rates or spreads change.
+     */
+    @GetMapping(value = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamExchangeRates(@RequestParam @NotBlank String pairs) {
+        log.info("streamExchangeRates endpoint triggered with currency pairs {}", pairs);
+        final var currencyPairs = new LinkedHashSet<CurrencyPair>();
+        for (final var pair : pairs.split(",")) {
+            final var currencies = pair.split(":");
+            if (currencies.length != 2 || currencies[0].isBlank() || currencies[1].isBlank()) {
+                throw new InvalidCurrencyPairException(pair);
+            }
+            currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(currencies[0], currencies[1]);
+            currencyPairs.add(new CurrencyPair(currencies[0], currencies[1]));
+        }
+        if (currencyPairs.size() > maxStreamCurrencyPairs) {
+            throw new TooManyCurrencyPairsException(maxStreamCurrencyPairs);
         }
+        return exchangeRateStreamService.subscribe(currencyPairs);
     }
 
-    private void validateExchangeRateIsNotNegative(BigDecimal rate) {
-        if (rate.signum() != 1) {
-            throw new CurrencyExchangeRateIsNegativeOrZeroException();
+    @PostMapping("batch")
+    public List<CurrencyExchangeResult> getExchangeRates(
+            @RequestBody @Valid List<CurrencyExchangeQuery> currencyExchangeQueryList) {
+        log.info("getExchangeRates endpoint triggered for number of elements {}", currencyExchangeQueryList.size());
+        if (currencyExchangeQueryList.size() > maxBatchQueries) {
+            throw new TooManyCurrencyExchangeQueriesException(maxBatchQueries);
         }
+        final var results = new CurrencyExchangeResult[currencyExchangeQueryList.size()];
+        final var validQueryIndexes = new ArrayList<Integer>();
+        final var validQueries = new ArrayList<CurrencyExchangeQuery>();
+        for (int i = 0; i < currencyExchangeQueryList.size(); i++) {
+            final var query = currencyExchangeQueryList.get(i);
+            try {
+                currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(query.from(), query.to());
+                currencyExchangeValidator.validateDateIsNotInFuture(query.date());
+            } catch (DuplicateCurrencyExchangeException | CurrencyExchangeDateSetToFutureException ex) {
+                results[i] = new CurrencyExchangeResult(
+                        null, new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), Instant.now()));
+                continue;
+            }
+            final var notNullDate = query.date() == null ? LocalDate.now() : query.date();
+            validQueryIndexes.add(i);
+            validQueries.add(new CurrencyExchangeQuery(query.from(), query.to(), notNullDate));
+        }
+        final var conversions = currencyExchangeService.getExchangeRates(validQueries);
+        for (int i = 0; i < conversions.size(); i++) {
+            final var conversion = conversions.get(i);
+            results[validQueryIndexes.get(i)] = conversion.notFound() == null
+                    ? new CurrencyExchangeResult(conversion.exchange(), null)
+                    : new CurrencyExchangeResult(null, new ApiError(HttpStatus.NOT_FOUND,
+                                                                    conversion.notFound().getMessage(), Instant.now()));
+        }
+        return Arrays.asList(results);
     }
 
-    private void validateExchangeRateNotOverflow(BigDecimal rate) {
-        if (rate.precision() - rate.scale() > MAX_VALUE_LENGTH) {
-            throw new CurrencyExchangeRateOverflowException();
-        }
+    @PutMapping
+    public ExchangeRateUpsertResult forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates(
+            @RequestBody @Valid List<NewCurrencyExchange> newCurrencyExchangeList) {
+        log.info("forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates endpoint triggered for number of elements {}",
+                 newCurrencyExchangeList.size());
+        newCurrencyExchangeList.forEach(currency -> currencyExchangeValidator
+                .validateCurrencyFromAndToAreNotDuplicate(currency.from(), currency.to()));
+        newCurrencyExchangeList.forEach(currencyExchange -> currencyExchangeValidator
+                .validateDateIsNotInFuture(currencyExchange.date()));
+        newCurrencyExchangeList.forEach(currencyExchange -> currencyExchangeValidator
+                .validateExchangeRateIsNotNegative(currencyExchange.exchange()));
+        newCurrencyExchangeList.forEach(currencyExchange -> currencyExchangeValidator
+                .validateExchangeRateNotOverflow(currencyExchange.exchange()));
+        newCurrencyExchangeList.forEach(currencyExchange -> currencyExchangeValidator
+                .validateExchangeRateScaleNotOverflow(currencyExchange.exchange()));
+        return currencyExchangeService.forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates(
+                newCurrencyExchangeList);
     }
 
-    private void validateExchangeRateScaleNotOverflow(BigDecimal rate) {
-        if (rate.scale() > SCALE) {
-            throw new CurrencyExchangeRateScaleOverflowException();
-        }
+    @PostMapping(value = "import",
+            consumes = {ExchangeRateFormat.TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ExchangeRateImportResult importExchangeRates(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                        InputStream body) {
+        log.info("importExchangeRates endpoint triggered with content type {}", contentType);
+        final var reader = new ExchangeRateImportReader(body, ExchangeRateFormat.fromContentType(contentType),
+                                                        objectMapper, validator, currencyExchangeValidator,
+                                                        maxReportedRejections);
+        final var importResult = exchangeRateImportService.importExchangeRates(reader);
+        return new ExchangeRateImportResult(reader.getAccepted(), reader.getRejected(), importResult.inserted(),
+                                            importResult.updated(), importResult.unchanged(),
+                                            reader.getRejections());
+    }
+
+    /**
+     * Accepts the backfill and runs it in the background, its progress is at the returned location.
+     */
+    @PostMapping("backfill")
+    public ResponseEntity<ExchangeRateBackfillStatus> backfillExchangeRates(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+        log.info("backfillExchangeRates endpoint triggered with dates {} - {}", start, end);
+        currencyExchangeValidator.validateDateRange(start, end);
+        currencyExchangeValidator.validateDateIsNotInFuture(end);
+        final var backfill = exchangeRateBackfillService.backfill(start, end);
+        return ResponseEntity.accepted()
+                             .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                                                                  .path("/exchange/backfill/{backfillId}")
+                                                                  .buildAndExpand(backfill.backfillId())
+                                                                  .toUri())
+                             .body(backfill);
+    }
+
+    @GetMapping("backfill/{backfillId}")
+    public ExchangeRateBackfillStatus getBackfill(@PathVariable long backfillId) {
+        log.info("getBackfill endpoint triggered with id {}", backfillId);
+        return exchangeRateBackfillService.getBackfill(backfillId);
     }
 }
@@ -0,0 +1,49 @@
+package com.marcura.controller.format;
+
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+
+public enum ExchangeRateFormat {
+    CSV(MediaType.parseMediaType(ExchangeRateFormat.TEXT_CSV_VALUE)),
+    NDJSON(MediaType.APPLICATION_NDJSON);
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final MediaType mediaType;
+
+    ExchangeRateFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public static ExchangeRateFormat fromAcceptHeader(String accept, ExchangeRateFormat defaultFormat) {
+        if (accept == null) {
+            return defaultFormat;
+        }
+        final var acceptedMediaTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(acceptedMediaTypes);
+        for (final var acceptedMediaType : acceptedMediaTypes) {
+            if (acceptedMediaType.isWildcardType()) {
+                return defaultFormat;
+            }
+            for (final var format : values()) {
+                if (format.mediaType.isCompatibleWith(acceptedMediaType)) {
+                    return format;
+                }
+            }
+        }
+        return defaultFormat;
+    }
+
+    public static ExchangeRateFormat fromContentType(String contentType) {
+        final var requestMediaType = MediaType.parseMediaType(contentType);
+        return Arrays.stream(values())
+                     .filter(format -> format.mediaType.isCompatibleWith(requestMediaType))
+                     .findFirst()
+                     .orElseThrow(() -> new IllegalArgumentException("Unsupported content type " + contentType));
+    }
+}
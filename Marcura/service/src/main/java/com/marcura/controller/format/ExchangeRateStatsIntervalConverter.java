@@ -0,0 +1,16 @@
+package com.marcura.controller.format;
+
+import com.marcura.model.api.request.ExchangeRateStatsInterval;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+@Component
+public class ExchangeRateStatsIntervalConverter implements Converter<String, ExchangeRateStatsInterval> {
+
+    @Override
+    public ExchangeRateStatsInterval convert(String source) {
+        return ExchangeRateStatsInterval.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,194 @@
+package com.marcura.controller.reader;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.marcura.controller.format.ExchangeRateFormat;
+import com.marcura.controller.validation.CurrencyExchangeValidator;
+import com.marcura.model.NumberedExchangeRate;
+import com.marcura.model.api.request.NewCurrencyExchange;
+import com.marcura.model.api.response.RejectedExchangeRate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * Parses and validates an import body line by line. Only the current row and a bounded number of rejections are
+ * kept in memory, so the body can be of any size.
+ */
+public class ExchangeRateImportReader implements Iterator<NumberedExchangeRate> {
+    private static final String CSV_HEADER = "from,to,exchange,date";
+    private static final String CSV_SEPARATOR = ",";
+    private static final int CSV_COLUMNS = 4;
+    private static final String FIELD_CONVERSION_EX_MSG = "Cannot convert field %s";
+    private static final String COLUMN_COUNT_EX_MSG = "Expected %s columns but got %s";
+    private static final String MALFORMED_ROW_EX_MSG = "Malformed row";
+
+    private final BufferedReader reader;
+    private final ExchangeRateFormat format;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final CurrencyExchangeValidator currencyExchangeValidator;
+    private final int maxReportedRejections;
+    private final List<RejectedExchangeRate> rejections = new ArrayList<>();
+
+    private long line;
+    private long accepted;
+    private long rejected;
+    private NumberedExchangeRate next;
+
+    public ExchangeRateImportReader(InputStream inputStream, ExchangeRateFormat format,
+                                    ObjectMapper objectMapper, Validator validator,
+                                    CurrencyExchangeValidator currencyExchangeValidator, int maxReportedRejections) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.currencyExchangeValidator = currencyExchangeValidator;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            final var row = readLine();
+            if (row == null) {
+                return false;
+            }
+            line++;
+            if (row.isBlank() || isCsvHeader(row)) {
+                continue;
+            }
+            try {
+                final var exchangeRate = parse(row.strip());
+                validate(exchangeRate);
+                next = new NumberedExchangeRate(line, exchangeRate);
+                accepted++;
+            } catch (RuntimeException | JsonProcessingException ex) {
+                reject(resolveExMsg(ex));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public NumberedExchangeRate next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final var current = next;
+        next = null;
+        return current;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<RejectedExchangeRate> getRejections() {
+        return List.copyOf(rejections);
+    }
+
+    private String readLine() {
+        try {
+            return reader.readLine();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private boolean isCsvHeader(String row) {
+        return format == ExchangeRateFormat.CSV && accepted == 0 && rejected == 0
+                && row.strip().replace(" ", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    private NewCurrencyExchange parse(String row) throws JsonProcessingException {
+        return switch (format) {
+            case CSV -> parseCsv(row);
+            case NDJSON -> objectMapper.readValue(row, NewCurrencyExchange.class);
+        };
+    }
+
+    private NewCurrencyExchange parseCsv(String row) {
+        final var columns = row.split(CSV_SEPARATOR, -1);
+        if (columns.length != CSV_COLUMNS) {
+            throw new IllegalArgumentException(COLUMN_COUNT_EX_MSG.formatted(CSV_COLUMNS, columns.length));
+        }
+        return new NewCurrencyExchange(columns[0].strip(), columns[1].strip(),
+                                       parseExchange(columns[2].strip()), parseDate(columns[3].strip()));
+    }
+
+    private static BigDecimal parseExchange(String exchange) {
+        try {
+            return new BigDecimal(exchange);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(FIELD_CONVERSION_EX_MSG.formatted("exchange"), ex);
+        }
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(FIELD_CONVERSION_EX_MSG.formatted("date"), ex);
+        }
+    }
+
+    private void validate(NewCurrencyExchange exchangeRate) {
+        if (exchangeRate == null) {
+            throw new IllegalArgumentException(MALFORMED_ROW_EX_MSG);
+        }
+        final var violations = validator.validate(exchangeRate);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                                                         .map(ExchangeRateImportReader::toMessage)
+                                                         .sorted()
+                                                         .collect(Collectors.joining(", ")));
+        }
+        currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(exchangeRate.from(), exchangeRate.to());
+        currencyExchangeValidator.validateDateIsNotInFuture(exchangeRate.date());
+        currencyExchangeValidator.validateExchangeRateIsNotNegative(exchangeRate.exchange());
+        currencyExchangeValidator.validateExchangeRateNotOverflow(exchangeRate.exchange());
+        currencyExchangeValidator.validateExchangeRateScaleNotOverflow(exchangeRate.exchange());
+    }
+
+    private static String toMessage(ConstraintViolation<NewCurrencyExchange> violation) {
+        return violation.getPropertyPath() + " " + violation.getMessage();
+    }
+
+    private void reject(String message) {
+        rejected++;
+        if (rejections.size() < maxReportedRejections) {
+            rejections.add(new RejectedExchangeRate(line, message));
+        }
+    }
+
+    private static String resolveExMsg(Exception ex) {
+        if (ex instanceof MismatchedInputException mismatchedInputException
+                && !mismatchedInputException.getPath().isEmpty()) {
+            return FIELD_CONVERSION_EX_MSG.formatted(mismatchedInputException.getPath().get(0).getFieldName());
+        } else if (ex instanceof JsonProcessingException) {
+            return MALFORMED_ROW_EX_MSG;
+        } else {
+            return ex.getMessage();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.marcura.controller.validation;
+
+import com.marcura.exception.CurrencyExchangeDateSetToFutureException;
+import com.marcura.exception.CurrencyExchangeRateIsNegativeOrZeroException;
+import com.marcura.exception.CurrencyExchangeRateOverflowException;
+import com.marcura.exception.CurrencyExchangeRateScaleOverflowException;
+import com.marcura.exception.DuplicateCurrencyExchangeException;
+import com.marcura.exception.InvalidDateRangeException;
+import com.marcura.service.FixedPointRate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static com.marcura.model.entity.ExchangeRate.MAX_VALUE_LENGTH;
+import static com.marcura.model.entity.ExchangeRate.SCALE;
+
+@Component
+public class CurrencyExchangeValidator {
+
+    public void validateCurrencyFromAndToAreNotDuplicate(String from, String to) {
+        if (from.equalsIgnoreCase(to)) {
+            throw new DuplicateCurrencyExchangeException();
+        }
+    }
+
+    public void validateDateIsNotInFuture(LocalDate date) {
+        if (date != null && date.isAfter(LocalDate.now())) {
+            throw new CurrencyExchangeDateSetToFutureException();
+        }
+    }
+
+    public void validateExchangeRateIsNotNegative(BigDecimal rate) {
+        if (rate.signum() != 1) {
+            throw new CurrencyExchangeRateIsNegativeOrZeroException();
+        }
+    }
+
+    public void validateExchangeRateNotOverflow(BigDecimal rate) {
+        // rates are converted with FixedPointRate, which tops out slightly below the column's limit
+        if (rate.precision() - rate.scale() > MAX_VALUE_LENGTH || rate.compareTo(FixedPointRate.MAX_VALUE) > 0) {
+            throw new CurrencyExchangeRateOverflowException();
+        }
+    }
+
+    public void validateExchangeRateScaleNotOverflow(BigDecimal rate) {
+        if (rate.scale() > SCALE) {
+            throw new CurrencyExchangeRateScaleOverflowException();
+        }
+    }
+
+    public void validateDateRange(LocalDate start, LocalDate end) {
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new InvalidDateRangeException(start, end);
+        }
+    }
+}
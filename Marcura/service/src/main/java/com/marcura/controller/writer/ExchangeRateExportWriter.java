@@ -0,0 +1,83 @@
+package com.marcura.controller.writer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcura.controller.format.ExchangeRateFormat;
+import com.marcura.model.projection.HistoricalExchangeRate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes exchange rates in the same shape that the import endpoint reads, so an export can be imported back.
+ */
+public class ExchangeRateExportWriter implements Consumer<HistoricalExchangeRate> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "from,to,exchange,date\n";
+
+    private final ExchangeRateFormat format;
+    private final Writer writer;
+    private final JsonGenerator jsonGenerator;
+
+    public ExchangeRateExportWriter(OutputStream outputStream, ExchangeRateFormat format, ObjectMapper objectMapper)
+            throws IOException {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.jsonGenerator = format == ExchangeRateFormat.NDJSON
+                ? objectMapper.getFactory()
+                              .createGenerator(writer)
+                              .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                              .setRootValueSeparator(null)
+                : null;
+        if (format == ExchangeRateFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+    }
+
+    @Override
+    public void accept(HistoricalExchangeRate exchangeRate) {
+        try {
+            switch (format) {
+                case CSV -> writeCsv(exchangeRate);
+                case NDJSON -> writeNdjson(exchangeRate);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public void flush() throws IOException {
+        if (jsonGenerator != null) {
+            jsonGenerator.flush();
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(HistoricalExchangeRate exchangeRate) throws IOException {
+        writer.write(exchangeRate.currencyFrom());
+        writer.write(',');
+        writer.write(exchangeRate.currencyTo());
+        writer.write(',');
+        writer.write(exchangeRate.rate().toPlainString());
+        writer.write(',');
+        writer.write(exchangeRate.exchangeDate().toString());
+        writer.write('\n');
+    }
+
+    private void writeNdjson(HistoricalExchangeRate exchangeRate) throws IOException {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeStringField("from", exchangeRate.currencyFrom());
+        jsonGenerator.writeStringField("to", exchangeRate.currencyTo());
+        jsonGenerator.writeFieldName("exchange");
+        jsonGenerator.writeNumber(exchangeRate.rate().toPlainString());
+        jsonGenerator.writeStringField("date", exchangeRate.exchangeDate().toString());
+        jsonGenerator.writeEndObject();
+        jsonGenerator.writeRaw('\n');
+    }
+}
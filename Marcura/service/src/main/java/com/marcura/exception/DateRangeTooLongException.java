@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class DateRangeTooLongException extends RuntimeException {
+    private static final String MSG = "Date range cannot span more than %d days";
+
+    public DateRangeTooLongException(long maxDays) {
+        super(MSG.formatted(maxDays));
+    }
+}
@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class ExchangeRateBackfillFailedException extends RuntimeException {
+    private static final String MSG = "Backfill %d failed for %d of %d chunks, repeat the request to resume it";
+
+    public ExchangeRateBackfillFailedException(long backfillId, long failedChunks, long chunks) {
+        super(MSG.formatted(backfillId, failedChunks, chunks));
+    }
+}
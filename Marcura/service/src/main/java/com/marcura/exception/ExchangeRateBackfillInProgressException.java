@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class ExchangeRateBackfillInProgressException extends RuntimeException {
+    private static final String MSG = "Backfill %d cannot start, another backfill is in progress";
+
+    public ExchangeRateBackfillInProgressException(long backfillId) {
+        super(MSG.formatted(backfillId));
+    }
+}
@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class ExchangeRateBackfillNotFoundException extends RuntimeException {
+    private static final String MSG = "Backfill %d not found";
+
+    public ExchangeRateBackfillNotFoundException(long backfillId) {
+        super(MSG.formatted(backfillId));
+    }
+}
@@ -0,0 +1,11 @@
+package com.marcura.exception;
+
+import java.time.Duration;
+
+public class FixerUnavailableException extends RuntimeException {
+    private static final String MSG = "Fixer is unavailable, calls are suspended for %s after repeated failures";
+
+    public FixerUnavailableException(Duration retryIn) {
+        super(MSG.formatted(retryIn));
+    }
+}
@@ -3,6 +3,7 @@ package com.marcura.exception;
 import com.marcura.model.ApiError;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -25,6 +26,7 @@ public class GlobalExceptionHandler {
         log.warn("defaultExceptionHandler: {}", ex.getMessage(), ex);
         final var returnedStatus = HttpStatus.INTERNAL_SERVER_ERROR;
         return ResponseEntity.status(returnedStatus.value())
+                             .contentType(MediaType.APPLICATION_JSON)
                              .body(new ApiError(returnedStatus, returnedStatus.getReasonPhrase(), Instant.now()));
     }
 
@@ -37,6 +39,11 @@ public class GlobalExceptionHandler {
             CurrencyExchangeRateIsNegativeOrZeroException.class,
             CurrencyExchangeRateOverflowException.class,
             CurrencyExchangeRateScaleOverflowException.class,
+            InvalidDateRangeException.class,
+            DateRangeTooLongException.class,
+            InvalidCurrencyPairException.class,
+            TooManyCurrencyPairsException.class,
+            TooManyCurrencyExchangeQueriesException.class,
             ConstraintViolationException.class
     })
     public ResponseEntity<ApiError> handleBadRequestException(Exception ex) {
@@ -44,14 +51,19 @@ public class GlobalExceptionHandler {
         final var returnedStatus = HttpStatus.BAD_REQUEST;
         final var exMsg = resolveExMsg(ex, returnedStatus);
         return ResponseEntity.status(returnedStatus.value())
+                             .contentType(MediaType.APPLICATION_JSON)
                              .body(new ApiError(returnedStatus, exMsg, Instant.now()));
     }
 
-    @ExceptionHandler(value = CurrencyExchangeNotFoundException.class)
-    public ResponseEntity<ApiError> handleNotFoundException(CurrencyExchangeNotFoundException ex) {
+    @ExceptionHandler(value = {
+            CurrencyExchangeNotFoundException.class,
+            ExchangeRateBackfillNotFoundException.class
+    })
+    public ResponseEntity<ApiError> handleNotFoundException(RuntimeException ex) {
         log.warn("handleNotFoundException: {}", ex.getMessage(), ex);
         final var returnedStatus = HttpStatus.NOT_FOUND;
         return ResponseEntity.status(returnedStatus.value())
+                             .contentType(MediaType.APPLICATION_JSON)
                              .body(new ApiError(returnedStatus, ex.getMessage(), Instant.now()));
     }
 
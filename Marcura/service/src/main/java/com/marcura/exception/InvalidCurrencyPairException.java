@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class InvalidCurrencyPairException extends RuntimeException {
+    private static final String MSG = "Currency pair %s is not of the form FROM:TO";
+
+    public InvalidCurrencyPairException(String currencyPair) {
+        super(MSG.formatted(currencyPair));
+    }
+}
@@ -0,0 +1,11 @@
+package com.marcura.exception;
+
+import java.time.LocalDate;
+
+public class InvalidDateRangeException extends RuntimeException {
+    private static final String MSG = "Start date %s cannot be after end date %s";
+
+    public InvalidDateRangeException(LocalDate start, LocalDate end) {
+        super(MSG.formatted(start, end));
+    }
+}
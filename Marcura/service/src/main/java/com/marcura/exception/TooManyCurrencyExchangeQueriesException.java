@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class TooManyCurrencyExchangeQueriesException extends RuntimeException {
+    private static final String MSG = "No more than %d currency exchanges can be queried at once";
+
+    public TooManyCurrencyExchangeQueriesException(int maxQueries) {
+        super(MSG.formatted(maxQueries));
+    }
+}
@@ -0,0 +1,9 @@
+package com.marcura.exception;
+
+public class TooManyCurrencyPairsException extends RuntimeException {
+    private static final String MSG = "No more than %d currency pairs can be subscribed to at once";
+
+    public TooManyCurrencyPairsException(int maxCurrencyPairs) {
+        super(MSG.formatted(maxCurrencyPairs));
+    }
+}
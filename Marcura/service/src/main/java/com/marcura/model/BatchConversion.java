@@ -0,0 +1,10 @@
+package com.marcura.model;
+
+import com.marcura.exception.CurrencyExchangeNotFoundException;
+import com.marcura.model.api.response.CurrencyExchange;
+
+/**
+ * @param notFound why no exchange could be calculated, or null if it was
+ */
+public record BatchConversion(CurrencyExchange exchange, CurrencyExchangeNotFoundException notFound) {
+}
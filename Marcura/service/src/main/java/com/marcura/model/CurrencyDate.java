@@ -0,0 +1,6 @@
+package com.marcura.model;
+
+import java.time.LocalDate;
+
+public record CurrencyDate(String currency, LocalDate date) {
+}
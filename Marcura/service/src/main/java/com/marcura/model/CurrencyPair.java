@@ -0,0 +1,4 @@
+package com.marcura.model;
+
+public record CurrencyPair(String from, String to) {
+}
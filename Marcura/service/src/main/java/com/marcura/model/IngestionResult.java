@@ -0,0 +1,10 @@
+package com.marcura.model;
+
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+
+/**
+ * @param changes the event published for the changed rates, or null if no rate changed
+ */
+public record IngestionResult(ExchangeRateUpsertResult upsertResult, ExchangeRatesChangedEvent changes) {
+}
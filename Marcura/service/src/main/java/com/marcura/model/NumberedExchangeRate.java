@@ -0,0 +1,6 @@
+package com.marcura.model;
+
+import com.marcura.model.api.request.NewCurrencyExchange;
+
+public record NumberedExchangeRate(long line, NewCurrencyExchange exchangeRate) {
+}
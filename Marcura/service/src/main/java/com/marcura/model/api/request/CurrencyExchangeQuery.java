@@ -0,0 +1,8 @@
+package com.marcura.model.api.request;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+
+public record CurrencyExchangeQuery(@NotNull @NotBlank String from, @NotNull @NotBlank String to, LocalDate date) {
+}
@@ -0,0 +1,6 @@
+package com.marcura.model.api.response;
+
+import com.marcura.model.ApiError;
+
+public record CurrencyExchangeResult(CurrencyExchange exchange, ApiError error) {
+}
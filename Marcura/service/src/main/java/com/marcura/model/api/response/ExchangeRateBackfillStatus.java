@@ -0,0 +1,13 @@
+package com.marcura.model.api.response;
+
+import java.time.LocalDate;
+
+/**
+ * @param status     RUNNING until every chunk is done, SUCCEEDED then, FAILED if chunks failed, which repeating the
+ *                   backfill request resumes
+ * @param doneChunks chunks fetched and stored, by this or an earlier run of the backfill
+ * @param inserted   rows written by the done chunks, as are {@code updated} and {@code unchanged}
+ */
+public record ExchangeRateBackfillStatus(long backfillId, LocalDate start, LocalDate end, String status, int chunks,
+                                         int doneChunks, long inserted, long updated, long unchanged) {
+}
@@ -0,0 +1,7 @@
+package com.marcura.model.api.response;
+
+import java.util.List;
+
+public record ExchangeRateImportResult(long accepted, long rejected, long inserted, long updated, long unchanged,
+                                       List<RejectedExchangeRate> rejections) {
+}
@@ -0,0 +1,8 @@
+package com.marcura.model.api.response;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ExchangeRatePeriodStats(LocalDate start, LocalDate end, int days, BigDecimal open, BigDecimal high,
+                                      BigDecimal low, BigDecimal close, BigDecimal average) {
+}
@@ -0,0 +1,11 @@
+package com.marcura.model.api.response;
+
+import com.marcura.model.api.request.ExchangeRateStatsInterval;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record ExchangeRateStats(String from, String to, LocalDate start, LocalDate end,
+                                ExchangeRateStatsInterval interval, List<ExchangeRatePeriodStats> periods,
+                                long historyStoreSizeInBytes) {
+}
@@ -0,0 +1,13 @@
+package com.marcura.model.api.response;
+
+public record ExchangeRateUpsertResult(int inserted, int updated, int unchanged) {
+
+    public static ExchangeRateUpsertResult empty() {
+        return new ExchangeRateUpsertResult(0, 0, 0);
+    }
+
+    public ExchangeRateUpsertResult add(ExchangeRateUpsertResult other) {
+        return new ExchangeRateUpsertResult(inserted + other.inserted, updated + other.updated,
+                                            unchanged + other.unchanged);
+    }
+}
@@ -0,0 +1,4 @@
+package com.marcura.model.api.response;
+
+public record RejectedExchangeRate(long line, String message) {
+}
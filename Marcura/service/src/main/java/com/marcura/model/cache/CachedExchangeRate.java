@@ -0,0 +1,7 @@
+package com.marcura.model.cache;
+
+/**
+ * @param rate {@link com.marcura.service.FixedPointRate}
+ */
+public record CachedExchangeRate(long id, long rate) {
+}
@@ -0,0 +1,4 @@
+package com.marcura.model.cache;
+
+public record ConversionResponse(byte[] body, String etag, long fromRateId, long toRateId) {
+}
@@ -8,6 +8,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import java.math.BigDecimal;
 import java.time.Instant;
 
 @Data
@@ -18,7 +19,7 @@ public class CurrencySpread {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String currency;
-    private Double spread;
+    private BigDecimal spread;
     @Column(insertable = false)
     private Instant createdAt;
 }
@@ -28,7 +28,7 @@ public class ExchangeRate {
     @Column(precision = PRECISION, scale = SCALE)
     private BigDecimal rate;
     private LocalDate exchangeDate;
-    @Column(insertable = false)
+    @Column(insertable = false, updatable = false)
     private Integer accessCounter;
     @Column(insertable = false)
     private Instant createdAt;
@@ -0,0 +1,6 @@
+package com.marcura.model.event;
+
+import java.util.Set;
+
+public record CurrencySpreadsChangedEvent(Set<String> currencies) {
+}
@@ -0,0 +1,10 @@
+package com.marcura.model.event;
+
+import com.marcura.model.CurrencyPair;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+public record ExchangeRatesChangedEvent(Set<CurrencyPair> currencyPairs, LocalDate earliestExchangeDate,
+                                        LocalDate latestExchangeDate) {
+}
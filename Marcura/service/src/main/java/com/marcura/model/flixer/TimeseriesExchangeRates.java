@@ -0,0 +1,8 @@
+package com.marcura.model.flixer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+
+public record TimeseriesExchangeRates(String base, HashMap<LocalDate, HashMap<String, BigDecimal>> rates) {
+}
@@ -0,0 +1,7 @@
+package com.marcura.model.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record AsOfExchangeRate(String currency, LocalDate date, Long id, BigDecimal rate) {
+}
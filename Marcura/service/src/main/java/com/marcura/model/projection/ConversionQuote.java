@@ -0,0 +1,13 @@
+package com.marcura.model.projection;
+
+import java.math.BigDecimal;
+
+public interface ConversionQuote {
+    Long getFromRateId();
+
+    BigDecimal getFromRate();
+
+    Long getToRateId();
+
+    BigDecimal getToRate();
+}
@@ -0,0 +1,8 @@
+package com.marcura.model.projection;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public record ExchangeRateBackfill(long id, String base, LocalDate startDate, LocalDate endDate, String status,
+                                   Instant createdAt) {
+}
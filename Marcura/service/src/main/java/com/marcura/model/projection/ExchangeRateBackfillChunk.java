@@ -0,0 +1,14 @@
+package com.marcura.model.projection;
+
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @param upsertResult        rows written by the chunk, or null until it is done
+ * @param changedCurrenciesTo currencies whose rates the chunk inserted or updated
+ */
+public record ExchangeRateBackfillChunk(LocalDate startDate, LocalDate endDate, boolean done,
+                                        ExchangeRateUpsertResult upsertResult, List<String> changedCurrenciesTo) {
+}
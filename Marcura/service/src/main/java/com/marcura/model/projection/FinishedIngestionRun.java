@@ -0,0 +1,12 @@
+package com.marcura.model.projection;
+
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+
+import java.time.Instant;
+
+/**
+ * @param changes the rates changed by the run, or null if it changed none
+ */
+public record FinishedIngestionRun(long id, String job, String instance, Instant finishedAt,
+                                   ExchangeRatesChangedEvent changes) {
+}
@@ -0,0 +1,8 @@
+package com.marcura.model.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record HistoricalExchangeRate(String currencyFrom, String currencyTo, BigDecimal rate,
+                                     LocalDate exchangeDate) {
+}
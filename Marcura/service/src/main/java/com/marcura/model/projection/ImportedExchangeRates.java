@@ -0,0 +1,7 @@
+package com.marcura.model.projection;
+
+import java.time.LocalDate;
+
+public record ImportedExchangeRates(String currencyFrom, String currencyTo, long staged, long inserted, long updated,
+                                    LocalDate earliestExchangeDate, LocalDate latestExchangeDate) {
+}
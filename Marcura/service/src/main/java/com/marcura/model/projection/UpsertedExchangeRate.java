@@ -0,0 +1,6 @@
+package com.marcura.model.projection;
+
+import java.time.LocalDate;
+
+public record UpsertedExchangeRate(String currencyFrom, String currencyTo, LocalDate exchangeDate, boolean inserted) {
+}
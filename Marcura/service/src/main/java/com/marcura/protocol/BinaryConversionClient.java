@@ -0,0 +1,103 @@
+package com.marcura.protocol;
+
+import com.marcura.model.ApiError;
+import com.marcura.model.api.request.CurrencyExchangeQuery;
+import com.marcura.model.api.response.CurrencyExchange;
+import com.marcura.model.api.response.CurrencyExchangeResult;
+import com.marcura.service.CurrencyNames;
+import org.springframework.http.HttpStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client of {@link BinaryConversionServer} over a single connection, not to be shared between threads. Results are
+ * those of {@code POST /exchange/batch}, an exchange or the error the REST API would have responded with.
+ */
+public class BinaryConversionClient implements Closeable {
+    // requests sent ahead of their responses, bounded so neither side blocks on a full socket buffer
+    private static final int MAX_IN_FLIGHT = 1024;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public BinaryConversionClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * @param date null for today
+     */
+    public CurrencyExchangeResult convert(String from, String to, LocalDate date) throws IOException {
+        return convertAll(List.of(new CurrencyExchangeQuery(from, to, date))).get(0);
+    }
+
+    /**
+     * Pipelines the queries, sending more while responses to earlier ones are read.
+     *
+     * @return results in the order of the queries
+     * @throws IllegalArgumentException if a currency is not a three letter code, before anything is sent
+     */
+    public List<CurrencyExchangeResult> convertAll(List<CurrencyExchangeQuery> queries) throws IOException {
+        final var sanitizedQueries = queries.stream()
+                                            .map(query -> new CurrencyExchangeQuery(sanitize(query.from()),
+                                                                                    sanitize(query.to()),
+                                                                                    query.date()))
+                                            .toList();
+        final var results = new ArrayList<CurrencyExchangeResult>(sanitizedQueries.size());
+        var sent = 0;
+        while (results.size() < sanitizedQueries.size()) {
+            if (sent < sanitizedQueries.size() && sent - results.size() <= MAX_IN_FLIGHT / 2) {
+                while (sent < sanitizedQueries.size() && sent - results.size() < MAX_IN_FLIGHT) {
+                    final var query = sanitizedQueries.get(sent++);
+                    BinaryConversionProtocol.writeConvertRequest(out, query.from(), query.to(), query.date());
+                }
+                out.flush();
+            }
+            final var query = sanitizedQueries.get(results.size());
+            results.add(readResult(query));
+        }
+        return results;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private CurrencyExchangeResult readResult(CurrencyExchangeQuery query) throws IOException {
+        final var response = ByteBuffer.wrap(BinaryConversionProtocol.readFrame(in));
+        final var status = response.getShort() & 0xFFFF;
+        if (status == BinaryConversionProtocol.STATUS_OK) {
+            return new CurrencyExchangeResult(new CurrencyExchange(query.from(), query.to(),
+                                                                   BinaryConversionProtocol.readExchange(response)),
+                                              null);
+        }
+        final var message = new String(response.array(), response.position(), response.remaining(),
+                                       StandardCharsets.UTF_8);
+        return new CurrencyExchangeResult(null, new ApiError(HttpStatus.valueOf(status), message, Instant.now()));
+    }
+
+    private static String sanitize(String currency) {
+        final var sanitized = CurrencyNames.sanitize(currency);
+        if (sanitized.length() != BinaryConversionProtocol.CURRENCY_LENGTH) {
+            throw new IllegalArgumentException("Currency " + currency + " is not a three letter code");
+        }
+        return sanitized;
+    }
+}
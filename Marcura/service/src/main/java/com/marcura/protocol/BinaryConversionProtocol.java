@@ -0,0 +1,101 @@
+package com.marcura.protocol;
+
+import com.marcura.service.ExchangeRateCalculator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Frames of the binary conversion protocol, all integers big-endian. Every frame starts with the unsigned 16 bit
+ * length of what follows. Responses come in the order of the requests, so a client may pipeline as many requests as
+ * it likes before reading their responses.
+ * <pre>
+ * request:  length | opcode (1) | from (3, ASCII) | to (3, ASCII) | epoch day (4, {@link #TODAY} for none)
+ * response: length | status (2, HTTP status code) | unscaled exchange if 200, UTF-8 error message otherwise
+ * </pre>
+ * Exchanges are fixed point numbers of {@link ExchangeRateCalculator#EXCHANGE_SCALE} decimals, sent as a long, or as
+ * the two's complement bytes of a longer integer for exchanges of rates many orders of magnitude apart.
+ */
+public final class BinaryConversionProtocol {
+    public static final byte CONVERT = 1;
+    public static final int TODAY = Integer.MIN_VALUE;
+    public static final int CURRENCY_LENGTH = 3;
+    public static final int STATUS_OK = 200;
+    static final int CONVERT_REQUEST_LENGTH = 1 + 2 * CURRENCY_LENGTH + Integer.BYTES;
+    static final int MAX_FRAME_LENGTH = 0xFFFF;
+    // a char takes at most three bytes in UTF-8
+    private static final int MAX_MESSAGE_LENGTH = (MAX_FRAME_LENGTH - Short.BYTES) / 3;
+
+    private BinaryConversionProtocol() {
+    }
+
+    public static void writeConvertRequest(DataOutputStream out, String from, String to, LocalDate date)
+            throws IOException {
+        out.writeShort(CONVERT_REQUEST_LENGTH);
+        out.writeByte(CONVERT);
+        writeCurrency(out, from);
+        writeCurrency(out, to);
+        out.writeInt(date == null ? TODAY : Math.toIntExact(date.toEpochDay()));
+    }
+
+    /**
+     * Encodes the exchange in full before writing, so a failure cannot leave a partial frame behind.
+     */
+    public static void writeExchangeResponse(DataOutputStream out, BigDecimal exchange) throws IOException {
+        final var unscaledExchange = exchange.setScale(ExchangeRateCalculator.EXCHANGE_SCALE).unscaledValue();
+        if (unscaledExchange.bitLength() < Long.SIZE) {
+            out.writeShort(Short.BYTES + Long.BYTES);
+            out.writeShort(STATUS_OK);
+            out.writeLong(unscaledExchange.longValue());
+            return;
+        }
+        // never eight bytes, which would be read as a long
+        final var bytes = unscaledExchange.toByteArray();
+        out.writeShort(Short.BYTES + bytes.length);
+        out.writeShort(STATUS_OK);
+        out.write(bytes);
+    }
+
+    public static void writeErrorResponse(DataOutputStream out, int status, String message) throws IOException {
+        final var bytes = (message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message)
+                .getBytes(StandardCharsets.UTF_8);
+        out.writeShort(Short.BYTES + bytes.length);
+        out.writeShort(status);
+        out.write(bytes);
+    }
+
+    /**
+     * @return the frame without its length prefix
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        final var frame = new byte[in.readUnsignedShort()];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * @param response the response frame positioned after its status
+     */
+    public static BigDecimal readExchange(ByteBuffer response) {
+        if (response.remaining() == Long.BYTES) {
+            return BigDecimal.valueOf(response.getLong(), ExchangeRateCalculator.EXCHANGE_SCALE);
+        }
+        final var bytes = new byte[response.remaining()];
+        response.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), ExchangeRateCalculator.EXCHANGE_SCALE);
+    }
+
+    private static void writeCurrency(DataOutputStream out, String currency) throws IOException {
+        final var bytes = currency.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length != CURRENCY_LENGTH) {
+            throw new IllegalArgumentException("Currency " + currency + " is not a three letter code");
+        }
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,210 @@
+package com.marcura.protocol;
+
+import com.marcura.controller.validation.CurrencyExchangeValidator;
+import com.marcura.exception.CurrencyExchangeDateSetToFutureException;
+import com.marcura.exception.CurrencyExchangeNotFoundException;
+import com.marcura.exception.DuplicateCurrencyExchangeException;
+import com.marcura.service.CurrencyExchangeService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves {@link BinaryConversionProtocol} next to the REST API, for internal callers converting at high volume. A
+ * connection is served by a thread of its own, which answers requests in order and flushes once the client has no more
+ * requests in flight, so pipelined requests share writes. Conversions and their validation are those of
+ * {@code GET /exchange}, and errors carry the status code the REST API responds with.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BinaryConversionServer {
+    private static final String MALFORMED_REQUEST_MSG = "Malformed request of %d bytes";
+
+    private final CurrencyExchangeService currencyExchangeService;
+    private final CurrencyExchangeValidator currencyExchangeValidator;
+    private final MeterRegistry meterRegistry;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    @Value("${binary-protocol.enabled}")
+    private boolean enabled;
+
+    @Value("${binary-protocol.port}")
+    private int port;
+
+    @Value("${binary-protocol.max-connections}")
+    private int maxConnections;
+
+    @Value("${binary-protocol.idle-timeout}")
+    private Duration idleTimeout;
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+    private ThreadPoolExecutor connectionExecutor;
+    private Thread acceptThread;
+
+    /**
+     * Listens once the application is ready, so callers are not served before {@code StartupWarmup} ran.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        serverSocket = new ServerSocket(port);
+        // connections over the limit are refused rather than queued
+        connectionExecutor = new ThreadPoolExecutor(0, maxConnections, 1, TimeUnit.MINUTES, new SynchronousQueue<>(),
+                                                    new CustomizableThreadFactory("binary-conversion-"));
+        Gauge.builder("binary.conversion.connections", connections, Set::size)
+             .description("Open binary conversion protocol connections")
+             .register(meterRegistry);
+        running = true;
+        acceptThread = new Thread(this::accept, "binary-conversion-acceptor");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("Serving binary conversion protocol on port {}", getPort());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        closeQuietly(serverSocket);
+        connections.forEach(BinaryConversionServer::closeQuietly);
+        connectionExecutor.shutdownNow();
+        acceptThread.join(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    /**
+     * @return the port listened on, the one picked by the OS when configured as 0
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                final var socket = serverSocket.accept();
+                try {
+                    connectionExecutor.execute(() -> serve(socket));
+                } catch (RejectedExecutionException ex) {
+                    log.warn("Refusing binary conversion connection from {}, {} are open already",
+                             socket.getRemoteSocketAddress(), maxConnections);
+                    closeQuietly(socket);
+                }
+            } catch (IOException ex) {
+                if (running) {
+                    log.warn("Accepting binary conversion connection failed", ex);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        connections.add(socket);
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(Math.toIntExact(idleTimeout.toMillis()));
+            final var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (running) {
+                handle(BinaryConversionProtocol.readFrame(in), out);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketTimeoutException ex) {
+            log.debug("Closing binary conversion connection from {}: {}", socket.getRemoteSocketAddress(),
+                      ex.toString());
+        } catch (SocketException ex) {
+            if (running) {
+                log.debug("Binary conversion connection from {} failed: {}", socket.getRemoteSocketAddress(),
+                          ex.getMessage());
+            }
+        } catch (IOException ex) {
+            log.warn("Binary conversion connection from {} failed", socket.getRemoteSocketAddress(), ex);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void handle(byte[] frame, DataOutputStream out) throws IOException {
+        if (frame.length != BinaryConversionProtocol.CONVERT_REQUEST_LENGTH
+                || frame[0] != BinaryConversionProtocol.CONVERT) {
+            BinaryConversionProtocol.writeErrorResponse(out, HttpStatus.BAD_REQUEST.value(),
+                                                        MALFORMED_REQUEST_MSG.formatted(frame.length));
+            return;
+        }
+        final var request = ByteBuffer.wrap(frame, 1, frame.length - 1);
+        final var from = readCurrency(request);
+        final var to = readCurrency(request);
+        final var epochDay = request.getInt();
+        if (from.isBlank() || to.isBlank()) {
+            BinaryConversionProtocol.writeErrorResponse(out, HttpStatus.BAD_REQUEST.value(),
+                                                        MALFORMED_REQUEST_MSG.formatted(frame.length));
+            return;
+        }
+        try {
+            currencyExchangeValidator.validateCurrencyFromAndToAreNotDuplicate(from, to);
+            final var date = epochDay == BinaryConversionProtocol.TODAY ? LocalDate.now()
+                                                                        : LocalDate.ofEpochDay(epochDay);
+            currencyExchangeValidator.validateDateIsNotInFuture(date);
+            final var exchange = currencyExchangeService.getExchangeRate(from, to, date);
+            BinaryConversionProtocol.writeExchangeResponse(out, exchange.exchange());
+        } catch (DuplicateCurrencyExchangeException | CurrencyExchangeDateSetToFutureException ex) {
+            BinaryConversionProtocol.writeErrorResponse(out, HttpStatus.BAD_REQUEST.value(), ex.getMessage());
+        } catch (CurrencyExchangeNotFoundException ex) {
+            BinaryConversionProtocol.writeErrorResponse(out, HttpStatus.NOT_FOUND.value(), ex.getMessage());
+        } catch (RuntimeException ex) {
+            log.warn("Binary conversion of {} to {} failed", from, to, ex);
+            final var status = HttpStatus.INTERNAL_SERVER_ERROR;
+            BinaryConversionProtocol.writeErrorResponse(out, status.value(), status.getReasonPhrase());
+        }
+    }
+
+    private static String readCurrency(ByteBuffer request) {
+        final var currency = new byte[BinaryConversionProtocol.CURRENCY_LENGTH];
+        request.get(currency);
+        return new String(currency, StandardCharsets.US_ASCII);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ex) {
+            log.debug("Closing {} failed: {}", closeable, ex.getMessage());
+        }
+    }
+}
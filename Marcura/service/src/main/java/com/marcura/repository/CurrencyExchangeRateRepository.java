@@ -1,31 +1,63 @@
 package com.marcura.repository;
 
 import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.projection.ConversionQuote;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CurrencyExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+    String AS_OF_WINDOW_START =
+            "CAST(date_trunc('year', CAST(:exchangeDate AS TIMESTAMP)) - INTERVAL '1 year' AS DATE)";
+
+    /**
+     * Looks in the partitions of the date's year and the year before first, so that the usual lookup touches at most
+     * two yearly partitions, and only falls back to the older ones when the currency was not quoted in that window.
+     */
+    @Transactional(readOnly = true)
     @Query(value =
-            "UPDATE currency_exchange_rate SET access_counter = access_counter + 1 " +
-                    "WHERE id = (" +
-                    "SELECT id FROM currency_exchange_rate " +
-                    "WHERE currency_from = :currencyFrom AND currency_to = :currencyTo AND exchange_date <= :exchangeDate " +
-                    "ORDER BY exchange_date DESC LIMIT 1) " +
-                    "RETURNING *", nativeQuery = true)
-    Optional<ExchangeRate> findFirstByCurrencyFromAndCurrencyToAndExchangeDateLessThanEqualOrderByExchangeDateDesc(
+            "SELECT from_rate.id AS \"fromRateId\", from_rate.rate AS \"fromRate\", " +
+                    "to_rate.id AS \"toRateId\", to_rate.rate AS \"toRate\" " +
+                    "FROM (SELECT 1) AS quote " +
+                    "LEFT JOIN LATERAL (" +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = :baseCurrency AND currency_to = :currencyFrom AND exchange_date <= :exchangeDate " +
+                    "AND exchange_date >= " + AS_OF_WINDOW_START + " ORDER BY exchange_date DESC LIMIT 1) " +
+                    "UNION ALL " +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = :baseCurrency AND currency_to = :currencyFrom " +
+                    "AND exchange_date < " + AS_OF_WINDOW_START + " ORDER BY exchange_date DESC LIMIT 1) " +
+                    "LIMIT 1) AS from_rate ON TRUE " +
+                    "LEFT JOIN LATERAL (" +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = :baseCurrency AND currency_to = :currencyTo AND exchange_date <= :exchangeDate " +
+                    "AND exchange_date >= " + AS_OF_WINDOW_START + " ORDER BY exchange_date DESC LIMIT 1) " +
+                    "UNION ALL " +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = :baseCurrency AND currency_to = :currencyTo " +
+                    "AND exchange_date < " + AS_OF_WINDOW_START + " ORDER BY exchange_date DESC LIMIT 1) " +
+                    "LIMIT 1) AS to_rate ON TRUE", nativeQuery = true)
+    ConversionQuote findConversionQuote(
+            @Param("baseCurrency") String baseCurrency,
             @Param("currencyFrom") String currencyFrom,
             @Param("currencyTo") String currencyTo,
             @Param("exchangeDate") LocalDate exchangeDate);
 
-    Optional<ExchangeRate> findByCurrencyFromAndCurrencyToAndExchangeDate(
+    @Transactional(readOnly = true)
+    Optional<ExchangeRate> findFirstByCurrencyFromAndCurrencyToAndExchangeDateLessThanEqualOrderByExchangeDateDesc(
             @Param("currencyFrom") String currencyFrom,
             @Param("currencyTo") String currencyTo,
             @Param("exchangeDate") LocalDate exchangeDate);
 
+    @Transactional(readOnly = true)
+    List<ExchangeRate> findByCurrencyFromAndCurrencyTo(
+            @Param("currencyFrom") String currencyFrom,
+            @Param("currencyTo") String currencyTo);
 }
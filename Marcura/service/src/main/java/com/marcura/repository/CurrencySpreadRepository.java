@@ -2,12 +2,18 @@ package com.marcura.repository;
 
 import com.marcura.model.entity.CurrencySpread;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CurrencySpreadRepository extends JpaRepository<CurrencySpread, Long> {
 
     Optional<CurrencySpread> findFirstByCurrencyOrderByCreatedAtDesc(String currency);
+
+    @Query(value = "SELECT DISTINCT ON (currency) * FROM currency_spread ORDER BY currency, created_at DESC",
+            nativeQuery = true)
+    List<CurrencySpread> findLatest();
 }
@@ -0,0 +1,154 @@
+package com.marcura.repository;
+
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.IngestionResult;
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import com.marcura.model.projection.ExchangeRateBackfill;
+import com.marcura.model.projection.ExchangeRateBackfillChunk;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Timed("jdbc.repository.invocations")
+@Repository
+@RequiredArgsConstructor
+public class ExchangeRateBackfillRepository {
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final String CHUNK_STATUS_PENDING = "PENDING";
+    private static final String CHUNK_STATUS_DONE = "DONE";
+    private static final String CHUNK_STATUS_FAILED = "FAILED";
+    private static final String BACKFILL_COLUMNS = "id, base, start_date, end_date, status, created_at";
+    private static final String CREATE_BACKFILL_SQL =
+            "WITH backfill AS (" +
+                    "INSERT INTO exchange_rate_backfill (base, start_date, end_date, status) " +
+                    "VALUES (?, ?, ?, '" + STATUS_RUNNING + "') RETURNING " + BACKFILL_COLUMNS + "), " +
+                    "chunk AS (" +
+                    "INSERT INTO exchange_rate_backfill_chunk (backfill_id, start_date, end_date, status) " +
+                    "SELECT backfill.id, d::date, least(d::date + ?, backfill.end_date), " +
+                    "'" + CHUNK_STATUS_PENDING + "' " +
+                    "FROM backfill, generate_series(backfill.start_date, backfill.end_date, " +
+                    "make_interval(days => ?)) AS d) " +
+                    "SELECT " + BACKFILL_COLUMNS + " FROM backfill";
+    private static final String FIND_BACKFILL_SQL =
+            "SELECT " + BACKFILL_COLUMNS + " FROM exchange_rate_backfill WHERE id = ?";
+    private static final String FIND_UNFINISHED_BACKFILL_SQL =
+            "SELECT " + BACKFILL_COLUMNS + " FROM exchange_rate_backfill " +
+                    "WHERE base = ? AND start_date = ? AND end_date = ? AND status <> '" + STATUS_SUCCEEDED + "' " +
+                    "ORDER BY id DESC LIMIT 1";
+    private static final String FIND_INTERRUPTED_BACKFILLS_SQL =
+            "SELECT " + BACKFILL_COLUMNS + " FROM exchange_rate_backfill " +
+                    "WHERE status = '" + STATUS_RUNNING + "' ORDER BY id";
+    private static final String UPDATE_BACKFILL_STATUS_SQL =
+            "UPDATE exchange_rate_backfill SET status = ? WHERE id = ?";
+    private static final String FINISH_BACKFILL_SQL =
+            "UPDATE exchange_rate_backfill SET status = '" + STATUS_SUCCEEDED + "', finished_at = now() WHERE id = ?";
+    private static final String FIND_CHUNKS_SQL =
+            "SELECT start_date, end_date, status, inserted, updated, unchanged, changed_currencies_to " +
+                    "FROM exchange_rate_backfill_chunk WHERE backfill_id = ? ORDER BY start_date";
+    private static final String COMPLETE_CHUNK_SQL =
+            "UPDATE exchange_rate_backfill_chunk SET status = '" + CHUNK_STATUS_DONE + "', " +
+                    "attempts = attempts + ?, inserted = ?, updated = ?, unchanged = ?, changed_currencies_to = ?, " +
+                    "finished_at = now(), error = NULL WHERE backfill_id = ? AND start_date = ?";
+    private static final String FAIL_CHUNK_SQL =
+            "UPDATE exchange_rate_backfill_chunk SET status = '" + CHUNK_STATUS_FAILED + "', " +
+                    "attempts = attempts + ?, error = ? WHERE backfill_id = ? AND start_date = ?";
+    private static final RowMapper<ExchangeRateBackfill> BACKFILL_ROW_MAPPER =
+            (rs, rowNum) -> new ExchangeRateBackfill(rs.getLong("id"),
+                                                     rs.getString("base"),
+                                                     rs.getDate("start_date").toLocalDate(),
+                                                     rs.getDate("end_date").toLocalDate(),
+                                                     rs.getString("status"),
+                                                     rs.getTimestamp("created_at").toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the backfill together with its chunks of {@code chunkDays} days, the last one possibly shorter.
+     */
+    public ExchangeRateBackfill createBackfill(String base, LocalDate startDate, LocalDate endDate, int chunkDays) {
+        return jdbcTemplate.queryForObject(CREATE_BACKFILL_SQL, BACKFILL_ROW_MAPPER, base, Date.valueOf(startDate),
+                                           Date.valueOf(endDate), chunkDays - 1, chunkDays);
+    }
+
+    public Optional<ExchangeRateBackfill> findBackfill(long id) {
+        return jdbcTemplate.query(FIND_BACKFILL_SQL, BACKFILL_ROW_MAPPER, id).stream().findFirst();
+    }
+
+    public Optional<ExchangeRateBackfill> findUnfinishedBackfill(String base, LocalDate startDate,
+                                                                 LocalDate endDate) {
+        return jdbcTemplate.query(FIND_UNFINISHED_BACKFILL_SQL, BACKFILL_ROW_MAPPER, base, Date.valueOf(startDate),
+                                  Date.valueOf(endDate))
+                           .stream()
+                           .findFirst();
+    }
+
+    /**
+     * @return backfills left running, either in progress on another instance or stopped half-way with it
+     */
+    public List<ExchangeRateBackfill> findInterruptedBackfills() {
+        return jdbcTemplate.query(FIND_INTERRUPTED_BACKFILLS_SQL, BACKFILL_ROW_MAPPER);
+    }
+
+    public void markBackfillRunning(long id) {
+        jdbcTemplate.update(UPDATE_BACKFILL_STATUS_SQL, STATUS_RUNNING, id);
+    }
+
+    public void markBackfillSucceeded(long id) {
+        jdbcTemplate.update(FINISH_BACKFILL_SQL, id);
+    }
+
+    public void markBackfillFailed(long id) {
+        jdbcTemplate.update(UPDATE_BACKFILL_STATUS_SQL, STATUS_FAILED, id);
+    }
+
+    public List<ExchangeRateBackfillChunk> findChunks(long backfillId) {
+        return jdbcTemplate.query(FIND_CHUNKS_SQL, (rs, rowNum) -> toChunk(rs), backfillId);
+    }
+
+    public void completeChunk(long backfillId, LocalDate startDate, int attempts, IngestionResult ingestionResult) {
+        final var upsertResult = ingestionResult.upsertResult();
+        final var changedCurrenciesTo = ingestionResult.changes() == null
+                ? new String[0]
+                : ingestionResult.changes().currencyPairs().stream().map(CurrencyPair::to).toArray(String[]::new);
+        jdbcTemplate.update(connection -> {
+            final var statement = connection.prepareStatement(COMPLETE_CHUNK_SQL);
+            statement.setInt(1, attempts);
+            statement.setInt(2, upsertResult.inserted());
+            statement.setInt(3, upsertResult.updated());
+            statement.setInt(4, upsertResult.unchanged());
+            statement.setArray(5, connection.createArrayOf("varchar", changedCurrenciesTo));
+            statement.setLong(6, backfillId);
+            statement.setDate(7, Date.valueOf(startDate));
+            return statement;
+        });
+    }
+
+    public void failChunk(long backfillId, LocalDate startDate, int attempts, String error) {
+        jdbcTemplate.update(FAIL_CHUNK_SQL, attempts, error, backfillId, Date.valueOf(startDate));
+    }
+
+    private static ExchangeRateBackfillChunk toChunk(ResultSet rs) throws SQLException {
+        final var done = CHUNK_STATUS_DONE.equals(rs.getString("status"));
+        final var changedCurrenciesTo = rs.getArray("changed_currencies_to");
+        return new ExchangeRateBackfillChunk(rs.getDate("start_date").toLocalDate(),
+                                             rs.getDate("end_date").toLocalDate(),
+                                             done,
+                                             done ? new ExchangeRateUpsertResult(rs.getInt("inserted"),
+                                                                                 rs.getInt("updated"),
+                                                                                 rs.getInt("unchanged")) : null,
+                                             changedCurrenciesTo == null
+                                                     ? List.of()
+                                                     : List.of((String[]) changedCurrenciesTo.getArray()));
+    }
+}
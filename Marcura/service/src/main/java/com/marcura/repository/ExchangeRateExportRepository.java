@@ -0,0 +1,69 @@
+package com.marcura.repository;
+
+import com.marcura.model.projection.HistoricalExchangeRate;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+@Timed("jdbc.repository.invocations")
+@Repository
+@RequiredArgsConstructor
+public class ExchangeRateExportRepository {
+    private static final String SELECT_EXCHANGE_RATES_SQL =
+            "SELECT currency_from, currency_to, rate, exchange_date FROM currency_exchange_rate WHERE TRUE";
+    private static final String ORDER_BY_SQL = " ORDER BY currency_from, currency_to, exchange_date";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${export.fetch-size}")
+    private int fetchSize;
+
+    /**
+     * Reads matching rows through a server-side cursor, {@code export.fetch-size} rows per round trip, and hands
+     * them one by one to the consumer. PgJDBC only uses a cursor outside of auto-commit, hence the transaction.
+     */
+    @Transactional(readOnly = true)
+    public void streamExchangeRates(String currencyFrom, String currencyTo, LocalDate start, LocalDate end,
+                                    Consumer<HistoricalExchangeRate> consumer) {
+        final var sql = new StringBuilder(SELECT_EXCHANGE_RATES_SQL);
+        final var args = new ArrayList<>(4);
+        if (currencyFrom != null) {
+            sql.append(" AND currency_from = ?");
+            args.add(currencyFrom);
+        }
+        if (currencyTo != null) {
+            sql.append(" AND currency_to = ?");
+            args.add(currencyTo);
+        }
+        if (start != null) {
+            sql.append(" AND exchange_date >= ?");
+            args.add(Date.valueOf(start));
+        }
+        if (end != null) {
+            sql.append(" AND exchange_date <= ?");
+            args.add(Date.valueOf(end));
+        }
+        sql.append(ORDER_BY_SQL);
+        jdbcTemplate.query(connection -> {
+            final var statement = connection.prepareStatement(sql.toString());
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, rs -> {
+            consumer.accept(new HistoricalExchangeRate(rs.getString("currency_from"),
+                                                       rs.getString("currency_to"),
+                                                       rs.getBigDecimal("rate"),
+                                                       rs.getDate("exchange_date").toLocalDate()));
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package com.marcura.repository;
+
+import com.marcura.model.NumberedExchangeRate;
+import com.marcura.model.projection.ImportedExchangeRates;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+@Timed("jdbc.repository.invocations")
+@Repository
+@RequiredArgsConstructor
+public class ExchangeRateImportRepository {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String CREATE_STAGING_TABLE_SQL =
+            "CREATE TEMPORARY TABLE currency_exchange_rate_import (" +
+                    "line BIGINT NOT NULL, " +
+                    "currency_from VARCHAR(255) NOT NULL, " +
+                    "currency_to VARCHAR(255) NOT NULL, " +
+                    "rate NUMERIC(19, 6) NOT NULL, " +
+                    "exchange_date DATE NOT NULL) ON COMMIT DROP";
+    private static final String COPY_STAGING_TABLE_SQL =
+            "COPY currency_exchange_rate_import (line, currency_from, currency_to, rate, exchange_date) " +
+                    "FROM STDIN (FORMAT csv)";
+    private static final String MERGE_STAGING_TABLE_SQL =
+            "WITH staged AS (" +
+                    "SELECT DISTINCT ON (currency_from, currency_to, exchange_date) " +
+                    "currency_from, currency_to, rate, exchange_date " +
+                    "FROM currency_exchange_rate_import " +
+                    "ORDER BY currency_from, currency_to, exchange_date, line DESC), " +
+                    "merged AS (" +
+                    "INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                    "SELECT currency_from, currency_to, rate, exchange_date FROM staged " +
+                    "ON CONFLICT (currency_from, currency_to, exchange_date) DO UPDATE SET rate = EXCLUDED.rate " +
+                    "WHERE currency_exchange_rate.rate IS DISTINCT FROM EXCLUDED.rate " +
+                    "RETURNING currency_from, currency_to, (created_at = now()) AS inserted) " +
+                    "SELECT s.currency_from, s.currency_to, s.staged, s.earliest_exchange_date, " +
+                    "s.latest_exchange_date, " +
+                    "coalesce(m.inserted, 0) AS inserted, coalesce(m.updated, 0) AS updated " +
+                    "FROM (SELECT currency_from, currency_to, count(*) AS staged, " +
+                    "min(exchange_date) AS earliest_exchange_date, max(exchange_date) AS latest_exchange_date " +
+                    "FROM staged " +
+                    "GROUP BY currency_from, currency_to) AS s " +
+                    "LEFT JOIN (SELECT currency_from, currency_to, count(*) FILTER (WHERE inserted) AS inserted, " +
+                    "count(*) FILTER (WHERE NOT inserted) AS updated FROM merged " +
+                    "GROUP BY currency_from, currency_to) AS m USING (currency_from, currency_to)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Streams the rows into a session-local staging table with COPY and merges them into currency_exchange_rate
+     * with a single statement. Rows are numbered by {@link NumberedExchangeRate#line()} so that the last occurrence
+     * of a duplicated (from, to, date) wins.
+     */
+    @Transactional
+    public List<ImportedExchangeRates> importExchangeRates(Iterator<NumberedExchangeRate> exchangeRates) {
+        jdbcTemplate.execute(CREATE_STAGING_TABLE_SQL);
+        copyToStagingTable(exchangeRates);
+        return jdbcTemplate.query(MERGE_STAGING_TABLE_SQL,
+                                  (rs, rowNum) -> new ImportedExchangeRates(rs.getString("currency_from"),
+                                                                            rs.getString("currency_to"),
+                                                                            rs.getLong("staged"),
+                                                                            rs.getLong("inserted"),
+                                                                            rs.getLong("updated"),
+                                                                            rs.getDate("earliest_exchange_date")
+                                                                              .toLocalDate(),
+                                                                            rs.getDate("latest_exchange_date")
+                                                                              .toLocalDate()));
+    }
+
+    private void copyToStagingTable(Iterator<NumberedExchangeRate> exchangeRates) {
+        final var connection = DataSourceUtils.getConnection(dataSource);
+        CopyIn copyIn = null;
+        try {
+            copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_TABLE_SQL);
+            final var buffer = new StringBuilder(COPY_BUFFER_SIZE + 512);
+            while (exchangeRates.hasNext()) {
+                appendCsvRow(buffer, exchangeRates.next());
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+            writeToCopy(copyIn, buffer);
+            copyIn.endCopy();
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Cannot copy exchange rates to staging table", ex);
+        } finally {
+            cancelCopyIfActive(copyIn);
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static void appendCsvRow(StringBuilder buffer, NumberedExchangeRate numberedExchangeRate) {
+        final var exchangeRate = numberedExchangeRate.exchangeRate();
+        buffer.append(numberedExchangeRate.line()).append(',');
+        appendCsvValue(buffer, exchangeRate.from()).append(',');
+        appendCsvValue(buffer, exchangeRate.to()).append(',');
+        buffer.append(exchangeRate.exchange().toPlainString()).append(',')
+              .append(exchangeRate.date())
+              .append('\n');
+    }
+
+    private static StringBuilder appendCsvValue(StringBuilder buffer, String value) {
+        return buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        final var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void cancelCopyIfActive(CopyIn copyIn) {
+        try {
+            if (copyIn != null && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException ignored) {
+            // the surrounding transaction is rolled back anyway
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.marcura.repository;
+
+import com.marcura.model.CurrencyDate;
+import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.projection.AsOfExchangeRate;
+import com.marcura.model.projection.UpsertedExchangeRate;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@Timed("jdbc.repository.invocations")
+@Repository
+@RequiredArgsConstructor
+public class ExchangeRateJdbcRepository {
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+    private static final String INCREMENT_ACCESS_COUNTERS_SQL =
+            "UPDATE currency_exchange_rate AS r SET access_counter = r.access_counter + v.delta " +
+                    "FROM (VALUES %s) AS v(id, delta) WHERE r.id = v.id";
+    private static final String INCREMENT_ACCESS_COUNTERS_VALUES_ROW = "(CAST(? AS INTEGER), CAST(? AS INTEGER))";
+    // xmax cannot be returned from a partitioned table, rows created by this transaction are the inserted ones
+    private static final String UPSERT_EXCHANGE_RATES_SQL =
+            "INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) VALUES %s " +
+                    "ON CONFLICT (currency_from, currency_to, exchange_date) DO UPDATE SET rate = EXCLUDED.rate " +
+                    "WHERE currency_exchange_rate.rate IS DISTINCT FROM EXCLUDED.rate " +
+                    "RETURNING currency_from, currency_to, exchange_date, (created_at = now()) AS inserted";
+    private static final String UPSERT_EXCHANGE_RATES_VALUES_ROW = "(?, ?, ?, ?)";
+    // as-of lookups read the two yearly partitions from here first, see CurrencyExchangeRateRepository
+    private static final String AS_OF_WINDOW_START =
+            "CAST(date_trunc('year', CAST(%s AS TIMESTAMP)) - INTERVAL '1 year' AS DATE)";
+    private static final String FIND_AS_OF_EXCHANGE_RATES_SQL =
+            "SELECT q.currency, q.exchange_date, r.id, r.rate " +
+                    "FROM unnest(?, ?) AS q(currency, exchange_date) " +
+                    "LEFT JOIN LATERAL (" +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = ? AND currency_to = q.currency AND exchange_date <= q.exchange_date " +
+                    "AND exchange_date >= " + AS_OF_WINDOW_START.formatted("q.exchange_date") + " " +
+                    "ORDER BY exchange_date DESC LIMIT 1) " +
+                    "UNION ALL " +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = ? AND currency_to = q.currency " +
+                    "AND exchange_date < " + AS_OF_WINDOW_START.formatted("q.exchange_date") + " " +
+                    "ORDER BY exchange_date DESC LIMIT 1) " +
+                    "LIMIT 1) AS r ON TRUE";
+    private static final String FIND_AS_OF_EXCHANGE_RATES_FOR_ALL_CURRENCIES_SQL =
+            "WITH RECURSIVE currency AS (" +
+                    "(SELECT currency_to FROM currency_exchange_rate WHERE currency_from = ? " +
+                    "ORDER BY currency_to LIMIT 1) " +
+                    "UNION ALL " +
+                    "SELECT (SELECT r.currency_to FROM currency_exchange_rate AS r " +
+                    "WHERE r.currency_from = ? AND r.currency_to > currency.currency_to " +
+                    "ORDER BY r.currency_to LIMIT 1) " +
+                    "FROM currency WHERE currency.currency_to IS NOT NULL) " +
+                    "SELECT currency.currency_to AS currency, r.id, r.rate " +
+                    "FROM currency " +
+                    "JOIN LATERAL (" +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = ? AND currency_to = currency.currency_to AND exchange_date <= ? " +
+                    "AND exchange_date >= " + AS_OF_WINDOW_START.formatted("?") + " " +
+                    "ORDER BY exchange_date DESC LIMIT 1) " +
+                    "UNION ALL " +
+                    "(SELECT id, rate FROM currency_exchange_rate " +
+                    "WHERE currency_from = ? AND currency_to = currency.currency_to " +
+                    "AND exchange_date < " + AS_OF_WINDOW_START.formatted("?") + " " +
+                    "ORDER BY exchange_date DESC LIMIT 1) " +
+                    "LIMIT 1) AS r ON TRUE";
+    private static final String FIND_MOST_ACCESSED_EXCHANGE_RATES_SQL =
+            "SELECT currency_to, exchange_date FROM currency_exchange_rate " +
+                    "WHERE currency_from = ? AND access_counter > 0 ORDER BY access_counter DESC LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${ingestion.upsert-chunk-size}")
+    private int upsertChunkSize;
+
+    public void incrementAccessCounters(Map<Long, Long> accessCountDeltas) {
+        final var entries = List.copyOf(accessCountDeltas.entrySet());
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            final var chunk = entries.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entries.size()));
+            final var args = new ArrayList<>(chunk.size() * 2);
+            for (final var entry : chunk) {
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            jdbcTemplate.update(INCREMENT_ACCESS_COUNTERS_SQL.formatted(
+                    valuesRows(INCREMENT_ACCESS_COUNTERS_VALUES_ROW, chunk.size())), args.toArray());
+        }
+    }
+
+    @Transactional
+    public List<UpsertedExchangeRate> upsertExchangeRates(List<ExchangeRate> exchangeRates) {
+        final var upsertedExchangeRates = new ArrayList<UpsertedExchangeRate>();
+        for (int from = 0; from < exchangeRates.size(); from += upsertChunkSize) {
+            final var chunk = exchangeRates.subList(from, Math.min(from + upsertChunkSize, exchangeRates.size()));
+            final var args = new ArrayList<>(chunk.size() * 4);
+            for (final var exchangeRate : chunk) {
+                args.add(exchangeRate.getCurrencyFrom());
+                args.add(exchangeRate.getCurrencyTo());
+                args.add(exchangeRate.getRate());
+                args.add(Date.valueOf(exchangeRate.getExchangeDate()));
+            }
+            upsertedExchangeRates.addAll(jdbcTemplate.query(
+                    UPSERT_EXCHANGE_RATES_SQL.formatted(valuesRows(UPSERT_EXCHANGE_RATES_VALUES_ROW, chunk.size())),
+                    (rs, rowNum) -> new UpsertedExchangeRate(rs.getString("currency_from"),
+                                                             rs.getString("currency_to"),
+                                                             rs.getDate("exchange_date").toLocalDate(),
+                                                             rs.getBoolean("inserted")),
+                    args.toArray()));
+        }
+        return upsertedExchangeRates;
+    }
+
+    @Transactional(readOnly = true)
+    public List<AsOfExchangeRate> findAsOfExchangeRates(String currencyFrom, Collection<CurrencyDate> currencyDates) {
+        final var currencies = currencyDates.stream().map(CurrencyDate::currency).toArray(String[]::new);
+        final var dates = currencyDates.stream().map(key -> Date.valueOf(key.date())).toArray(Date[]::new);
+        return jdbcTemplate.query(connection -> {
+            final var statement = connection.prepareStatement(FIND_AS_OF_EXCHANGE_RATES_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", currencies));
+            statement.setArray(2, connection.createArrayOf("date", dates));
+            statement.setString(3, currencyFrom);
+            statement.setString(4, currencyFrom);
+            return statement;
+        }, (rs, rowNum) -> {
+            final var id = (Number) rs.getObject("id");
+            return new AsOfExchangeRate(rs.getString("currency"),
+                                        rs.getDate("exchange_date").toLocalDate(),
+                                        id == null ? null : id.longValue(),
+                                        rs.getBigDecimal("rate"));
+        });
+    }
+
+    /**
+     * Latest rate on or before the date for every currency quoted against the given one. Distinct currencies are
+     * walked with a recursive skip scan over the unique index instead of reading the whole history.
+     */
+    @Transactional(readOnly = true)
+    public List<AsOfExchangeRate> findAsOfExchangeRatesForAllCurrencies(String currencyFrom, LocalDate date) {
+        return jdbcTemplate.query(FIND_AS_OF_EXCHANGE_RATES_FOR_ALL_CURRENCIES_SQL,
+                                  (rs, rowNum) -> new AsOfExchangeRate(rs.getString("currency"),
+                                                                       date,
+                                                                       ((Number) rs.getObject("id")).longValue(),
+                                                                       rs.getBigDecimal("rate")),
+                                  currencyFrom, currencyFrom, currencyFrom, Date.valueOf(date), Date.valueOf(date),
+                                  currencyFrom, Date.valueOf(date));
+    }
+
+    /**
+     * Currencies and dates of the rates quoted against the given currency that were read the most, most read first.
+     */
+    @Transactional(readOnly = true)
+    public List<CurrencyDate> findMostAccessedExchangeRates(String currencyFrom, int limit) {
+        return jdbcTemplate.query(FIND_MOST_ACCESSED_EXCHANGE_RATES_SQL,
+                                  (rs, rowNum) -> new CurrencyDate(rs.getString("currency_to"),
+                                                                   rs.getDate("exchange_date").toLocalDate()),
+                                  currencyFrom, limit);
+    }
+
+    private static String valuesRows(String valuesRow, int rows) {
+        return String.join(", ", Collections.nCopies(rows, valuesRow));
+    }
+}
@@ -0,0 +1,54 @@
+package com.marcura.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Yearly partitions of {@code currency_exchange_rate}, see the partitioning functions in the V5 migration.
+ */
+@Timed("jdbc.repository.invocations")
+@Repository
+@RequiredArgsConstructor
+public class ExchangeRatePartitionRepository {
+    private static final String CREATE_PARTITIONS_SQL = "SELECT create_currency_exchange_rate_partitions(?, ?)";
+    private static final String DETACH_PARTITIONS_SQL = "SELECT detach_currency_exchange_rate_partitions(?, ?)";
+    private static final String FIND_EARLIEST_UNPARTITIONED_EXCHANGE_DATE_SQL =
+            "SELECT min(exchange_date) FROM currency_exchange_rate_default";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the missing partitions for the years from {@code from} to {@code to}, moving their rates out of the
+     * default partition.
+     *
+     * @return number of partitions created
+     */
+    public int createPartitions(LocalDate from, LocalDate to) {
+        return jdbcTemplate.queryForObject(CREATE_PARTITIONS_SQL, Integer.class, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Detaches the partitions of the years ending on or before {@code before}, keeping them as
+     * {@code currency_exchange_rate_archive_y<year>} tables unless {@code dropDetached} is set.
+     *
+     * @return detached years
+     */
+    public List<Integer> detachPartitions(LocalDate before, boolean dropDetached) {
+        return jdbcTemplate.queryForList(DETACH_PARTITIONS_SQL, Integer.class, Date.valueOf(before), dropDetached);
+    }
+
+    /**
+     * @return earliest exchange date stored in the default partition, that is in a year without its own partition
+     */
+    public Optional<LocalDate> findEarliestUnpartitionedExchangeDate() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(FIND_EARLIEST_UNPARTITIONED_EXCHANGE_DATE_SQL,
+                                                               LocalDate.class));
+    }
+}
@@ -0,0 +1,130 @@
+package com.marcura.repository;
+
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.IngestionResult;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.model.projection.FinishedIngestionRun;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+
+@Timed("jdbc.repository.invocations")
+@Repository
+@RequiredArgsConstructor
+public class IngestionRunRepository {
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final String START_RUN_SQL =
+            "INSERT INTO ingestion_run (job, scheduled_at, instance, status) VALUES (?, ?, ?, '" + STATUS_RUNNING + "') " +
+                    "ON CONFLICT (job, scheduled_at) DO UPDATE SET instance = EXCLUDED.instance, " +
+                    "status = EXCLUDED.status, started_at = now(), finished_at = NULL, error = NULL " +
+                    "WHERE ingestion_run.status <> '" + STATUS_SUCCEEDED + "' " +
+                    "RETURNING id";
+    private static final String RECORD_RUN_SQL =
+            "INSERT INTO ingestion_run (job, scheduled_at, instance, status) " +
+                    "VALUES (?, clock_timestamp(), ?, '" + STATUS_RUNNING + "') RETURNING id";
+    private static final String FINISH_RUN_SQL =
+            "UPDATE ingestion_run SET status = '" + STATUS_SUCCEEDED + "', finished_at = clock_timestamp(), " +
+                    "inserted = ?, updated = ?, unchanged = ?, currencies_from = ?, currencies_to = ?, " +
+                    "earliest_exchange_date = ?, latest_exchange_date = ? WHERE id = ?";
+    private static final String FAIL_RUN_SQL =
+            "UPDATE ingestion_run SET status = '" + STATUS_FAILED + "', finished_at = clock_timestamp(), error = ? " +
+                    "WHERE id = ?";
+    private static final String FIND_LATEST_FINISHED_AT_SQL =
+            "SELECT coalesce(max(finished_at), now()) FROM ingestion_run";
+    private static final String FIND_FINISHED_RUNS_SQL =
+            "SELECT id, job, instance, finished_at, currencies_from, currencies_to, earliest_exchange_date, " +
+                    "latest_exchange_date FROM ingestion_run " +
+                    "WHERE finished_at > ? AND status = '" + STATUS_SUCCEEDED + "' AND instance <> ? " +
+                    "ORDER BY finished_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return id of the started run, or null if a run of the job scheduled at the same time already succeeded
+     */
+    public Long startRun(String job, Instant scheduledAt, String instance) {
+        final var ids = jdbcTemplate.queryForList(START_RUN_SQL, Long.class, job, Timestamp.from(scheduledAt),
+                                                  instance);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * Records a finished run of an ingestion that was not scheduled, stamped with the time it is recorded at.
+     */
+    public void recordRun(String job, String instance, IngestionResult ingestionResult) {
+        final var id = jdbcTemplate.queryForObject(RECORD_RUN_SQL, Long.class, job, instance);
+        finishRun(id, ingestionResult);
+    }
+
+    public void finishRun(long id, IngestionResult ingestionResult) {
+        final var upsertResult = ingestionResult.upsertResult();
+        final var changes = ingestionResult.changes();
+        jdbcTemplate.update(connection -> {
+            final var statement = connection.prepareStatement(FINISH_RUN_SQL);
+            statement.setInt(1, upsertResult.inserted());
+            statement.setInt(2, upsertResult.updated());
+            statement.setInt(3, upsertResult.unchanged());
+            if (changes == null) {
+                statement.setArray(4, null);
+                statement.setArray(5, null);
+                statement.setDate(6, null);
+                statement.setDate(7, null);
+            } else {
+                final var currencyPairs = List.copyOf(changes.currencyPairs());
+                statement.setArray(4, connection.createArrayOf(
+                        "varchar", currencyPairs.stream().map(CurrencyPair::from).toArray()));
+                statement.setArray(5, connection.createArrayOf(
+                        "varchar", currencyPairs.stream().map(CurrencyPair::to).toArray()));
+                statement.setDate(6, Date.valueOf(changes.earliestExchangeDate()));
+                statement.setDate(7, Date.valueOf(changes.latestExchangeDate()));
+            }
+            statement.setLong(8, id);
+            return statement;
+        });
+    }
+
+    public void failRun(long id, String error) {
+        jdbcTemplate.update(FAIL_RUN_SQL, error, id);
+    }
+
+    public Instant findLatestFinishedAt() {
+        return jdbcTemplate.queryForObject(FIND_LATEST_FINISHED_AT_SQL, Timestamp.class).toInstant();
+    }
+
+    public List<FinishedIngestionRun> findFinishedRuns(Instant finishedAfter, String excludedInstance) {
+        return jdbcTemplate.query(FIND_FINISHED_RUNS_SQL,
+                                  (rs, rowNum) -> new FinishedIngestionRun(rs.getLong("id"),
+                                                                           rs.getString("job"),
+                                                                           rs.getString("instance"),
+                                                                           rs.getTimestamp("finished_at").toInstant(),
+                                                                           toChanges(rs)),
+                                  Timestamp.from(finishedAfter), excludedInstance);
+    }
+
+    private static ExchangeRatesChangedEvent toChanges(ResultSet rs) throws SQLException {
+        final var currenciesFrom = rs.getArray("currencies_from");
+        final var currenciesTo = rs.getArray("currencies_to");
+        if (currenciesFrom == null || currenciesTo == null) {
+            return null;
+        }
+        final var from = (String[]) currenciesFrom.getArray();
+        final var to = (String[]) currenciesTo.getArray();
+        final var currencyPairs = new HashSet<CurrencyPair>(from.length);
+        for (int i = 0; i < from.length; i++) {
+            currencyPairs.add(new CurrencyPair(from[i], to[i]));
+        }
+        return new ExchangeRatesChangedEvent(currencyPairs, rs.getDate("earliest_exchange_date").toLocalDate(),
+                                             rs.getDate("latest_exchange_date").toLocalDate());
+    }
+}
@@ -0,0 +1,100 @@
+package com.marcura.service;
+
+import com.marcura.model.CurrencyPair;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times conversions by the path that answered them and counts converted currency pairs. Pair counts are kept in
+ * memory and only the {@code metrics.hot-currency-pairs.top} busiest pairs of every interval are published, so
+ * the number of series stays bounded whatever currencies are requested.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConversionMetrics {
+    private final MeterRegistry meterRegistry;
+    private final EnumMap<Path, Timer> successTimers = new EnumMap<>(Path.class);
+    private final EnumMap<Path, Timer> notFoundTimers = new EnumMap<>(Path.class);
+    private final AtomicReference<ConcurrentHashMap<CurrencyPair, LongAdder>> pairConversions =
+            new AtomicReference<>(new ConcurrentHashMap<>());
+
+    @Value("${metrics.hot-currency-pairs.top}")
+    private int hotCurrencyPairs;
+
+    private MultiGauge hotCurrencyPairsGauge;
+
+    public enum Path {
+        MATRIX, CACHE, QUERY, BATCH, RESPONSE_CACHE
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        for (final var path : Path.values()) {
+            successTimers.put(path, conversionTimer(path, "SUCCESS"));
+            notFoundTimers.put(path, conversionTimer(path, "NOT_FOUND"));
+        }
+        hotCurrencyPairsGauge = MultiGauge.builder("exchange.rate.pair.conversions")
+                                          .description("Conversions of the busiest currency pairs during the last interval")
+                                          .register(meterRegistry);
+    }
+
+    public void recordSuccess(Path path, long startNanos) {
+        successTimers.get(path).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordNotFound(Path path, long startNanos) {
+        notFoundTimers.get(path).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPair(String from, String to) {
+        final var conversions = pairConversions.get();
+        final var pair = new CurrencyPair(from, to);
+        var counter = conversions.get(pair);
+        if (counter == null) {
+            counter = conversions.computeIfAbsent(pair, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.hot-currency-pairs.interval}")
+    public void publishHotCurrencyPairs() {
+        final Map<CurrencyPair, LongAdder> conversions = pairConversions.getAndSet(new ConcurrentHashMap<>());
+        final List<MultiGauge.Row<?>> rows = conversions.entrySet()
+                                                        .stream()
+                                                        .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                                                        .sorted(Map.Entry.<CurrencyPair, Long>comparingByValue(
+                                                                Comparator.reverseOrder()))
+                                                        .limit(hotCurrencyPairs)
+                                                        .<MultiGauge.Row<?>>map(entry -> MultiGauge.Row.of(
+                                                                Tags.of("from", entry.getKey().from(),
+                                                                        "to", entry.getKey().to()),
+                                                                entry.getValue()))
+                                                        .toList();
+        hotCurrencyPairsGauge.register(rows, true);
+    }
+
+    private Timer conversionTimer(Path path, String outcome) {
+        return Timer.builder("exchange.rate.conversion")
+                    .description("Exchange rate conversions by the path that answered them")
+                    .tag("path", path.name().toLowerCase(Locale.ROOT))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+    }
+}
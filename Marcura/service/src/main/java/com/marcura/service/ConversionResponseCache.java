@@ -0,0 +1,173 @@
+package com.marcura.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.api.response.CurrencyExchange;
+import com.marcura.model.cache.ConversionResponse;
+import com.marcura.model.event.CurrencySpreadsChangedEvent;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Single conversions already serialized to JSON together with a strong ETag over their bytes, so that hot
+ * conversions are answered without touching the rates or Jackson. The bytes are a function of the rate and spread
+ * rows the conversion read, entries are dropped as soon as any of those rows changes, here or on another replica, see
+ * {@link IngestionRunCoordinator}. Entries also expire after {@code expire-after-write}, and those of today after the
+ * max-age clients cache them for at the latest, should a change not reach this replica.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversionResponseCache {
+    private static final String CACHE_NAME = "conversionResponses";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.conversion-response.enabled}")
+    private boolean enabled;
+
+    @Value("${cache.conversion-response.maximum-size}")
+    private long maximumSize;
+
+    @Value("${cache.conversion-response.expire-after-write}")
+    private Duration expireAfterWrite;
+
+    @Value("${http-cache.exchange.today-max-age}")
+    private Duration todayMaxAge;
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    private Cache<ConversionKey, ConversionResponse> cache;
+    private long generation;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfter(new WriteExpiry(expireAfterWrite.toNanos(),
+                                                     Math.min(expireAfterWrite.toNanos(), todayMaxAge.toNanos())))
+                        .recordStats()
+                        .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public ConversionResponse find(String from, String to, LocalDate date) {
+        return enabled ? cache.getIfPresent(new ConversionKey(from, to, date)) : null;
+    }
+
+    /**
+     * @return how long the response of the conversion is kept for from now on, if it is cached
+     */
+    public Optional<Duration> getExpiresAfter(String from, String to, LocalDate date) {
+        final var expiresAfter = cache.policy()
+                                      .expireVariably()
+                                      .orElseThrow()
+                                      .getExpiresAfter(new ConversionKey(from, to, date), TimeUnit.NANOSECONDS);
+        return expiresAfter.isPresent() ? Optional.of(Duration.ofNanos(expiresAfter.getAsLong())) : Optional.empty();
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Serializes the conversion and keeps it unless rates or spreads changed since {@code readGeneration}, the
+     * generation observed before the conversion read them.
+     */
+    public ConversionResponse put(LocalDate date, CurrencyExchange exchange, long fromRateId, long toRateId,
+                                  long readGeneration) {
+        final byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(exchange);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        final var response = new ConversionResponse(body, '"' + DigestUtils.md5DigestAsHex(body) + '"', fromRateId,
+                                                     toRateId);
+        if (enabled) {
+            synchronized (this) {
+                if (readGeneration == generation) {
+                    cache.put(new ConversionKey(exchange.from(), exchange.to(), date), response);
+                }
+            }
+        }
+        return response;
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onCurrencySpreadsChanged(CurrencySpreadsChangedEvent event) {
+        log.debug("Dropping conversion responses for {}", event.currencies());
+        invalidate(event.currencies(), LocalDate.MIN);
+    }
+
+    @EventListener
+    public void onExchangeRatesChanged(ExchangeRatesChangedEvent event) {
+        final var currencies = event.currencyPairs()
+                                    .stream()
+                                    .filter(pair -> baseCurrency.equalsIgnoreCase(pair.from()))
+                                    .map(CurrencyPair::to)
+                                    .collect(Collectors.toSet());
+        if (!currencies.isEmpty()) {
+            log.debug("Dropping conversion responses for {} from {}", currencies, event.earliestExchangeDate());
+            invalidate(currencies, event.earliestExchangeDate());
+        }
+    }
+
+    private synchronized void invalidate(Set<String> currencies, LocalDate earliestDate) {
+        generation++;
+        cache.asMap()
+             .keySet()
+             .removeIf(key -> !key.date().isBefore(earliestDate)
+                     && (currencies.contains(key.from()) || currencies.contains(key.to())));
+    }
+
+    private record ConversionKey(String from, String to, LocalDate date) {
+    }
+
+    private record WriteExpiry(long pastDateNanos, long todayNanos)
+            implements Expiry<ConversionKey, ConversionResponse> {
+        @Override
+        public long expireAfterCreate(ConversionKey key, ConversionResponse response, long currentTime) {
+            return key.date().isBefore(LocalDate.now()) ? pastDateNanos : todayNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(ConversionKey key, ConversionResponse response, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ConversionKey key, ConversionResponse response, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
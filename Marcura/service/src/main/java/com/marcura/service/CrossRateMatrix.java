@@ -0,0 +1,87 @@
+package com.marcura.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Immutable N×N table of spread-adjusted exchanges for one date, indexed by {@link CurrencyOrdinals}. Each cell
+ * keeps the unscaled exchange calculated by {@link ExchangeRateCalculator}, all of them have
+ * {@link ExchangeRateCalculator#EXCHANGE_SCALE} decimals.
+ */
+public final class CrossRateMatrix {
+    public static final long NO_RATE_ID = 0;
+    private static final long ABSENT = -1;
+    private static final long NO_EXCHANGE = Long.MIN_VALUE;
+
+    private final LocalDate date;
+    private final int size;
+    private final long[] rateIds;
+    private final long[] unscaledExchanges;
+
+    CrossRateMatrix(LocalDate date, long[] rates, long[] rateIds, int[] spreads) {
+        this.date = date;
+        this.size = rates.length;
+        this.rateIds = new long[size];
+        this.unscaledExchanges = new long[size * size];
+        for (int from = 0; from < size; from++) {
+            this.rateIds[from] = rates[from] == ABSENT ? ABSENT : rateIds[from];
+            for (int to = 0; to < size; to++) {
+                final var cell = from * size + to;
+                unscaledExchanges[cell] = NO_EXCHANGE;
+                if (rates[from] != ABSENT && rates[to] != ABSENT) {
+                    setExchange(cell, rates[from], rates[to], spreads[from], spreads[to]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return rates to pass for the currencies of a new matrix, with every currency absent
+     */
+    static long[] absentRates(int size) {
+        final var rates = new long[size];
+        Arrays.fill(rates, ABSENT);
+        return rates;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public boolean contains(int ordinal) {
+        return ordinal >= 0 && ordinal < size && rateIds[ordinal] != ABSENT;
+    }
+
+    public long getRateId(int ordinal) {
+        return rateIds[ordinal];
+    }
+
+    /**
+     * @return the exchange for currencies that are both {@link #contains(int) contained}, or null if the value does
+     * not fit in a long and has to be calculated per request
+     */
+    public BigDecimal getExchange(int fromOrdinal, int toOrdinal) {
+        final var unscaledExchange = unscaledExchanges[fromOrdinal * size + toOrdinal];
+        return unscaledExchange == NO_EXCHANGE
+                ? null
+                : BigDecimal.valueOf(unscaledExchange, ExchangeRateCalculator.EXCHANGE_SCALE);
+    }
+
+    public long getSizeInBytes() {
+        return estimateSizeInBytes(size);
+    }
+
+    private static long estimateSizeInBytes(int size) {
+        return (long) size * size * Long.BYTES + (long) size * Long.BYTES;
+    }
+
+    private void setExchange(int cell, long rateFrom, long rateTo, int spreadFrom, int spreadTo) {
+        try {
+            unscaledExchanges[cell] = ExchangeRateCalculator.calculateUnscaledExchange(rateFrom, rateTo, spreadFrom,
+                                                                                       spreadTo);
+        } catch (ArithmeticException ex) {
+            unscaledExchanges[cell] = NO_EXCHANGE;
+        }
+    }
+}
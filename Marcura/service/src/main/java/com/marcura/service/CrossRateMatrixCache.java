@@ -0,0 +1,178 @@
+package com.marcura.service;
+
+import com.marcura.model.event.CurrencySpreadsChangedEvent;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.repository.ExchangeRateJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps a {@link CrossRateMatrix} for the most recent dates that fit into {@code cache.cross-rate-matrix.memory-budget}.
+ * A matrix is built when rates land for its date or on the first lookup of a date inside the resident window.
+ * Dates older than every resident one are not built once the budget is used up, callers fall back to calculating
+ * the exchange per request.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrossRateMatrixCache {
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final CurrencyOrdinals currencyOrdinals;
+    private final CurrencySpreadCache currencySpreadCache;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentSkipListMap<LocalDate, CrossRateMatrix> matrices = new ConcurrentSkipListMap<>();
+    private final SingleFlight<MatrixKey, CrossRateMatrix> builds = new SingleFlight<>(Duration.ZERO);
+
+    @Value("${cache.cross-rate-matrix.enabled}")
+    private boolean enabled;
+
+    @Value("${cache.cross-rate-matrix.memory-budget}")
+    private DataSize memoryBudget;
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    private long residentBytes;
+    private long generation;
+    private Counter builtMatrices;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("exchange.rate.matrix.resident.bytes", this, CrossRateMatrixCache::getResidentBytes)
+             .description("Estimated heap used by resident cross-rate matrices")
+             .register(meterRegistry);
+        Gauge.builder("exchange.rate.matrix.resident.dates", matrices, ConcurrentSkipListMap::size)
+             .description("Dates with a resident cross-rate matrix")
+             .register(meterRegistry);
+        builtMatrices = Counter.builder("exchange.rate.matrix.builds")
+                               .description("Cross-rate matrices built from the database")
+                               .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CrossRateMatrix find(LocalDate date) {
+        final var matrix = matrices.get(date);
+        if (matrix != null) {
+            return matrix;
+        }
+        return isWithinResidentWindow(date) ? build(date) : null;
+    }
+
+    public List<LocalDate> getResidentDates() {
+        return List.copyOf(matrices.keySet());
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        matrices.clear();
+        residentBytes = 0;
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onCurrencySpreadsChanged(CurrencySpreadsChangedEvent event) {
+        log.debug("Dropping all cross-rate matrices after spreads changed for {}", event.currencies());
+        invalidateAll();
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onExchangeRatesChanged(ExchangeRatesChangedEvent event) {
+        if (event.currencyPairs().stream().noneMatch(pair -> baseCurrency.equalsIgnoreCase(pair.from()))) {
+            return;
+        }
+        synchronized (this) {
+            generation++;
+            final var staleMatrices = matrices.tailMap(event.earliestExchangeDate(), true);
+            staleMatrices.values().forEach(matrix -> residentBytes -= matrix.getSizeInBytes());
+            log.debug("Dropping cross-rate matrices for {} dates from {}", staleMatrices.size(),
+                      event.earliestExchangeDate());
+            staleMatrices.clear();
+        }
+        if (enabled && isWithinResidentWindow(event.latestExchangeDate())) {
+            build(event.latestExchangeDate());
+        }
+    }
+
+    private synchronized boolean isWithinResidentWindow(LocalDate date) {
+        return residentBytes < memoryBudget.toBytes() || matrices.isEmpty() || date.isAfter(matrices.firstKey());
+    }
+
+    /**
+     * Concurrent misses for the same date share one build. Builds are keyed by generation as well, so a lookup that
+     * arrives after rates changed never joins a build that may have read the old ones.
+     */
+    private CrossRateMatrix build(LocalDate date) {
+        final long buildGeneration;
+        synchronized (this) {
+            buildGeneration = generation;
+        }
+        return builds.execute(new MatrixKey(date, buildGeneration), () -> build(date, buildGeneration));
+    }
+
+    private CrossRateMatrix build(LocalDate date, long buildGeneration) {
+        builtMatrices.increment();
+        final var asOfExchangeRates = exchangeRateJdbcRepository.findAsOfExchangeRatesForAllCurrencies(baseCurrency,
+                                                                                                      date);
+        asOfExchangeRates.forEach(asOfExchangeRate -> currencyOrdinals.intern(asOfExchangeRate.currency()));
+        final var baseOrdinal = currencyOrdinals.intern(baseCurrency);
+        final var size = currencyOrdinals.size();
+        final var rates = CrossRateMatrix.absentRates(size);
+        final var rateIds = new long[size];
+        final var spreads = new int[size];
+        for (final var asOfExchangeRate : asOfExchangeRates) {
+            final var ordinal = currencyOrdinals.find(asOfExchangeRate.currency());
+            rates[ordinal] = FixedPointRate.of(asOfExchangeRate.rate());
+            rateIds[ordinal] = asOfExchangeRate.id();
+            spreads[ordinal] = currencySpreadCache.getSpreadBasisPoints(asOfExchangeRate.currency());
+        }
+        rates[baseOrdinal] = FixedPointRate.ONE;
+        rateIds[baseOrdinal] = CrossRateMatrix.NO_RATE_ID;
+        spreads[baseOrdinal] = currencySpreadCache.getSpreadBasisPoints(baseCurrency);
+        final var matrix = new CrossRateMatrix(date, rates, rateIds, spreads);
+        put(matrix, buildGeneration);
+        return matrix;
+    }
+
+    private synchronized void put(CrossRateMatrix matrix, long buildGeneration) {
+        if (buildGeneration != generation) {
+            // rates changed while the matrix was being built, the next lookup builds it again
+            return;
+        }
+        final var replaced = matrices.put(matrix.getDate(), matrix);
+        if (replaced != null) {
+            residentBytes -= replaced.getSizeInBytes();
+        }
+        residentBytes += matrix.getSizeInBytes();
+        while (residentBytes > memoryBudget.toBytes() && !matrices.isEmpty()) {
+            final var evicted = matrices.pollFirstEntry().getValue();
+            residentBytes -= evicted.getSizeInBytes();
+            log.debug("Evicted cross-rate matrix for {} to stay within {}", evicted.getDate(), memoryBudget);
+        }
+    }
+
+    private record MatrixKey(LocalDate date, long generation) {
+    }
+}
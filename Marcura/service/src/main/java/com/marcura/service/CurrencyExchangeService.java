@@ -2,117 +2,339 @@ package com.marcura.service;
 
 import com.marcura.client.FixerClient;
 import com.marcura.exception.CurrencyExchangeNotFoundException;
+import com.marcura.exception.FixerUnavailableException;
+import com.marcura.model.BatchConversion;
+import com.marcura.model.CurrencyDate;
+import com.marcura.model.IngestionResult;
+import com.marcura.model.api.request.CurrencyExchangeQuery;
 import com.marcura.model.api.request.NewCurrencyExchange;
 import com.marcura.model.api.response.CurrencyExchange;
-import com.marcura.model.entity.CurrencySpread;
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import com.marcura.model.cache.CachedExchangeRate;
+import com.marcura.model.cache.ConversionResponse;
 import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.projection.AsOfExchangeRate;
+import com.marcura.model.projection.ConversionQuote;
 import com.marcura.repository.CurrencyExchangeRateRepository;
-import com.marcura.repository.CurrencySpreadRepository;
+import com.marcura.repository.ExchangeRateJdbcRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.marcura.service.ExchangeRateUpsertService.newExchangeRate;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CurrencyExchangeService {
-    private static final int BIG_DECIMAL_SCALE = 4;
+    private static final String LATEST_EXCHANGE_RATES_JOB = "fixer-latest-exchange-rates";
+    private static final String REQUESTED_LATEST_EXCHANGE_RATES_JOB = "requested-fixer-latest-exchange-rates";
+    private static final String REQUESTED_EXCHANGE_RATES_JOB = "requested-exchange-rates";
+    private static final String LATEST_EXCHANGE_RATES_CRON = "0 5 12 * * *";
+    private static final String LATEST_EXCHANGE_RATES_ZONE = "GMT";
+    private static final CronExpression LATEST_EXCHANGE_RATES_SCHEDULE =
+            CronExpression.parse(LATEST_EXCHANGE_RATES_CRON);
+    private static final CachedExchangeRate BASE_EXCHANGE_RATE =
+            new CachedExchangeRate(CrossRateMatrix.NO_RATE_ID, FixedPointRate.ONE);
 
     private final CurrencyExchangeRateRepository currencyExchangeRateRepository;
-    private final CurrencySpreadRepository currencySpreadRepository;
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
     private final FixerClient fixerClient;
+    private final ExchangeRateCache exchangeRateCache;
+    private final CrossRateMatrixCache crossRateMatrixCache;
+    private final CurrencyOrdinals currencyOrdinals;
+    private final CurrencySpreadCache currencySpreadCache;
+    private final ExchangeRateAccessCounter exchangeRateAccessCounter;
+    private final ConversionMetrics conversionMetrics;
+    private final IngestionMetrics ingestionMetrics;
+    private final IngestionRunCoordinator ingestionRunCoordinator;
+    private final ExchangeRateUpsertService exchangeRateUpsertService;
+    private final ConversionResponseCache conversionResponseCache;
+    private final SingleFlight<ConversionKey, ConversionQuote> conversionQuoteFlights =
+            new SingleFlight<>(Duration.ZERO);
 
     @Value("${api.fixer.access-key}")
     private String fixerApiAccessKey;
 
+    @Value("${api.fixer.latest-rates-freshness}")
+    private Duration latestExchangeRateFreshness;
+
     @Value("${base-currency}")
     private String baseCurrency;
 
-    @Value("${spread.base}")
-    private Double spreadBase;
+    private SingleFlight<String, IngestionResult> latestExchangeRateFlights;
 
-    @Value("${spread.default}")
-    private Double spreadDefault;
+    @PostConstruct
+    void init() {
+        latestExchangeRateFlights = new SingleFlight<>(latestExchangeRateFreshness);
+    }
 
     public CurrencyExchange getExchangeRate(String from, String to, LocalDate date) {
-        final var fromSanitized = sanitizeCurrencyName(from);
-        final var toSanitized = sanitizeCurrencyName(to);
-        final var exchangeRateFrom = getExchangeRate(fromSanitized, date);
-        final var exchangeRateTo = getExchangeRate(toSanitized, date);
-        final var spread1 = getSpread(fromSanitized);
-        final var spread2 = getSpread(toSanitized);
-        final var maxSpread = Double.max(spread1, spread2);
-        final var exchange = exchangeRateTo.divide(exchangeRateFrom, BIG_DECIMAL_SCALE, RoundingMode.HALF_EVEN)
-                                           .multiply(BigDecimal.valueOf((100 - maxSpread) / 100));
-        return new CurrencyExchange(fromSanitized, toSanitized, exchange);
-    }
-
-    public void forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates(
+        final var start = System.nanoTime();
+        final var conversion = convert(CurrencyNames.sanitize(from), CurrencyNames.sanitize(to), date, true, start);
+        return recordSuccess(conversion, start).exchange();
+    }
+
+    /**
+     * Same conversion as {@link #getExchangeRate}, neither counted as an access of its rates nor in the conversion
+     * metrics, for conversions the service makes on its own rather than on request.
+     */
+    public CurrencyExchange calculateExchangeRate(String from, String to, LocalDate date) {
+        return convert(CurrencyNames.sanitize(from), CurrencyNames.sanitize(to), date, false, System.nanoTime())
+                .exchange();
+    }
+
+    /**
+     * Same conversion as {@link #getExchangeRate}, serialized, answered from {@link ConversionResponseCache} when it
+     * is hot.
+     */
+    public ConversionResponse getExchangeRateResponse(String from, String to, LocalDate date) {
+        final var start = System.nanoTime();
+        final var fromSanitized = CurrencyNames.sanitize(from);
+        final var toSanitized = CurrencyNames.sanitize(to);
+        final var cachedResponse = conversionResponseCache.find(fromSanitized, toSanitized, date);
+        if (cachedResponse != null) {
+            recordSuccess(ConversionMetrics.Path.RESPONSE_CACHE, fromSanitized, toSanitized,
+                          cachedResponse.fromRateId(), cachedResponse.toRateId(), start);
+            return cachedResponse;
+        }
+        final var readGeneration = conversionResponseCache.getGeneration();
+        final var conversion = recordSuccess(convert(fromSanitized, toSanitized, date, true, start), start);
+        return conversionResponseCache.put(date, conversion.exchange(), conversion.fromRateId(),
+                                           conversion.toRateId(), readGeneration);
+    }
+
+    public List<BatchConversion> getExchangeRates(List<CurrencyExchangeQuery> currencyExchangeQueryList) {
+        final var start = System.nanoTime();
+        final var sanitizedQueries = currencyExchangeQueryList.stream()
+                                                              .map(query -> new CurrencyExchangeQuery(
+                                                                      CurrencyNames.sanitize(query.from()),
+                                                                      CurrencyNames.sanitize(query.to()),
+                                                                      query.date()))
+                                                              .toList();
+        final var currencyDates = new LinkedHashSet<CurrencyDate>();
+        for (final var query : sanitizedQueries) {
+            Stream.of(query.from(), query.to())
+                  .filter(currency -> !baseCurrency.equalsIgnoreCase(currency))
+                  .forEach(currency -> currencyDates.add(new CurrencyDate(currency, query.date())));
+        }
+        final var asOfExchangeRates = currencyDates.isEmpty()
+                ? Map.<CurrencyDate, AsOfExchangeRate>of()
+                : exchangeRateJdbcRepository.findAsOfExchangeRates(baseCurrency, currencyDates)
+                                            .stream()
+                                            .collect(Collectors.toMap(
+                                                    asOfExchangeRate -> new CurrencyDate(asOfExchangeRate.currency(),
+                                                                                         asOfExchangeRate.date()),
+                                                    Function.identity()));
+        final var results = new ArrayList<BatchConversion>(sanitizedQueries.size());
+        for (final var query : sanitizedQueries) {
+            try {
+                final var asOfFrom = asOfExchangeRates.get(new CurrencyDate(query.from(), query.date()));
+                final var asOfTo = asOfExchangeRates.get(new CurrencyDate(query.to(), query.date()));
+                final var exchangeRateFrom = getQuotedExchangeRate(query.from(), asOfFrom, query.date());
+                final var exchangeRateTo = getQuotedExchangeRate(query.to(), asOfTo, query.date());
+                final var exchange = calculateCurrencyExchange(query.from(), query.to(), exchangeRateFrom.rate(),
+                                                               exchangeRateTo.rate());
+                incrementAccessCounter(exchangeRateFrom.id());
+                incrementAccessCounter(exchangeRateTo.id());
+                conversionMetrics.recordPair(query.from(), query.to());
+                results.add(new BatchConversion(exchange, null));
+            } catch (CurrencyExchangeNotFoundException ex) {
+                results.add(new BatchConversion(null, ex));
+            }
+        }
+        conversionMetrics.recordSuccess(ConversionMetrics.Path.BATCH, start);
+        return results;
+    }
+
+    public ExchangeRateUpsertResult forceLatestExchangeRateRetrievalAndUpdateOrCreateExchangeRates(
             List<NewCurrencyExchange> newCurrencyExchangeList) {
-        getLatestExchangeRate();
+        try {
+            ingestionRunCoordinator.recordRun(REQUESTED_LATEST_EXCHANGE_RATES_JOB, refreshLatestExchangeRates());
+        } catch (FixerUnavailableException ex) {
+            log.warn("Keeping the last ingested exchange rates: {}", ex.getMessage());
+        }
 
         final var saveExchangeRateList = new ArrayList<ExchangeRate>();
         for (final var newExchange : newCurrencyExchangeList) {
-            final var newExchangeRate = getNewOrUpdatedExchangeRate(sanitizeCurrencyName(newExchange.from()),
-                                                                    sanitizeCurrencyName(newExchange.to()),
-                                                                    newExchange.date(), newExchange.exchange());
+            final var newExchangeRate = newExchangeRate(CurrencyNames.sanitize(newExchange.from()),
+                                                        CurrencyNames.sanitize(newExchange.to()),
+                                                        newExchange.date(), newExchange.exchange());
             saveExchangeRateList.add(newExchangeRate);
         }
-        currencyExchangeRateRepository.saveAll(saveExchangeRateList);
+        final var ingestionResult = exchangeRateUpsertService.upsertExchangeRates(saveExchangeRateList);
+        ingestionRunCoordinator.recordRun(REQUESTED_EXCHANGE_RATES_JOB, ingestionResult);
+        final var upsertResult = ingestionResult.upsertResult();
+        ingestionMetrics.record(IngestionMetrics.SOURCE_REQUEST, upsertResult);
+        log.info("Upserted exchange rates from request: {}", upsertResult);
+        return upsertResult;
     }
 
-    @Scheduled(cron = "0 5 12 * * *", zone = "GMT")
+    /**
+     * Runs on one replica only, see {@link IngestionRunCoordinator}.
+     */
+    @Scheduled(cron = LATEST_EXCHANGE_RATES_CRON, zone = LATEST_EXCHANGE_RATES_ZONE)
     public void getLatestExchangeRate() {
+        ingestionRunCoordinator.runAsLeader(LATEST_EXCHANGE_RATES_JOB, LATEST_EXCHANGE_RATES_SCHEDULE,
+                                            ZoneId.of(LATEST_EXCHANGE_RATES_ZONE), this::refreshLatestExchangeRates);
+    }
+
+    /**
+     * Concurrent callers share one Fixer fetch and upsert, and callers within {@code api.fixer.latest-rates-freshness}
+     * of the last successful one reuse its result.
+     */
+    private IngestionResult refreshLatestExchangeRates() {
+        return latestExchangeRateFlights.execute(baseCurrency, this::fetchAndSaveLatestExchangeRates);
+    }
+
+    private IngestionResult fetchAndSaveLatestExchangeRates() {
         final var latestExchangeRate = fixerClient.getLatestExchangeRate(fixerApiAccessKey, baseCurrency);
         final var saveExchangeRateList = new ArrayList<ExchangeRate>();
-        final var base = sanitizeCurrencyName(latestExchangeRate.base());
+        final var base = CurrencyNames.sanitize(latestExchangeRate.base());
         final var date = latestExchangeRate.date();
         for (final var rate : latestExchangeRate.rates().entrySet()) {
-            final var newExchangeRate = getNewOrUpdatedExchangeRate(base, sanitizeCurrencyName(rate.getKey()), date,
-                                                                    rate.getValue());
+            final var newExchangeRate = newExchangeRate(base, CurrencyNames.sanitize(rate.getKey()), date,
+                                                        rate.getValue());
             saveExchangeRateList.add(newExchangeRate);
         }
-        currencyExchangeRateRepository.saveAll(saveExchangeRateList);
+        final var ingestionResult = exchangeRateUpsertService.upsertExchangeRates(saveExchangeRateList);
+        ingestionMetrics.record(IngestionMetrics.SOURCE_FIXER, ingestionResult.upsertResult());
+        log.info("Upserted latest exchange rates for {}: {}", date, ingestionResult.upsertResult());
+        return ingestionResult;
+    }
+
+    private Conversion convert(String from, String to, LocalDate date, boolean recorded, long start) {
+        var path = ConversionMetrics.Path.MATRIX;
+        try {
+            final var conversion = getMatrixExchangeRate(from, to, date);
+            if (conversion != null) {
+                return conversion;
+            }
+            if (exchangeRateCache.isEnabled()) {
+                path = ConversionMetrics.Path.CACHE;
+                return toConversion(path, from, to, getCachedExchangeRate(from, date),
+                                    getCachedExchangeRate(to, date));
+            }
+            path = ConversionMetrics.Path.QUERY;
+            final var quote = conversionQuoteFlights.execute(
+                    new ConversionKey(from, to, date),
+                    () -> currencyExchangeRateRepository.findConversionQuote(baseCurrency, from, to, date));
+            return toConversion(path, from, to,
+                                getQuotedExchangeRate(from, quote.getFromRateId(), quote.getFromRate(), date),
+                                getQuotedExchangeRate(to, quote.getToRateId(), quote.getToRate(), date));
+        } catch (CurrencyExchangeNotFoundException ex) {
+            if (recorded) {
+                conversionMetrics.recordNotFound(path, start);
+            }
+            throw ex;
+        }
     }
 
-    private BigDecimal getExchangeRate(String currency, LocalDate date) {
+    private Conversion toConversion(ConversionMetrics.Path path, String from, String to,
+                                    CachedExchangeRate exchangeRateFrom, CachedExchangeRate exchangeRateTo) {
+        return new Conversion(path, calculateCurrencyExchange(from, to, exchangeRateFrom.rate(),
+                                                              exchangeRateTo.rate()),
+                              exchangeRateFrom.id(), exchangeRateTo.id());
+    }
+
+    private CurrencyExchange calculateCurrencyExchange(String from, String to, long exchangeRateFrom,
+                                                       long exchangeRateTo) {
+        return new CurrencyExchange(from, to, ExchangeRateCalculator.calculateExchange(
+                exchangeRateFrom, exchangeRateTo, currencySpreadCache.getSpreadBasisPoints(from),
+                currencySpreadCache.getSpreadBasisPoints(to)));
+    }
+
+    private Conversion recordSuccess(Conversion conversion, long start) {
+        recordSuccess(conversion.path(), conversion.exchange().from(), conversion.exchange().to(),
+                      conversion.fromRateId(), conversion.toRateId(), start);
+        return conversion;
+    }
+
+    private void recordSuccess(ConversionMetrics.Path path, String from, String to, long fromRateId, long toRateId,
+                               long start) {
+        incrementAccessCounter(fromRateId);
+        incrementAccessCounter(toRateId);
+        conversionMetrics.recordPair(from, to);
+        conversionMetrics.recordSuccess(path, start);
+    }
+
+    private Conversion getMatrixExchangeRate(String from, String to, LocalDate date) {
+        if (!crossRateMatrixCache.isEnabled()) {
+            return null;
+        }
+        final var matrix = crossRateMatrixCache.find(date);
+        return matrix == null ? null : getMatrixExchangeRate(matrix, from, to);
+    }
+
+    private Conversion getMatrixExchangeRate(CrossRateMatrix matrix, String from, String to) {
+        final var fromOrdinal = currencyOrdinals.find(from);
+        if (!matrix.contains(fromOrdinal)) {
+            throw new CurrencyExchangeNotFoundException(from, matrix.getDate());
+        }
+        final var toOrdinal = currencyOrdinals.find(to);
+        if (!matrix.contains(toOrdinal)) {
+            throw new CurrencyExchangeNotFoundException(to, matrix.getDate());
+        }
+        final var exchange = matrix.getExchange(fromOrdinal, toOrdinal);
+        if (exchange == null) {
+            return null;
+        }
+        return new Conversion(ConversionMetrics.Path.MATRIX, new CurrencyExchange(from, to, exchange),
+                              matrix.getRateId(fromOrdinal), matrix.getRateId(toOrdinal));
+    }
+
+    private void incrementAccessCounter(long exchangeRateId) {
+        if (exchangeRateId != CrossRateMatrix.NO_RATE_ID) {
+            exchangeRateAccessCounter.increment(exchangeRateId);
+        }
+    }
+
+    private CachedExchangeRate getCachedExchangeRate(String currency, LocalDate date) {
         if (baseCurrency.equalsIgnoreCase(currency)) {
-            return BigDecimal.ONE;
+            return BASE_EXCHANGE_RATE;
         }
-        return currencyExchangeRateRepository
-                .findFirstByCurrencyFromAndCurrencyToAndExchangeDateLessThanEqualOrderByExchangeDateDesc(
-                        baseCurrency, currency, date)
-                .orElseThrow(() -> new CurrencyExchangeNotFoundException(currency, date))
-                .getRate();
+        return exchangeRateCache.findLatestOnOrBefore(baseCurrency, currency, date)
+                                .orElseThrow(() -> new CurrencyExchangeNotFoundException(currency, date));
     }
 
-    private Double getSpread(String currency) {
+    private CachedExchangeRate getQuotedExchangeRate(String currency, Long exchangeRateId, BigDecimal rate,
+                                                     LocalDate date) {
         if (baseCurrency.equalsIgnoreCase(currency)) {
-            return spreadBase;
+            return BASE_EXCHANGE_RATE;
+        }
+        if (exchangeRateId == null) {
+            throw new CurrencyExchangeNotFoundException(currency, date);
         }
-        return currencySpreadRepository.findFirstByCurrencyOrderByCreatedAtDesc(currency)
-                                       .map(CurrencySpread::getSpread)
-                                       .orElse(spreadDefault);
+        return new CachedExchangeRate(exchangeRateId, FixedPointRate.of(rate));
+    }
+
+    private CachedExchangeRate getQuotedExchangeRate(String currency, AsOfExchangeRate asOfExchangeRate,
+                                                     LocalDate date) {
+        return asOfExchangeRate == null
+                ? getQuotedExchangeRate(currency, null, null, date)
+                : getQuotedExchangeRate(currency, asOfExchangeRate.id(), asOfExchangeRate.rate(), date);
     }
 
-    private ExchangeRate getNewOrUpdatedExchangeRate(String currencyFrom, String currencyTo, LocalDate exchangeDate,
-                                                     BigDecimal rate) {
-        final var exchangeRate = currencyExchangeRateRepository.findByCurrencyFromAndCurrencyToAndExchangeDate(
-                currencyFrom, currencyTo, exchangeDate).orElseGet(ExchangeRate::new);
-        exchangeRate.setCurrencyFrom(currencyFrom);
-        exchangeRate.setCurrencyTo(currencyTo);
-        exchangeRate.setRate(rate);
-        exchangeRate.setExchangeDate(exchangeDate);
-        return exchangeRate;
+    private record Conversion(ConversionMetrics.Path path, CurrencyExchange exchange, long fromRateId,
+                              long toRateId) {
     }
 
-    private String sanitizeCurrencyName(String currency) {
-        return currency.trim().toUpperCase();
+    private record ConversionKey(String from, String to, LocalDate date) {
     }
 }
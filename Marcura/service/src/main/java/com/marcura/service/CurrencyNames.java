@@ -0,0 +1,11 @@
+package com.marcura.service;
+
+public final class CurrencyNames {
+
+    private CurrencyNames() {
+    }
+
+    public static String sanitize(String currency) {
+        return currency.trim().toUpperCase();
+    }
+}
@@ -0,0 +1,31 @@
+package com.marcura.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dense, append-only numbering of currencies seen in stored exchange rates. Lookups never register a currency, so
+ * arbitrary request input cannot grow the registry.
+ */
+@Component
+public class CurrencyOrdinals {
+    public static final int UNKNOWN = -1;
+
+    private final ConcurrentHashMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public int intern(String currency) {
+        return ordinals.computeIfAbsent(currency, key -> size.getAndIncrement());
+    }
+
+    public int find(String currency) {
+        final var ordinal = ordinals.get(currency);
+        return ordinal == null ? UNKNOWN : ordinal;
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
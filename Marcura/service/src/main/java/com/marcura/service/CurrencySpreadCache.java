@@ -0,0 +1,79 @@
+package com.marcura.service;
+
+import com.marcura.model.entity.CurrencySpread;
+import com.marcura.model.event.CurrencySpreadsChangedEvent;
+import com.marcura.repository.CurrencySpreadRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Latest spread per currency in basis points, held as an immutable map that is swapped as a whole on reload. Reloads
+ * are triggered by {@link CurrencySpreadChangeListener}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CurrencySpreadCache {
+    private final CurrencySpreadRepository currencySpreadRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final AtomicReference<Map<String, Integer>> spreads = new AtomicReference<>(Map.of());
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    @Value("${spread.base}")
+    private BigDecimal spreadBase;
+
+    @Value("${spread.default}")
+    private BigDecimal spreadDefault;
+
+    private int spreadBaseBasisPoints;
+    private int spreadDefaultBasisPoints;
+
+    @PostConstruct
+    void init() {
+        spreadBaseBasisPoints = ExchangeRateCalculator.toBasisPoints(spreadBase);
+        spreadDefaultBasisPoints = ExchangeRateCalculator.toBasisPoints(spreadDefault);
+        spreads.set(loadSpreads());
+    }
+
+    public int getSpreadBasisPoints(String currency) {
+        if (baseCurrency.equalsIgnoreCase(currency)) {
+            return spreadBaseBasisPoints;
+        }
+        final var spread = spreads.get().get(currency);
+        return spread == null ? spreadDefaultBasisPoints : spread;
+    }
+
+    public synchronized void reload() {
+        final var reloaded = loadSpreads();
+        final var previous = spreads.getAndSet(reloaded);
+        final var changedCurrencies = new HashSet<>(previous.keySet());
+        changedCurrencies.addAll(reloaded.keySet());
+        changedCurrencies.removeIf(currency -> Objects.equals(previous.get(currency), reloaded.get(currency)));
+        if (!changedCurrencies.isEmpty()) {
+            log.info("Reloaded spreads, changed for {}", changedCurrencies);
+            applicationEventPublisher.publishEvent(new CurrencySpreadsChangedEvent(Set.copyOf(changedCurrencies)));
+        }
+    }
+
+    private Map<String, Integer> loadSpreads() {
+        return currencySpreadRepository.findLatest()
+                                       .stream()
+                                       .collect(Collectors.toUnmodifiableMap(
+                                               CurrencySpread::getCurrency,
+                                               spread -> ExchangeRateCalculator.toBasisPoints(spread.getSpread())));
+    }
+}
@@ -0,0 +1,140 @@
+package com.marcura.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * LISTENs for {@code currency_spread_changed} notifications on a connection of its own, outside of the pool,
+ * and reloads {@link CurrencySpreadCache} whenever one arrives. While the connection is down spreads are
+ * reloaded periodically instead, and once it is re-established they are reloaded to catch up on missed changes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CurrencySpreadChangeListener {
+    static final String APPLICATION_NAME = "currency-spread-listener";
+    private static final String CHANNEL = "currency_spread_changed";
+
+    private final CurrencySpreadCache currencySpreadCache;
+    private final DataSourceProperties dataSourceProperties;
+
+    @Value("${spread.listener.poll-interval}")
+    private Duration pollInterval;
+
+    @Value("${spread.listener.reconnect-delay}")
+    private Duration reconnectDelay;
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private volatile Connection connection;
+    private Thread thread;
+
+    @PostConstruct
+    void start() {
+        running = true;
+        thread = new Thread(this::listen, APPLICATION_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        closeQuietly(connection);
+        thread.interrupt();
+        thread.join(reconnectDelay.toMillis());
+    }
+
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Scheduled(fixedDelayString = "${spread.listener.fallback-reload-interval}")
+    public void reloadIfNotListening() {
+        if (!listening) {
+            log.debug("Spread listener is not connected, reloading spreads");
+            currencySpreadCache.reload();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (final var listenerConnection = openConnection()) {
+                connection = listenerConnection;
+                try (final var statement = listenerConnection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                listening = true;
+                log.info("Listening for spread changes on channel {}", CHANNEL);
+                currencySpreadCache.reload();
+                awaitNotifications(listenerConnection);
+            } catch (SQLException | RuntimeException ex) {
+                if (running) {
+                    log.warn("Spread listener connection lost, reconnecting in {}", reconnectDelay, ex);
+                }
+            } finally {
+                listening = false;
+                connection = null;
+            }
+            sleep(reconnectDelay);
+        }
+    }
+
+    private void awaitNotifications(Connection listenerConnection) throws SQLException {
+        final var pgConnection = listenerConnection.unwrap(PGConnection.class);
+        while (running) {
+            final var notifications = pgConnection.getNotifications((int) pollInterval.toMillis());
+            if (notifications != null && notifications.length > 0) {
+                log.debug("Received {} spread change notifications", notifications.length);
+                currencySpreadCache.reload();
+            } else if (!listenerConnection.isValid((int) pollInterval.toSeconds())) {
+                throw new SQLException("Spread listener connection is no longer valid");
+            }
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        final var properties = new Properties();
+        properties.setProperty(PGProperty.USER.getName(), dataSourceProperties.determineUsername());
+        properties.setProperty(PGProperty.PASSWORD.getName(), dataSourceProperties.determinePassword());
+        properties.setProperty(PGProperty.APPLICATION_NAME.getName(), APPLICATION_NAME);
+        properties.setProperty(PGProperty.TCP_KEEP_ALIVE.getName(), Boolean.TRUE.toString());
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    private void sleep(Duration duration) {
+        if (!running) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException ignored) {
+            // the listener thread reconnects or stops anyway
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.marcura.service;
+
+import com.marcura.repository.ExchangeRateJdbcRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates exchange rate reads in memory and writes them to {@code access_counter} in periodic batches, so
+ * that lookups stay plain SELECTs and hot rows are not serialized on a row lock. Entries of rates no longer read are
+ * retired by a flush, reads that find a retired entry retry on a fresh one so that none of them is lost.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExchangeRateAccessCounter {
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<Long, PendingAccessCount> pendingAccessCounts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("exchange.rate.access.pending", this, ExchangeRateAccessCounter::getPendingAccessCount)
+             .description("Exchange rate reads not yet flushed to access_counter")
+             .register(meterRegistry);
+    }
+
+    public void increment(Long exchangeRateId) {
+        add(exchangeRateId, 1);
+    }
+
+    public long getPendingAccessCount() {
+        return pendingAccessCounts.values().stream().mapToLong(PendingAccessCount::pending).sum();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${access-counter.flush-interval}")
+    public synchronized void flush() {
+        final var flushedAccessCounts = new HashMap<Long, PendingAccessCount>();
+        final var accessCountDeltas = new HashMap<Long, Long>();
+        pendingAccessCounts.forEach((exchangeRateId, accessCount) -> {
+            final var pending = accessCount.pending();
+            if (pending > 0) {
+                flushedAccessCounts.put(exchangeRateId, accessCount);
+                accessCountDeltas.put(exchangeRateId, pending);
+            } else {
+                evictIdle(exchangeRateId, accessCount);
+            }
+        });
+        if (accessCountDeltas.isEmpty()) {
+            return;
+        }
+        exchangeRateJdbcRepository.incrementAccessCounters(accessCountDeltas);
+        flushedAccessCounts.forEach((exchangeRateId, accessCount) ->
+                                            accessCount.markFlushed(accessCountDeltas.get(exchangeRateId)));
+        log.debug("Flushed access counts for {} exchange rates", accessCountDeltas.size());
+    }
+
+    private void add(Long exchangeRateId, long count) {
+        while (true) {
+            var accessCount = pendingAccessCounts.get(exchangeRateId);
+            if (accessCount == null) {
+                accessCount = pendingAccessCounts.computeIfAbsent(exchangeRateId, id -> new PendingAccessCount());
+            }
+            if (accessCount.add(count)) {
+                return;
+            }
+            // retired by a flush that may not have removed it yet
+            pendingAccessCounts.remove(exchangeRateId, accessCount);
+        }
+    }
+
+    private void evictIdle(Long exchangeRateId, PendingAccessCount accessCount) {
+        if (accessCount.retireIfIdle()) {
+            pendingAccessCounts.remove(exchangeRateId, accessCount);
+        }
+    }
+
+    /**
+     * Retiring swaps the count for a large negative one in the same atomic operation reads add to, so a read either
+     * lands before and keeps the entry, or sees it retired.
+     */
+    private static final class PendingAccessCount {
+        private static final long RETIRED = Long.MIN_VALUE / 2;
+
+        private final AtomicLong pending = new AtomicLong();
+
+        /**
+         * @return false if the entry was retired and the reads have to be added to a fresh one
+         */
+        boolean add(long count) {
+            return pending.getAndAdd(count) >= 0;
+        }
+
+        long pending() {
+            return Math.max(pending.get(), 0);
+        }
+
+        void markFlushed(long count) {
+            pending.addAndGet(-count);
+        }
+
+        boolean retireIfIdle() {
+            return pending.compareAndSet(0, RETIRED);
+        }
+    }
+}
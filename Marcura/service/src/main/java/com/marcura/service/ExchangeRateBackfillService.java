@@ -0,0 +1,360 @@
+package com.marcura.service;
+
+import com.marcura.client.BackfillFixerClient;
+import com.marcura.exception.ExchangeRateBackfillFailedException;
+import com.marcura.exception.ExchangeRateBackfillInProgressException;
+import com.marcura.exception.ExchangeRateBackfillNotFoundException;
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.IngestionResult;
+import com.marcura.model.api.response.ExchangeRateBackfillStatus;
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.model.projection.ExchangeRateBackfill;
+import com.marcura.model.projection.ExchangeRateBackfillChunk;
+import com.marcura.repository.ExchangeRateBackfillRepository;
+import feign.FeignException;
+import feign.RetryableException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.marcura.service.ExchangeRateUpsertService.newExchangeRate;
+
+/**
+ * Fills in past exchange rates from Fixer, in the background of the request that asked for them. The range is split
+ * into chunks that are fetched concurrently, within a shared rate limit and with retries for throttled or failed
+ * calls. Every chunk is checkpointed once it is stored, so a backfill that failed or was interrupted resumes with the
+ * chunks still missing.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateBackfillService {
+    private static final String BACKFILL_JOB = "fixer-backfill";
+
+    private final BackfillFixerClient fixerClient;
+    private final ExchangeRateBackfillRepository exchangeRateBackfillRepository;
+    private final ExchangeRateUpsertService exchangeRateUpsertService;
+    private final IngestionRunCoordinator ingestionRunCoordinator;
+    private final IngestionMetrics ingestionMetrics;
+
+    @Value("${api.fixer.access-key}")
+    private String fixerApiAccessKey;
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    @Value("${backfill.chunk-days}")
+    private int chunkDays;
+
+    @Value("${backfill.concurrency}")
+    private int concurrency;
+
+    @Value("${backfill.rate-limit.permits-per-second}")
+    private double permitsPerSecond;
+
+    @Value("${backfill.rate-limit.burst}")
+    private int burst;
+
+    @Value("${backfill.retry.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${backfill.retry.initial-backoff}")
+    private Duration initialBackoff;
+
+    @Value("${backfill.retry.max-backoff}")
+    private Duration maxBackoff;
+
+    private TokenBucket rateLimiter;
+    private ExecutorService runner;
+    private ThreadPoolExecutor executor;
+    // a resume waiting for the runner, so that a long backfill does not pile them up
+    private final AtomicBoolean resumeQueued = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        rateLimiter = new TokenBucket(permitsPerSecond, burst);
+        // one backfill at a time runs anyway, see run
+        runner = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(BACKFILL_JOB + "-runner-"));
+        // a full queue makes the submitting thread fetch the chunk itself instead of queueing the whole range
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(concurrency),
+                                          new CustomizableThreadFactory(BACKFILL_JOB + "-"),
+                                          new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts backfilling the range, or resumes an unfinished backfill of the same range if there is one, and returns
+     * without waiting for it. A backfill that cannot start because another one holds the job is left running for
+     * {@link #resumeInterruptedBackfills} to pick up.
+     */
+    public ExchangeRateBackfillStatus backfill(LocalDate startDate, LocalDate endDate) {
+        final var backfill = exchangeRateBackfillRepository
+                .findUnfinishedBackfill(baseCurrency, startDate, endDate)
+                .orElseGet(() -> exchangeRateBackfillRepository.createBackfill(baseCurrency, startDate, endDate,
+                                                                               chunkDays));
+        exchangeRateBackfillRepository.markBackfillRunning(backfill.id());
+        runner.execute(() -> {
+            try {
+                run(backfill);
+            } catch (ExchangeRateBackfillInProgressException ex) {
+                log.info("Backfill {} waits for another backfill to finish", backfill.id());
+            } catch (RuntimeException ex) {
+                log.warn("Backfill {} failed: {}", backfill.id(), ex.getMessage());
+            }
+        });
+        return getBackfill(backfill.id());
+    }
+
+    public ExchangeRateBackfillStatus getBackfill(long backfillId) {
+        final var backfill = exchangeRateBackfillRepository
+                .findBackfill(backfillId)
+                .orElseThrow(() -> new ExchangeRateBackfillNotFoundException(backfillId));
+        final var chunks = exchangeRateBackfillRepository.findChunks(backfillId);
+        final var upsertResult = sumUpsertResults(chunks);
+        return new ExchangeRateBackfillStatus(backfill.id(), backfill.startDate(), backfill.endDate(),
+                                              backfill.status(), chunks.size(),
+                                              (int) (chunks.size() - countPendingChunks(chunks)),
+                                              upsertResult.inserted(), upsertResult.updated(),
+                                              upsertResult.unchanged());
+    }
+
+    /**
+     * Picks up backfills left running by an instance that stopped, on the runner rather than the scheduling thread
+     * the other scheduled jobs share. Backfills that failed are resumed only on request, so that a range Fixer keeps
+     * rejecting is not retried forever.
+     */
+    @Scheduled(initialDelayString = "${backfill.resume-interval}", fixedDelayString = "${backfill.resume-interval}")
+    public void resumeInterruptedBackfills() {
+        if (resumeQueued.compareAndSet(false, true)) {
+            runner.execute(() -> {
+                resumeQueued.set(false);
+                runInterruptedBackfills();
+            });
+        }
+    }
+
+    private void runInterruptedBackfills() {
+        for (final var backfill : exchangeRateBackfillRepository.findInterruptedBackfills()) {
+            try {
+                run(backfill);
+            } catch (ExchangeRateBackfillInProgressException ex) {
+                log.debug("Backfill {} is running on another instance", backfill.id());
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Cannot resume backfill {}: {}", backfill.id(), ex.getMessage());
+            }
+        }
+    }
+
+    private void run(ExchangeRateBackfill backfill) {
+        if (!ingestionRunCoordinator.runOnce(BACKFILL_JOB, backfill.createdAt(), () -> fetchChunks(backfill))) {
+            throw new ExchangeRateBackfillInProgressException(backfill.id());
+        }
+    }
+
+    /**
+     * @return rows written by the whole backfill, including chunks done by earlier runs, so that the ingestion run
+     * recorded for it tells other instances about all the rates it changed
+     */
+    private IngestionResult fetchChunks(ExchangeRateBackfill backfill) {
+        exchangeRateBackfillRepository.markBackfillRunning(backfill.id());
+        final var pendingChunks = exchangeRateBackfillRepository.findChunks(backfill.id())
+                                                                .stream()
+                                                                .filter(chunk -> !chunk.done())
+                                                                .toList();
+        log.info("Backfilling {} - {} in {} chunks", backfill.startDate(), backfill.endDate(), pendingChunks.size());
+        final var futures = new ArrayList<CompletableFuture<Void>>(pendingChunks.size());
+        for (final var chunk : pendingChunks) {
+            futures.add(CompletableFuture.runAsync(() -> fetchChunk(backfill, chunk), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        final var chunks = exchangeRateBackfillRepository.findChunks(backfill.id());
+        final var failedChunks = countPendingChunks(chunks);
+        if (failedChunks > 0) {
+            exchangeRateBackfillRepository.markBackfillFailed(backfill.id());
+            throw new ExchangeRateBackfillFailedException(backfill.id(), failedChunks, chunks.size());
+        }
+        exchangeRateBackfillRepository.markBackfillSucceeded(backfill.id());
+        final var ingestionResult = new IngestionResult(sumUpsertResults(chunks), toChanges(backfill, chunks));
+        log.info("Backfilled {} - {}: {}", backfill.startDate(), backfill.endDate(), ingestionResult.upsertResult());
+        return ingestionResult;
+    }
+
+    private void fetchChunk(ExchangeRateBackfill backfill, ExchangeRateBackfillChunk chunk) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                rateLimiter.acquire();
+                final var ingestionResult = exchangeRateUpsertService.upsertExchangeRates(
+                        fetchExchangeRates(backfill.base(), chunk.startDate(), chunk.endDate()));
+                exchangeRateBackfillRepository.completeChunk(backfill.id(), chunk.startDate(), attempt,
+                                                             ingestionResult);
+                ingestionMetrics.record(IngestionMetrics.SOURCE_BACKFILL, ingestionResult.upsertResult());
+                return;
+            } catch (FeignException ex) {
+                if (attempt >= maxAttempts || !isRetryable(ex)) {
+                    failChunk(backfill, chunk, attempt, ex);
+                    return;
+                }
+                final var backoff = backoff(attempt, ex);
+                log.info("Fetching {} - {} failed with status {}, retrying in {}", chunk.startDate(),
+                         chunk.endDate(), ex.status(), backoff);
+                if (!sleep(backoff)) {
+                    failChunk(backfill, chunk, attempt, ex);
+                    return;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failChunk(backfill, chunk, attempt - 1, ex);
+                return;
+            } catch (RuntimeException ex) {
+                failChunk(backfill, chunk, attempt, ex);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A single-day chunk goes to the historical endpoint, which is cheaper than a timeseries on most Fixer plans.
+     */
+    private List<ExchangeRate> fetchExchangeRates(String base, LocalDate startDate, LocalDate endDate) {
+        if (startDate.equals(endDate)) {
+            final var historicalExchangeRate = fixerClient.getHistoricalExchangeRate(
+                    fixerApiAccessKey, startDate.toString(), base);
+            return toExchangeRates(historicalExchangeRate.base(), historicalExchangeRate.date(),
+                                   historicalExchangeRate.rates());
+        }
+        final var timeseriesExchangeRates = fixerClient.getTimeseriesExchangeRates(
+                fixerApiAccessKey, startDate.toString(), endDate.toString(), base);
+        final var exchangeRates = new ArrayList<ExchangeRate>();
+        timeseriesExchangeRates.rates().forEach((date, rates) -> exchangeRates.addAll(
+                toExchangeRates(timeseriesExchangeRates.base(), date, rates)));
+        return exchangeRates;
+    }
+
+    private static List<ExchangeRate> toExchangeRates(String base, LocalDate date, Map<String, BigDecimal> rates) {
+        final var sanitizedBase = CurrencyNames.sanitize(base);
+        return rates.entrySet()
+                    .stream()
+                    .map(rate -> newExchangeRate(sanitizedBase, CurrencyNames.sanitize(rate.getKey()), date,
+                                                 rate.getValue()))
+                    .toList();
+    }
+
+    private void failChunk(ExchangeRateBackfill backfill, ExchangeRateBackfillChunk chunk, int attempts,
+                           Exception ex) {
+        log.warn("Cannot backfill {} - {} after {} attempts: {}", chunk.startDate(), chunk.endDate(), attempts,
+                 ex.toString());
+        exchangeRateBackfillRepository.failChunk(backfill.id(), chunk.startDate(), attempts, ex.toString());
+    }
+
+    private static boolean isRetryable(FeignException ex) {
+        return ex instanceof RetryableException
+                || ex.status() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || ex.status() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    /**
+     * Exponential backoff with jitter, so that chunks throttled together do not retry together, but never shorter
+     * than a Retry-After the server asked for.
+     */
+    private Duration backoff(int attempt, FeignException ex) {
+        final var exponential = initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 30));
+        final var capped = exponential.compareTo(maxBackoff) > 0 ? maxBackoff : exponential;
+        final var halfMillis = Math.max(capped.toMillis() / 2, 1);
+        final var jittered = Duration.ofMillis(halfMillis + ThreadLocalRandom.current().nextLong(halfMillis));
+        final var retryAfter = retryAfter(ex);
+        return retryAfter.compareTo(jittered) > 0 ? retryAfter : jittered;
+    }
+
+    private static Duration retryAfter(FeignException ex) {
+        final var retryAfter = ex.responseHeaders().entrySet()
+                                 .stream()
+                                 .filter(header -> HttpHeaders.RETRY_AFTER.equalsIgnoreCase(header.getKey()))
+                                 .flatMap(header -> header.getValue().stream())
+                                 .findFirst();
+        try {
+            return retryAfter.map(seconds -> Duration.ofSeconds(Long.parseLong(seconds.trim())))
+                             .orElse(Duration.ZERO);
+        } catch (NumberFormatException ignored) {
+            // an HTTP date instead of seconds, the backoff alone has to do
+            return Duration.ZERO;
+        }
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long countPendingChunks(List<ExchangeRateBackfillChunk> chunks) {
+        return chunks.stream().filter(chunk -> !chunk.done()).count();
+    }
+
+    private static ExchangeRateUpsertResult sumUpsertResults(List<ExchangeRateBackfillChunk> chunks) {
+        return chunks.stream()
+                     .map(ExchangeRateBackfillChunk::upsertResult)
+                     .filter(Objects::nonNull)
+                     .reduce(ExchangeRateUpsertResult.empty(), ExchangeRateUpsertResult::add);
+    }
+
+    private static ExchangeRatesChangedEvent toChanges(ExchangeRateBackfill backfill,
+                                                       List<ExchangeRateBackfillChunk> chunks) {
+        final var changedChunks = chunks.stream().filter(chunk -> !chunk.changedCurrenciesTo().isEmpty()).toList();
+        if (changedChunks.isEmpty()) {
+            return null;
+        }
+        final var base = CurrencyNames.sanitize(backfill.base());
+        return new ExchangeRatesChangedEvent(
+                changedChunks.stream()
+                             .flatMap(chunk -> chunk.changedCurrenciesTo().stream())
+                             .map(currency -> new CurrencyPair(base, currency))
+                             .collect(Collectors.toSet()),
+                changedChunks.stream()
+                             .map(ExchangeRateBackfillChunk::startDate)
+                             .min(Comparator.naturalOrder())
+                             .orElseThrow(),
+                changedChunks.stream()
+                             .map(ExchangeRateBackfillChunk::endDate)
+                             .max(Comparator.naturalOrder())
+                             .orElseThrow());
+    }
+}
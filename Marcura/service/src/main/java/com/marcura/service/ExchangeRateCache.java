@@ -0,0 +1,95 @@
+package com.marcura.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.cache.CachedExchangeRate;
+import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.repository.CurrencyExchangeRateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Bounded, in-process history of exchange rates per currency pair, sorted by exchange date, so that
+ * "latest rate on or before date" is answered with a floor lookup instead of a database round trip.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExchangeRateCache {
+    private static final String CACHE_NAME = "exchangeRates";
+
+    private final CurrencyExchangeRateRepository currencyExchangeRateRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.exchange-rate.enabled}")
+    private boolean enabled;
+
+    @Value("${cache.exchange-rate.maximum-size}")
+    private long maximumSize;
+
+    @Value("${cache.exchange-rate.expire-after-access}")
+    private Duration expireAfterAccess;
+
+    private Cache<CurrencyPair, NavigableMap<LocalDate, CachedExchangeRate>> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfterAccess(expireAfterAccess)
+                        .recordStats()
+                        .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<CachedExchangeRate> findLatestOnOrBefore(String currencyFrom, String currencyTo, LocalDate date) {
+        final var history = cache.get(new CurrencyPair(currencyFrom, currencyTo), this::loadHistory);
+        return Optional.ofNullable(history.floorEntry(date)).map(Map.Entry::getValue);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onExchangeRatesChanged(ExchangeRatesChangedEvent event) {
+        log.debug("Invalidating cached exchange rates for {} currency pairs", event.currencyPairs().size());
+        cache.invalidateAll(event.currencyPairs());
+    }
+
+    private NavigableMap<LocalDate, CachedExchangeRate> loadHistory(CurrencyPair currencyPair) {
+        final var history = new TreeMap<LocalDate, CachedExchangeRate>();
+        for (final var exchangeRate : currencyExchangeRateRepository.findByCurrencyFromAndCurrencyTo(
+                currencyPair.from(), currencyPair.to())) {
+            history.put(exchangeRate.getExchangeDate(), toCachedExchangeRate(exchangeRate));
+        }
+        return Collections.unmodifiableNavigableMap(history);
+    }
+
+    private CachedExchangeRate toCachedExchangeRate(ExchangeRate exchangeRate) {
+        return new CachedExchangeRate(exchangeRate.getId(), FixedPointRate.of(exchangeRate.getRate()));
+    }
+}
@@ -0,0 +1,60 @@
+package com.marcura.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The exchange is the quotient of the two rates rounded HALF_EVEN to {@value #QUOTIENT_SCALE} decimals, multiplied by
+ * what is left after the larger of the two spreads. Spreads are basis points, so the product is exact at
+ * {@link #EXCHANGE_SCALE} decimals.
+ */
+public final class ExchangeRateCalculator {
+    private static final int QUOTIENT_SCALE = 4;
+    private static final int BASIS_POINTS_SCALE = 4;
+    private static final int BASIS_POINTS_PER_UNIT = 10_000;
+    public static final int EXCHANGE_SCALE = QUOTIENT_SCALE + BASIS_POINTS_SCALE;
+
+    private ExchangeRateCalculator() {
+    }
+
+    /**
+     * @param exchangeRateFrom {@link FixedPointRate} of the source currency against the base currency
+     * @param exchangeRateTo   {@link FixedPointRate} of the target currency against the base currency
+     * @return unscaled exchange of {@link #EXCHANGE_SCALE} decimals
+     * @throws ArithmeticException if the exchange does not fit in a long
+     */
+    public static long calculateUnscaledExchange(long exchangeRateFrom, long exchangeRateTo,
+                                                 int spreadFromBasisPoints, int spreadToBasisPoints) {
+        final var quotient = FixedPointRate.divide(exchangeRateTo, exchangeRateFrom, QUOTIENT_SCALE);
+        return Math.multiplyExact(quotient,
+                                  BASIS_POINTS_PER_UNIT - Math.max(spreadFromBasisPoints, spreadToBasisPoints));
+    }
+
+    public static BigDecimal calculateExchange(long exchangeRateFrom, long exchangeRateTo,
+                                               int spreadFromBasisPoints, int spreadToBasisPoints) {
+        try {
+            return BigDecimal.valueOf(calculateUnscaledExchange(exchangeRateFrom, exchangeRateTo,
+                                                                spreadFromBasisPoints, spreadToBasisPoints),
+                                      EXCHANGE_SCALE);
+        } catch (ArithmeticException ex) {
+            // only rates that are many orders of magnitude apart get here
+            return calculateExchange(FixedPointRate.toBigDecimal(exchangeRateFrom),
+                                     FixedPointRate.toBigDecimal(exchangeRateTo),
+                                     spreadFromBasisPoints, spreadToBasisPoints);
+        }
+    }
+
+    private static BigDecimal calculateExchange(BigDecimal exchangeRateFrom, BigDecimal exchangeRateTo,
+                                                int spreadFromBasisPoints, int spreadToBasisPoints) {
+        final var spreadFactor = BigDecimal.valueOf(
+                BASIS_POINTS_PER_UNIT - Math.max(spreadFromBasisPoints, spreadToBasisPoints), BASIS_POINTS_SCALE);
+        return exchangeRateTo.divide(exchangeRateFrom, QUOTIENT_SCALE, RoundingMode.HALF_EVEN).multiply(spreadFactor);
+    }
+
+    /**
+     * @throws ArithmeticException if the percentage has more than two decimals
+     */
+    public static int toBasisPoints(BigDecimal percentage) {
+        return percentage.movePointRight(2).setScale(0, RoundingMode.UNNECESSARY).intValueExact();
+    }
+}
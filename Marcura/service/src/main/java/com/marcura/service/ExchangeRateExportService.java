@@ -0,0 +1,34 @@
+package com.marcura.service;
+
+import com.marcura.model.projection.HistoricalExchangeRate;
+import com.marcura.repository.ExchangeRateExportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateExportService {
+    private final ExchangeRateExportRepository exchangeRateExportRepository;
+
+    public void exportExchangeRates(String from, String to, LocalDate start, LocalDate end,
+                                    Consumer<HistoricalExchangeRate> consumer) {
+        final var startedAt = System.nanoTime();
+        final var exported = new long[1];
+        exchangeRateExportRepository.streamExchangeRates(sanitizeCurrencyName(from), sanitizeCurrencyName(to),
+                                                         start, end, exchangeRate -> {
+                    consumer.accept(exchangeRate);
+                    exported[0]++;
+                });
+        log.info("Exported {} exchange rates in {}", exported[0], Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    private static String sanitizeCurrencyName(String currency) {
+        return currency == null || currency.isBlank() ? null : CurrencyNames.sanitize(currency);
+    }
+}
@@ -0,0 +1,165 @@
+package com.marcura.service;
+
+import java.util.Arrays;
+
+/**
+ * Immutable columnar history of one currency against the base currency, ordered by date. Dates are epoch days kept
+ * as deltas to the previous one in a {@code short[]}, read unsigned, with the absolute day of every
+ * {@value #CHECKPOINT_INTERVAL}th entry kept aside so that a {@link Cursor} can seek without decoding from the start.
+ * Rates are {@link FixedPointRate}s.
+ */
+public final class ExchangeRateHistory {
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final int MAX_DAY_DELTA = 0xFFFF;
+    private static final int NO_DAY = Integer.MAX_VALUE;
+
+    private final int size;
+    private final int[] checkpointDays;
+    private final short[] dayDeltas;
+    private final long[] rates;
+
+    private ExchangeRateHistory(int size, int[] checkpointDays, short[] dayDeltas, long[] rates) {
+        this.size = size;
+        this.checkpointDays = checkpointDays;
+        this.dayDeltas = dayDeltas;
+        this.rates = rates;
+    }
+
+    /**
+     * @return a history that has the given rate on any day, as the base currency has against itself
+     */
+    static ExchangeRateHistory constant(long rate) {
+        return new ExchangeRateHistory(1, new int[]{Integer.MIN_VALUE}, new short[1], new long[]{rate});
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getSizeInBytes() {
+        return (long) checkpointDays.length * Integer.BYTES + (long) dayDeltas.length * Short.BYTES +
+                (long) rates.length * Long.BYTES;
+    }
+
+    /**
+     * @return a cursor at the latest entry on or before the given epoch day
+     */
+    public Cursor cursor(int epochDay) {
+        final var cursor = new Cursor();
+        cursor.seek(epochDay);
+        return cursor;
+    }
+
+    private int dayDelta(int index) {
+        return Short.toUnsignedInt(dayDeltas[index]);
+    }
+
+    /**
+     * Keeps what was there before the given epoch day and returns a builder to append the entries from that day on.
+     */
+    Builder truncate(int epochDay) {
+        final var builder = new Builder();
+        var day = size == 0 ? NO_DAY : checkpointDays[0];
+        for (int i = 0; i < size && day < epochDay; i++) {
+            builder.append(day, rates[i]);
+            day = i + 1 < size ? day + dayDelta(i + 1) : NO_DAY;
+        }
+        return builder;
+    }
+
+    /**
+     * Walks the history forward one epoch day at a time, exposing the rate in force on the current day.
+     */
+    public final class Cursor {
+        private int index;
+        private int day;
+        private int nextDay;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return false before the first entry of the history
+         */
+        public boolean hasRate() {
+            return index >= 0;
+        }
+
+        public long getRate() {
+            return rates[index];
+        }
+
+        /**
+         * Moves forward to the latest entry on or before the given epoch day, which must not be before the last one.
+         *
+         * @return whether the rate in force changed
+         */
+        public boolean advanceTo(int epochDay) {
+            if (nextDay > epochDay) {
+                return false;
+            }
+            do {
+                index++;
+                day = nextDay;
+                nextDay = index + 1 < size ? day + dayDelta(index + 1) : NO_DAY;
+            } while (nextDay <= epochDay);
+            return true;
+        }
+
+        private void seek(int epochDay) {
+            if (size == 0 || checkpointDays[0] > epochDay) {
+                index = -1;
+                nextDay = size == 0 ? NO_DAY : checkpointDays[0];
+                return;
+            }
+            var checkpoint = Arrays.binarySearch(checkpointDays, epochDay);
+            if (checkpoint < 0) {
+                checkpoint = -checkpoint - 2;
+            }
+            index = checkpoint * CHECKPOINT_INTERVAL;
+            day = checkpointDays[checkpoint];
+            nextDay = index + 1 < size ? day + dayDelta(index + 1) : NO_DAY;
+            advanceTo(epochDay);
+        }
+    }
+
+    /**
+     * Appends entries in increasing date order and trims the columns to size on {@link #build()}.
+     */
+    static final class Builder {
+        private int size;
+        private int lastDay;
+        private short[] dayDeltas = new short[CHECKPOINT_INTERVAL];
+        private long[] rates = new long[CHECKPOINT_INTERVAL];
+        private int[] checkpointDays = new int[1];
+
+        Builder append(int epochDay, long rate) {
+            if (size > 0 && (epochDay <= lastDay || epochDay - lastDay > MAX_DAY_DELTA)) {
+                throw new IllegalArgumentException("Epoch day %d cannot follow %d".formatted(epochDay, lastDay));
+            }
+            if (size == rates.length) {
+                dayDeltas = Arrays.copyOf(dayDeltas, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+            }
+            if (size % CHECKPOINT_INTERVAL == 0) {
+                final var checkpoint = size / CHECKPOINT_INTERVAL;
+                if (checkpoint == checkpointDays.length) {
+                    checkpointDays = Arrays.copyOf(checkpointDays, checkpoint * 2);
+                }
+                checkpointDays[checkpoint] = epochDay;
+            }
+            if (size > 0) {
+                dayDeltas[size] = (short) (epochDay - lastDay);
+            }
+            rates[size++] = rate;
+            lastDay = epochDay;
+            return this;
+        }
+
+        ExchangeRateHistory build() {
+            final var checkpoints = (size + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+            return new ExchangeRateHistory(size, Arrays.copyOf(checkpointDays, checkpoints),
+                                           Arrays.copyOf(dayDeltas, size), Arrays.copyOf(rates, size));
+        }
+    }
+}
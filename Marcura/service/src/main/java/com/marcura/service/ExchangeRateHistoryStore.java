@@ -0,0 +1,133 @@
+package com.marcura.service;
+
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.repository.ExchangeRateExportRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Every rate of the base currency as an {@link ExchangeRateHistory} per currency. The store is read from
+ * {@code currency_exchange_rate} on first use and, from then on, histories are rebuilt from the earliest changed
+ * date whenever an ingestion path reports changed rates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExchangeRateHistoryStore {
+    private final ExchangeRateExportRepository exchangeRateExportRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    private volatile Map<String, ExchangeRateHistory> histories;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("exchange.rate.history.resident.bytes", this, ExchangeRateHistoryStore::getSizeInBytes)
+             .description("Heap used by the columns of the exchange rate history store")
+             .register(meterRegistry);
+    }
+
+    /**
+     * @return the history of the currency against the base currency, which itself has a constant rate of one
+     */
+    public Optional<ExchangeRateHistory> find(String currency) {
+        if (baseCurrency.equalsIgnoreCase(currency)) {
+            return Optional.of(ExchangeRateHistory.constant(FixedPointRate.ONE));
+        }
+        return Optional.ofNullable(load().get(currency));
+    }
+
+    public long getSizeInBytes() {
+        final var loaded = histories;
+        return loaded == null
+                ? 0
+                : loaded.values().stream().mapToLong(ExchangeRateHistory::getSizeInBytes).sum();
+    }
+
+    public synchronized void invalidateAll() {
+        histories = null;
+    }
+
+    @EventListener
+    public void onExchangeRatesChanged(ExchangeRatesChangedEvent event) {
+        final var changedCurrencies = event.currencyPairs()
+                                           .stream()
+                                           .filter(pair -> baseCurrency.equalsIgnoreCase(pair.from()))
+                                           .map(CurrencyPair::to)
+                                           .collect(Collectors.toUnmodifiableSet());
+        if (changedCurrencies.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (histories == null) {
+                // picked up by the first load
+                return;
+            }
+            final var reloaded = read(changedCurrencies, event.earliestExchangeDate());
+            histories.putAll(reloaded);
+            log.debug("Reloaded exchange rate history of {} from {}", reloaded.keySet(), event.earliestExchangeDate());
+        }
+    }
+
+    private Map<String, ExchangeRateHistory> load() {
+        final var loaded = histories;
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (this) {
+            if (histories == null) {
+                final var startedAt = System.nanoTime();
+                histories = new ConcurrentHashMap<>(read(null, null));
+                log.info("Loaded exchange rate history of {} currencies, {} bytes, in {}", histories.size(),
+                         getSizeInBytes(), Duration.ofNanos(System.nanoTime() - startedAt));
+            }
+            return histories;
+        }
+    }
+
+    /**
+     * Reads the rates of the given currencies, or of all of them when null, from the given date on and appends them
+     * to what the current histories hold before that date.
+     */
+    private Map<String, ExchangeRateHistory> read(Set<String> currencies, LocalDate start) {
+        final var current = histories == null ? Map.<String, ExchangeRateHistory>of() : histories;
+        final var startDay = start == null ? Integer.MIN_VALUE : Math.toIntExact(start.toEpochDay());
+        final var builders = new HashMap<String, ExchangeRateHistory.Builder>();
+        if (currencies != null) {
+            currencies.forEach(currency -> builders.put(currency, truncate(current.get(currency), startDay)));
+        }
+        exchangeRateExportRepository.streamExchangeRates(baseCurrency, null, start, null, exchangeRate -> {
+            final var currency = exchangeRate.currencyTo();
+            if (currencies == null || currencies.contains(currency)) {
+                builders.computeIfAbsent(currency, ignored -> new ExchangeRateHistory.Builder())
+                        .append(Math.toIntExact(exchangeRate.exchangeDate().toEpochDay()),
+                                FixedPointRate.of(exchangeRate.rate()));
+            }
+        });
+        final var read = new HashMap<String, ExchangeRateHistory>();
+        builders.forEach((currency, builder) -> read.put(currency, builder.build()));
+        return read;
+    }
+
+    private static ExchangeRateHistory.Builder truncate(ExchangeRateHistory history, int epochDay) {
+        return history == null ? new ExchangeRateHistory.Builder() : history.truncate(epochDay);
+    }
+}
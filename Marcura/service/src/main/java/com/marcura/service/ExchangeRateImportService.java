@@ -0,0 +1,83 @@
+package com.marcura.service;
+
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.IngestionResult;
+import com.marcura.model.NumberedExchangeRate;
+import com.marcura.model.api.request.NewCurrencyExchange;
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.model.projection.ImportedExchangeRates;
+import com.marcura.repository.ExchangeRateImportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateImportService {
+    private static final String IMPORT_JOB = "exchange-rate-import";
+
+    private final ExchangeRateImportRepository exchangeRateImportRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final IngestionRunCoordinator ingestionRunCoordinator;
+    private final IngestionMetrics ingestionMetrics;
+
+    public ExchangeRateUpsertResult importExchangeRates(Iterator<NumberedExchangeRate> exchangeRates) {
+        final var importedExchangeRates = exchangeRateImportRepository.importExchangeRates(
+                new SanitizingIterator(exchangeRates));
+        final var staged = importedExchangeRates.stream().mapToLong(ImportedExchangeRates::staged).sum();
+        final var inserted = importedExchangeRates.stream().mapToLong(ImportedExchangeRates::inserted).sum();
+        final var updated = importedExchangeRates.stream().mapToLong(ImportedExchangeRates::updated).sum();
+        final var changedExchangeRates = importedExchangeRates.stream()
+                                                              .filter(imported -> imported.inserted() +
+                                                                      imported.updated() > 0)
+                                                              .toList();
+        ExchangeRatesChangedEvent changes = null;
+        if (!changedExchangeRates.isEmpty()) {
+            changes = new ExchangeRatesChangedEvent(
+                    changedExchangeRates.stream()
+                                        .map(imported -> new CurrencyPair(imported.currencyFrom(),
+                                                                          imported.currencyTo()))
+                                        .collect(Collectors.toSet()),
+                    changedExchangeRates.stream()
+                                        .map(ImportedExchangeRates::earliestExchangeDate)
+                                        .min(Comparator.naturalOrder())
+                                        .orElseThrow(),
+                    changedExchangeRates.stream()
+                                        .map(ImportedExchangeRates::latestExchangeDate)
+                                        .max(Comparator.naturalOrder())
+                                        .orElseThrow());
+            applicationEventPublisher.publishEvent(changes);
+        }
+        final var importResult = new ExchangeRateUpsertResult(Math.toIntExact(inserted), Math.toIntExact(updated),
+                                                              Math.toIntExact(staged - inserted - updated));
+        ingestionRunCoordinator.recordRun(IMPORT_JOB, new IngestionResult(importResult, changes));
+        ingestionMetrics.record(IngestionMetrics.SOURCE_IMPORT, importResult);
+        log.info("Imported exchange rates for {} currency pairs: {}", importedExchangeRates.size(), importResult);
+        return importResult;
+    }
+
+    private record SanitizingIterator(Iterator<NumberedExchangeRate> delegate)
+            implements Iterator<NumberedExchangeRate> {
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public NumberedExchangeRate next() {
+            final var numberedExchangeRate = delegate.next();
+            final var exchangeRate = numberedExchangeRate.exchangeRate();
+            return new NumberedExchangeRate(numberedExchangeRate.line(), new NewCurrencyExchange(
+                    CurrencyNames.sanitize(exchangeRate.from()), CurrencyNames.sanitize(exchangeRate.to()),
+                    exchangeRate.exchange(), exchangeRate.date()));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.marcura.service;
+
+import com.marcura.repository.ExchangeRatePartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.Period;
+
+/**
+ * Creates the yearly partitions of {@code currency_exchange_rate} ahead of the rates that will land in them, moves
+ * rates of years without a partition, e.g. from a backfill, out of the default partition and, when
+ * {@code partitioning.retention.enabled} is set, detaches the years older than the retention period. The database
+ * functions serialize themselves, so every replica may run the job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExchangeRatePartitionService {
+    private final ExchangeRatePartitionRepository exchangeRatePartitionRepository;
+    private final ExchangeRateCache exchangeRateCache;
+    private final CrossRateMatrixCache crossRateMatrixCache;
+    private final ConversionResponseCache conversionResponseCache;
+
+    @Value("${partitioning.create-ahead}")
+    private Period createAhead;
+
+    @Value("${partitioning.retention.enabled}")
+    private boolean retentionEnabled;
+
+    @Value("${partitioning.retention.period}")
+    private Period retentionPeriod;
+
+    @Value("${partitioning.retention.drop-detached}")
+    private boolean dropDetached;
+
+    @Scheduled(fixedDelayString = "${partitioning.maintenance-interval}")
+    public void maintainPartitions() {
+        final var today = LocalDate.now();
+        final var from = exchangeRatePartitionRepository.findEarliestUnpartitionedExchangeDate()
+                                                        .filter(date -> date.isBefore(today))
+                                                        .orElse(today);
+        final var created = exchangeRatePartitionRepository.createPartitions(from, today.plus(createAhead));
+        if (created > 0) {
+            log.info("Created {} exchange rate partitions for {} - {}", created, from, today.plus(createAhead));
+        }
+        if (retentionEnabled) {
+            final var detachedYears = exchangeRatePartitionRepository.detachPartitions(today.minus(retentionPeriod),
+                                                                                      dropDetached);
+            if (!detachedYears.isEmpty()) {
+                log.info("{} exchange rate partitions for years {}", dropDetached ? "Dropped" : "Archived",
+                         detachedYears);
+                // rates of the detached years may still be cached
+                exchangeRateCache.invalidateAll();
+                crossRateMatrixCache.invalidateAll();
+                conversionResponseCache.invalidateAll();
+            }
+        }
+    }
+}
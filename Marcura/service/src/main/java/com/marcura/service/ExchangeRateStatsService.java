@@ -0,0 +1,234 @@
+package com.marcura.service;
+
+import com.marcura.exception.CurrencyExchangeNotFoundException;
+import com.marcura.model.api.request.ExchangeRateStatsInterval;
+import com.marcura.model.api.response.ExchangeRatePeriodStats;
+import com.marcura.model.api.response.ExchangeRateStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateStatsService {
+    private static final BigInteger UNSIGNED_LONG_MASK = BigInteger.ONE.shiftLeft(Long.SIZE).subtract(BigInteger.ONE);
+
+    private final ExchangeRateHistoryStore exchangeRateHistoryStore;
+    private final CurrencySpreadCache currencySpreadCache;
+
+    /**
+     * Aggregates, per period of the interval, the exchange {@code GET /exchange} gives for every calendar day of the
+     * range, so rates are carried forward over days without one. Days before either currency has a rate and periods
+     * without any such day are left out. Spreads are the current ones.
+     */
+    public ExchangeRateStats getStats(String from, String to, LocalDate start, LocalDate end,
+                                      ExchangeRateStatsInterval interval) {
+        final var fromSanitized = CurrencyNames.sanitize(from);
+        final var toSanitized = CurrencyNames.sanitize(to);
+        final var fromHistory = exchangeRateHistoryStore.find(fromSanitized)
+                                                        .orElseThrow(() -> new CurrencyExchangeNotFoundException(
+                                                                fromSanitized, end));
+        final var toHistory = exchangeRateHistoryStore.find(toSanitized)
+                                                      .orElseThrow(() -> new CurrencyExchangeNotFoundException(
+                                                              toSanitized, end));
+        final var spreadFrom = currencySpreadCache.getSpreadBasisPoints(fromSanitized);
+        final var spreadTo = currencySpreadCache.getSpreadBasisPoints(toSanitized);
+        List<ExchangeRatePeriodStats> periods;
+        try {
+            periods = aggregate(fromHistory, toHistory, start, end, interval,
+                                new FixedPointPeriodAccumulator(spreadFrom, spreadTo));
+        } catch (ArithmeticException ex) {
+            // only rates that are many orders of magnitude apart get here
+            periods = aggregate(fromHistory, toHistory, start, end, interval,
+                                new BigDecimalPeriodAccumulator(spreadFrom, spreadTo));
+        }
+        return new ExchangeRateStats(fromSanitized, toSanitized, start, end, interval, periods,
+                                     exchangeRateHistoryStore.getSizeInBytes());
+    }
+
+    private static List<ExchangeRatePeriodStats> aggregate(ExchangeRateHistory fromHistory,
+                                                           ExchangeRateHistory toHistory, LocalDate start,
+                                                           LocalDate end, ExchangeRateStatsInterval interval,
+                                                           PeriodAccumulator period) {
+        final var startDay = toEpochDay(start);
+        final var endDay = toEpochDay(end);
+        final var fromCursor = fromHistory.cursor(startDay);
+        final var toCursor = toHistory.cursor(startDay);
+        final var periods = new ArrayList<ExchangeRatePeriodStats>();
+        var periodStart = start;
+        var nextPeriodStartDay = toEpochDay(interval.getNextPeriodStart(start));
+        var rateChanged = true;
+        for (int day = startDay; day <= endDay; day++) {
+            if (day == nextPeriodStartDay) {
+                periodStart = LocalDate.ofEpochDay(day);
+                period.addTo(periods, periodStart.minusDays(1));
+                nextPeriodStartDay = toEpochDay(interval.getNextPeriodStart(periodStart));
+            }
+            // non-short-circuit, both cursors have to move
+            rateChanged |= fromCursor.advanceTo(day) | toCursor.advanceTo(day);
+            if (!fromCursor.hasRate() || !toCursor.hasRate()) {
+                continue;
+            }
+            if (rateChanged) {
+                period.setRates(fromCursor.getRate(), toCursor.getRate());
+                rateChanged = false;
+            }
+            period.add(day);
+        }
+        period.addTo(periods, end);
+        return periods;
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    private static BigDecimal toExchange(long unscaledExchange) {
+        return BigDecimal.valueOf(unscaledExchange, ExchangeRateCalculator.EXCHANGE_SCALE);
+    }
+
+    private static BigDecimal average(BigDecimal sum, int days) {
+        return sum.divide(BigDecimal.valueOf(days), ExchangeRateCalculator.EXCHANGE_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Open, high, low, close and sum of the exchanges of one period, of the rates last set.
+     */
+    private abstract static class PeriodAccumulator {
+        final int spreadFrom;
+        final int spreadTo;
+        int firstDay;
+        int days;
+
+        PeriodAccumulator(int spreadFrom, int spreadTo) {
+            this.spreadFrom = spreadFrom;
+            this.spreadTo = spreadTo;
+        }
+
+        abstract void setRates(long exchangeRateFrom, long exchangeRateTo);
+
+        void add(int day) {
+            if (days == 0) {
+                firstDay = day;
+            }
+            days++;
+        }
+
+        abstract void addTo(List<ExchangeRatePeriodStats> periods, LocalDate lastDay);
+    }
+
+    /**
+     * Keeps unscaled exchanges in longs. The sum is kept in two longs, as the sum of a long period of large exchanges
+     * does not fit in one.
+     */
+    private static final class FixedPointPeriodAccumulator extends PeriodAccumulator {
+        private long exchange;
+        private long open;
+        private long high;
+        private long low;
+        private long close;
+        private long sumHigh;
+        private long sumLow;
+
+        FixedPointPeriodAccumulator(int spreadFrom, int spreadTo) {
+            super(spreadFrom, spreadTo);
+        }
+
+        /**
+         * @throws ArithmeticException if the rates are too many orders of magnitude apart for a fixed point exchange
+         */
+        @Override
+        void setRates(long exchangeRateFrom, long exchangeRateTo) {
+            exchange = ExchangeRateCalculator.calculateUnscaledExchange(exchangeRateFrom, exchangeRateTo, spreadFrom,
+                                                                        spreadTo);
+        }
+
+        @Override
+        void add(int day) {
+            if (days == 0) {
+                open = exchange;
+                high = exchange;
+                low = exchange;
+            } else {
+                high = Math.max(high, exchange);
+                low = Math.min(low, exchange);
+            }
+            close = exchange;
+            super.add(day);
+            final var previousSumLow = sumLow;
+            sumLow += exchange;
+            sumHigh += (exchange >> 63) + (Long.compareUnsigned(sumLow, previousSumLow) < 0 ? 1 : 0);
+        }
+
+        @Override
+        void addTo(List<ExchangeRatePeriodStats> periods, LocalDate lastDay) {
+            if (days == 0) {
+                return;
+            }
+            final var sum = BigInteger.valueOf(sumHigh)
+                                      .shiftLeft(Long.SIZE)
+                                      .add(BigInteger.valueOf(sumLow).and(UNSIGNED_LONG_MASK));
+            periods.add(new ExchangeRatePeriodStats(LocalDate.ofEpochDay(firstDay), lastDay, days, toExchange(open),
+                                                    toExchange(high), toExchange(low), toExchange(close),
+                                                    average(new BigDecimal(sum, ExchangeRateCalculator.EXCHANGE_SCALE),
+                                                            days)));
+            days = 0;
+            sumHigh = 0;
+            sumLow = 0;
+        }
+    }
+
+    /**
+     * For rates too far apart for {@link FixedPointPeriodAccumulator}, the exchanges are those of
+     * {@link ExchangeRateCalculator#calculateExchange}.
+     */
+    private static final class BigDecimalPeriodAccumulator extends PeriodAccumulator {
+        private BigDecimal exchange;
+        private BigDecimal open;
+        private BigDecimal high;
+        private BigDecimal low;
+        private BigDecimal close;
+        private BigDecimal sum;
+
+        BigDecimalPeriodAccumulator(int spreadFrom, int spreadTo) {
+            super(spreadFrom, spreadTo);
+        }
+
+        @Override
+        void setRates(long exchangeRateFrom, long exchangeRateTo) {
+            exchange = ExchangeRateCalculator.calculateExchange(exchangeRateFrom, exchangeRateTo, spreadFrom, spreadTo);
+        }
+
+        @Override
+        void add(int day) {
+            if (days == 0) {
+                open = exchange;
+                high = exchange;
+                low = exchange;
+                sum = exchange;
+            } else {
+                high = high.max(exchange);
+                low = low.min(exchange);
+                sum = sum.add(exchange);
+            }
+            close = exchange;
+            super.add(day);
+        }
+
+        @Override
+        void addTo(List<ExchangeRatePeriodStats> periods, LocalDate lastDay) {
+            if (days == 0) {
+                return;
+            }
+            periods.add(new ExchangeRatePeriodStats(LocalDate.ofEpochDay(firstDay), lastDay, days, open, high, low,
+                                                    close, average(sum, days)));
+            days = 0;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.marcura.service;
+
+import com.marcura.exception.CurrencyExchangeNotFoundException;
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.api.response.CurrencyExchange;
+import com.marcura.model.event.CurrencySpreadsChangedEvent;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes today's conversion of subscribed currency pairs as server-sent events whenever one of their rates or spreads
+ * changes, starting with the current one. Change events only record the changed currencies, a single fan-out thread
+ * recomputes each affected pair once and hands the exchange to the subscribers of the pair. Every subscriber buffers
+ * at most one exchange per pair, so a slow one only ever gets the latest, and is written to by a small delivery pool.
+ * Emitters are served asynchronously, idle subscribers hold no thread. Sends block until the client took the data, a
+ * subscriber whose send has not finished within {@code stream.send-timeout} is evicted and the pool gets a thread more
+ * until that send gives up, which the container's write timeout bounds, so clients that stopped reading cannot starve
+ * the others.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateStreamService {
+    private static final String EXCHANGE_EVENT = "exchange";
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private final CurrencyExchangeService currencyExchangeService;
+    private final MeterRegistry meterRegistry;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<CurrencyPair, Set<Subscriber>> subscribersByPair = new ConcurrentHashMap<>();
+    private final Queue<Subscriber> newSubscribers = new ConcurrentLinkedQueue<>();
+    // only touched by the fan-out thread
+    private final Map<CurrencyPair, CurrencyExchange> lastExchanges = new HashMap<>();
+    // guarded by this, as is fanOutScheduled
+    private final Set<String> changedCurrencies = new HashSet<>();
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    @Value("${stream.timeout}")
+    private Duration timeout;
+
+    @Value("${stream.delivery-threads}")
+    private int deliveryThreads;
+
+    @Value("${stream.send-timeout}")
+    private Duration sendTimeout;
+
+    private boolean fanOutScheduled;
+    private ExecutorService fanOutExecutor;
+    private ThreadPoolExecutor deliveryExecutor;
+
+    @PostConstruct
+    void init() {
+        fanOutExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("exchange-stream-fan-out-"));
+        deliveryExecutor = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 0, TimeUnit.MILLISECONDS,
+                                                  new LinkedBlockingQueue<>(),
+                                                  new CustomizableThreadFactory("exchange-stream-delivery-"));
+        Gauge.builder("exchange.rate.stream.subscribers", subscribers, Set::size)
+             .description("Open exchange rate streams")
+             .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fanOutExecutor.shutdownNow();
+        deliveryExecutor.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    public SseEmitter subscribe(Set<CurrencyPair> currencyPairs) {
+        final var sanitizedPairs = currencyPairs.stream()
+                                                .map(pair -> new CurrencyPair(CurrencyNames.sanitize(pair.from()),
+                                                                              CurrencyNames.sanitize(pair.to())))
+                                                .collect(Collectors.toUnmodifiableSet());
+        final var subscriber = new Subscriber(new SseEmitter(timeout.toMillis()), sanitizedPairs);
+        subscriber.emitter.onCompletion(() -> close(subscriber));
+        subscriber.emitter.onTimeout(() -> {
+            close(subscriber);
+            subscriber.emitter.complete();
+        });
+        subscriber.emitter.onError(ex -> close(subscriber));
+        subscribers.add(subscriber);
+        sanitizedPairs.forEach(pair -> subscribersByPair.computeIfAbsent(pair,
+                                                                         ignored -> ConcurrentHashMap.newKeySet())
+                                                        .add(subscriber));
+        newSubscribers.add(subscriber);
+        scheduleFanOut(Set.of());
+        return subscriber.emitter;
+    }
+
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * Runs last, once the caches the conversions are read through dropped what changed.
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onExchangeRatesChanged(ExchangeRatesChangedEvent event) {
+        scheduleFanOut(event.currencyPairs()
+                            .stream()
+                            .filter(pair -> baseCurrency.equalsIgnoreCase(pair.from()))
+                            .map(CurrencyPair::to)
+                            .collect(Collectors.toSet()));
+    }
+
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onCurrencySpreadsChanged(CurrencySpreadsChangedEvent event) {
+        scheduleFanOut(event.currencies());
+    }
+
+    /**
+     * Keeps idle streams open through proxies and finds out about clients that went away.
+     */
+    @Scheduled(fixedDelayString = "${stream.heartbeat-interval}")
+    public void sendHeartbeats() {
+        subscribers.forEach(subscriber -> {
+            if (subscriber.offerHeartbeat()) {
+                deliveryExecutor.execute(() -> deliver(subscriber));
+            }
+        });
+    }
+
+    /**
+     * Evicts subscribers that stopped reading, the thread blocked in their send is replaced until the send gives up.
+     */
+    @Scheduled(fixedDelayString = "${stream.send-timeout}")
+    public void evictStalledSubscribers() {
+        final var now = System.nanoTime();
+        subscribers.forEach(subscriber -> {
+            if (subscriber.evictIfStalled(now, sendTimeout)) {
+                log.warn("Evicting exchange rate stream of {}, a send has not finished within {}",
+                         subscriber.currencyPairs, sendTimeout);
+                unsubscribe(subscriber);
+                resizeDeliveryPool(1);
+            }
+        });
+    }
+
+    private synchronized void scheduleFanOut(Collection<String> currencies) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        changedCurrencies.addAll(currencies);
+        if (!fanOutScheduled) {
+            fanOutScheduled = true;
+            fanOutExecutor.execute(this::fanOut);
+        }
+    }
+
+    /**
+     * Changes that arrive while the fan-out runs are coalesced into the next one.
+     */
+    private void fanOut() {
+        final Set<String> changed;
+        synchronized (this) {
+            changed = Set.copyOf(changedCurrencies);
+            changedCurrencies.clear();
+            fanOutScheduled = false;
+        }
+        try {
+            for (final var entry : subscribersByPair.entrySet()) {
+                final var pair = entry.getKey();
+                if (!changed.contains(pair.from()) && !changed.contains(pair.to())) {
+                    continue;
+                }
+                final var exchange = findExchange(pair);
+                if (exchange != null && !exchange.equals(lastExchanges.put(pair, exchange))) {
+                    entry.getValue().forEach(subscriber -> offer(subscriber, pair, exchange));
+                }
+            }
+            Subscriber subscriber;
+            while ((subscriber = newSubscribers.poll()) != null) {
+                for (final var pair : subscriber.currencyPairs) {
+                    final var exchange = findExchange(pair);
+                    if (exchange != null) {
+                        lastExchanges.put(pair, exchange);
+                        offer(subscriber, pair, exchange);
+                    }
+                }
+            }
+            lastExchanges.keySet().retainAll(subscribersByPair.keySet());
+        } catch (RuntimeException ex) {
+            log.warn("Fanning out exchange rate changes of {} failed", changed, ex);
+        }
+    }
+
+    private CurrencyExchange findExchange(CurrencyPair pair) {
+        try {
+            return currencyExchangeService.calculateExchangeRate(pair.from(), pair.to(), LocalDate.now());
+        } catch (CurrencyExchangeNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private void offer(Subscriber subscriber, CurrencyPair pair, CurrencyExchange exchange) {
+        if (subscriber.offer(pair, exchange)) {
+            deliveryExecutor.execute(() -> deliver(subscriber));
+        }
+    }
+
+    private void deliver(Subscriber subscriber) {
+        var sendFailed = false;
+        try {
+            for (var delivery = subscriber.takePending(); delivery != null; delivery = subscriber.takePending()) {
+                synchronized (subscriber.sendLock) {
+                    if (subscriber.closed) {
+                        return;
+                    }
+                    if (delivery.heartbeat()) {
+                        subscriber.emitter.send(SseEmitter.event().comment(HEARTBEAT_COMMENT));
+                    }
+                    for (final var exchange : delivery.exchanges()) {
+                        subscriber.emitter.send(SseEmitter.event()
+                                                          .name(EXCHANGE_EVENT)
+                                                          .data(exchange, MediaType.APPLICATION_JSON));
+                    }
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // the client went away or the emitter already completed, the container completes the request by itself
+            log.debug("Dropping exchange rate stream of {}: {}", subscriber.currencyPairs, ex.getMessage());
+            sendFailed = true;
+            close(subscriber);
+        } finally {
+            if (subscriber.endStall()) {
+                resizeDeliveryPool(-1);
+                if (!sendFailed) {
+                    close(subscriber);
+                    subscriber.emitter.complete();
+                }
+            }
+        }
+    }
+
+    private void resizeDeliveryPool(int delta) {
+        synchronized (deliveryExecutor) {
+            final var size = deliveryExecutor.getCorePoolSize() + delta;
+            // the core size may never exceed the maximum one
+            if (delta > 0) {
+                deliveryExecutor.setMaximumPoolSize(size);
+                deliveryExecutor.setCorePoolSize(size);
+            } else {
+                deliveryExecutor.setCorePoolSize(size);
+                deliveryExecutor.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    /**
+     * Waits for a send in progress, as the container recycles the response for another request once the emitter
+     * callbacks return and a later write would end up in that one.
+     */
+    private void close(Subscriber subscriber) {
+        synchronized (subscriber.sendLock) {
+            subscriber.closed = true;
+        }
+        unsubscribe(subscriber);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (final var pair : subscriber.currencyPairs) {
+            subscribersByPair.computeIfPresent(pair, (ignored, pairSubscribers) -> {
+                pairSubscribers.remove(subscriber);
+                return pairSubscribers.isEmpty() ? null : pairSubscribers;
+            });
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<CurrencyPair> currencyPairs;
+        private final Map<CurrencyPair, CurrencyExchange> pending = new LinkedHashMap<>();
+        private final Object sendLock = new Object();
+        // guarded by sendLock
+        private boolean closed;
+        // guarded by this, as is pending
+        private boolean heartbeatDue;
+        private boolean delivering;
+        private boolean sending;
+        private long sendStartedAt;
+        private boolean evicted;
+        private boolean stalled;
+
+        private Subscriber(SseEmitter emitter, Set<CurrencyPair> currencyPairs) {
+            this.emitter = emitter;
+            this.currencyPairs = currencyPairs;
+        }
+
+        /**
+         * Replaces an exchange of the pair that was not delivered yet.
+         *
+         * @return whether a delivery has to be started
+         */
+        synchronized boolean offer(CurrencyPair pair, CurrencyExchange exchange) {
+            pending.put(pair, exchange);
+            return startDelivery();
+        }
+
+        synchronized boolean offerHeartbeat() {
+            heartbeatDue = true;
+            return startDelivery();
+        }
+
+        /**
+         * @return what is pending, or null once nothing is and the delivery ended
+         */
+        synchronized Delivery takePending() {
+            if (evicted || pending.isEmpty() && !heartbeatDue) {
+                delivering = false;
+                sending = false;
+                return null;
+            }
+            final var delivery = new Delivery(heartbeatDue, List.copyOf(pending.values()));
+            pending.clear();
+            heartbeatDue = false;
+            sending = true;
+            sendStartedAt = System.nanoTime();
+            return delivery;
+        }
+
+        /**
+         * @return whether the subscriber was evicted as its delivery has been sending for longer than the timeout
+         */
+        synchronized boolean evictIfStalled(long now, Duration sendTimeout) {
+            if (evicted || !sending || now - sendStartedAt < sendTimeout.toNanos()) {
+                return false;
+            }
+            evicted = true;
+            stalled = true;
+            return true;
+        }
+
+        /**
+         * @return whether the delivery that ended was the one the subscriber was evicted for, only once
+         */
+        synchronized boolean endStall() {
+            if (!stalled) {
+                return false;
+            }
+            stalled = false;
+            return true;
+        }
+
+        private boolean startDelivery() {
+            if (delivering) {
+                return false;
+            }
+            delivering = true;
+            return true;
+        }
+    }
+
+    private record Delivery(boolean heartbeat, List<CurrencyExchange> exchanges) {
+    }
+}
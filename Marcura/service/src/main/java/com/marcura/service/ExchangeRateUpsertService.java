@@ -0,0 +1,74 @@
+package com.marcura.service;
+
+import com.marcura.model.CurrencyPair;
+import com.marcura.model.IngestionResult;
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import com.marcura.model.entity.ExchangeRate;
+import com.marcura.model.event.ExchangeRatesChangedEvent;
+import com.marcura.model.projection.UpsertedExchangeRate;
+import com.marcura.repository.ExchangeRateJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ExchangeRateUpsertService {
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public static ExchangeRate newExchangeRate(String currencyFrom, String currencyTo, LocalDate exchangeDate,
+                                               BigDecimal rate) {
+        final var exchangeRate = new ExchangeRate();
+        exchangeRate.setCurrencyFrom(currencyFrom);
+        exchangeRate.setCurrencyTo(currencyTo);
+        exchangeRate.setRate(rate);
+        exchangeRate.setExchangeDate(exchangeDate);
+        return exchangeRate;
+    }
+
+    /**
+     * Upserts the rates, the last occurrence of a duplicated (from, to, date) wins, and publishes
+     * {@link ExchangeRatesChangedEvent} for the rows that were inserted or updated.
+     */
+    public IngestionResult upsertExchangeRates(List<ExchangeRate> exchangeRates) {
+        final var uniqueExchangeRates = new LinkedHashMap<ExchangeRateKey, ExchangeRate>();
+        exchangeRates.forEach(exchangeRate -> uniqueExchangeRates.put(new ExchangeRateKey(
+                exchangeRate.getCurrencyFrom(), exchangeRate.getCurrencyTo(), exchangeRate.getExchangeDate()),
+                                                                      exchangeRate));
+        final var upsertedExchangeRates = exchangeRateJdbcRepository.upsertExchangeRates(
+                List.copyOf(uniqueExchangeRates.values()));
+        final var inserted = (int) upsertedExchangeRates.stream().filter(UpsertedExchangeRate::inserted).count();
+        final var updated = upsertedExchangeRates.size() - inserted;
+        ExchangeRatesChangedEvent changes = null;
+        if (!upsertedExchangeRates.isEmpty()) {
+            changes = new ExchangeRatesChangedEvent(
+                    upsertedExchangeRates.stream()
+                                         .map(exchangeRate -> new CurrencyPair(exchangeRate.currencyFrom(),
+                                                                               exchangeRate.currencyTo()))
+                                         .collect(Collectors.toSet()),
+                    upsertedExchangeRates.stream()
+                                         .map(UpsertedExchangeRate::exchangeDate)
+                                         .min(Comparator.naturalOrder())
+                                         .orElseThrow(),
+                    upsertedExchangeRates.stream()
+                                         .map(UpsertedExchangeRate::exchangeDate)
+                                         .max(Comparator.naturalOrder())
+                                         .orElseThrow());
+            applicationEventPublisher.publishEvent(changes);
+        }
+        return new IngestionResult(new ExchangeRateUpsertResult(inserted, updated,
+                                                                uniqueExchangeRates.size() - inserted - updated),
+                                   changes);
+    }
+
+    private record ExchangeRateKey(String currencyFrom, String currencyTo, LocalDate exchangeDate) {
+    }
+}
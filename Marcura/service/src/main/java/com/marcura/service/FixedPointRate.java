@@ -0,0 +1,56 @@
+package com.marcura.service;
+
+import com.marcura.model.entity.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rates as longs scaled by 10^{@link #SCALE}, so that the conversion hot path works on primitives. Arithmetic is
+ * exact or rounds HALF_EVEN like {@link BigDecimal}, and throws {@link ArithmeticException} instead of overflowing.
+ */
+public final class FixedPointRate {
+    public static final int SCALE = ExchangeRate.SCALE;
+    public static final long ONE = 1_000_000L;
+    public static final BigDecimal MAX_VALUE = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+
+    private FixedPointRate() {
+    }
+
+    /**
+     * @throws ArithmeticException if the rate has more than {@link #SCALE} decimals or is above {@link #MAX_VALUE}
+     */
+    public static long of(BigDecimal rate) {
+        return rate.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long rate) {
+        return BigDecimal.valueOf(rate, SCALE);
+    }
+
+    /**
+     * Quotient of two values of the same scale, as unscaled value of the given scale rounded HALF_EVEN. The decimals
+     * are produced by long division, so the dividend is never scaled up as a whole.
+     *
+     * @throws ArithmeticException if the divisor is zero, the quotient does not fit in a long or the divisor is above
+     *                             {@code Long.MAX_VALUE / 10}, where the partial remainders stop fitting
+     */
+    public static long divide(long dividend, long divisor, int quotientScale) {
+        var quotient = dividend / divisor;
+        var remainder = dividend % divisor;
+        for (int i = 0; i < quotientScale; i++) {
+            remainder = Math.multiplyExact(remainder, 10);
+            quotient = Math.addExact(Math.multiplyExact(quotient, 10), remainder / divisor);
+            remainder %= divisor;
+        }
+        if (remainder == 0) {
+            return quotient;
+        }
+        final var absRemainder = Math.abs(remainder);
+        final var halfComparison = Long.compare(absRemainder, Math.abs(divisor) - absRemainder);
+        if (halfComparison > 0 || halfComparison == 0 && (quotient & 1) != 0) {
+            return Math.addExact(quotient, (dividend ^ divisor) < 0 ? -1 : 1);
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,33 @@
+package com.marcura.service;
+
+import com.marcura.model.api.response.ExchangeRateUpsertResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class IngestionMetrics {
+    public static final String SOURCE_FIXER = "fixer";
+    public static final String SOURCE_REQUEST = "request";
+    public static final String SOURCE_IMPORT = "import";
+    public static final String SOURCE_BACKFILL = "backfill";
+
+    private final MeterRegistry meterRegistry;
+
+    public void record(String source, ExchangeRateUpsertResult upsertResult) {
+        rows(source, "inserted").record(upsertResult.inserted());
+        rows(source, "updated").record(upsertResult.updated());
+        rows(source, "unchanged").record(upsertResult.unchanged());
+    }
+
+    private DistributionSummary rows(String source, String result) {
+        return DistributionSummary.builder("exchange.rate.ingestion.rows")
+                                  .description("Exchange rates written per ingestion")
+                                  .baseUnit("rows")
+                                  .tag("source", source)
+                                  .tag("result", result)
+                                  .register(meterRegistry);
+    }
+}
@@ -0,0 +1,179 @@
+package com.marcura.service;
+
+import com.marcura.model.IngestionResult;
+import com.marcura.repository.IngestionRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Makes scheduled ingestions cluster-safe. Every replica fires the schedule, but only the one that gets the job's
+ * advisory lock runs it, and only if no run for the same scheduled time succeeded yet, so replicas firing a little late
+ * do not repeat it. A replica firing more than {@code misfire-tolerance} late skips the run, which a replica on time
+ * did or which waits for the next scheduled time. Runs are recorded in {@code ingestion_run}, as are ingestions run on
+ * request; replicas poll it and publish the changes of runs finished elsewhere so that their caches drop the rates
+ * those runs rewrote. A run commits a little after it is stamped finished, so runs of other jobs may show up behind
+ * ones already seen: every poll looks back {@code publish-lookback} behind the latest finished run it saw and skips the
+ * runs it already published.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionRunCoordinator {
+    private static final String TRY_ADVISORY_LOCK_SQL = "SELECT pg_try_advisory_lock(hashtext(?))";
+    private static final String ADVISORY_UNLOCK_SQL = "SELECT pg_advisory_unlock(hashtext(?))";
+    // the scheduler may fire a moment before the scheduled time as the wall clock has it
+    private static final Duration EARLY_FIRE_TOLERANCE = Duration.ofSeconds(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestionRunRepository ingestionRunRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final Clock clock;
+
+    @Value("${ingestion.run.instance}")
+    private String instance;
+
+    @Value("${ingestion.run.misfire-tolerance}")
+    private Duration misfireTolerance;
+
+    @Value("${ingestion.run.publish-lookback}")
+    private Duration publishLookback;
+
+    // runs published that finished within publishLookback of lastFinishedAt, by id
+    private final Map<Long, Instant> publishedRuns = new HashMap<>();
+
+    private Instant lastFinishedAt;
+
+    @PostConstruct
+    void init() {
+        lastFinishedAt = ingestionRunRepository.findLatestFinishedAt();
+        // committed before this instance read anything, so nothing it caches can predate them
+        ingestionRunRepository.findFinishedRuns(lastFinishedAt.minus(publishLookback), instance)
+                              .forEach(finishedRun -> publishedRuns.put(finishedRun.id(), finishedRun.finishedAt()));
+    }
+
+    public void runAsLeader(String job, CronExpression cron, ZoneId zone, Supplier<IngestionResult> ingestion) {
+        final var scheduledAt = findLatestScheduledTime(cron, ZonedDateTime.ofInstant(clock.instant(), zone));
+        if (scheduledAt == null) {
+            log.warn("Skipping {}, it fired more than {} after the time it was scheduled at", job, misfireTolerance);
+            return;
+        }
+        if (!runOnce(job, scheduledAt, ingestion)) {
+            log.info("Skipping {} scheduled at {}, another instance is running it", job, scheduledAt);
+        }
+    }
+
+    /**
+     * Runs the ingestion unless a run of the job scheduled at the same time already succeeded.
+     *
+     * @return false if another instance holds the job's lock
+     */
+    public boolean runOnce(String job, Instant scheduledAt, Supplier<IngestionResult> ingestion) {
+        return runExclusively(job, () -> run(job, scheduledAt, ingestion));
+    }
+
+    /**
+     * Records an ingestion that ran outside of a schedule, on request, so that other replicas publish its changes too.
+     */
+    public void recordRun(String job, IngestionResult ingestionResult) {
+        if (ingestionResult.changes() != null) {
+            ingestionRunRepository.recordRun(job, instance, ingestionResult);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.run.poll-interval}")
+    public synchronized void publishRunsFinishedElsewhere() {
+        final var finishedRuns = ingestionRunRepository.findFinishedRuns(lastFinishedAt.minus(publishLookback),
+                                                                         instance);
+        for (final var finishedRun : finishedRuns) {
+            if (publishedRuns.putIfAbsent(finishedRun.id(), finishedRun.finishedAt()) != null) {
+                continue;
+            }
+            log.info("Ingestion {} finished on {} at {}, changes: {}", finishedRun.job(), finishedRun.instance(),
+                     finishedRun.finishedAt(), finishedRun.changes());
+            if (finishedRun.changes() != null) {
+                applicationEventPublisher.publishEvent(finishedRun.changes());
+            }
+            if (finishedRun.finishedAt().isAfter(lastFinishedAt)) {
+                lastFinishedAt = finishedRun.finishedAt();
+            }
+        }
+        final var lookbackStart = lastFinishedAt.minus(publishLookback);
+        publishedRuns.values().removeIf(finishedAt -> finishedAt.isBefore(lookbackStart));
+    }
+
+    /**
+     * @return the latest time the job was scheduled at, no longer than {@code misfire-tolerance} ago, or null if there
+     * is none
+     */
+    private Instant findLatestScheduledTime(CronExpression cron, ZonedDateTime now) {
+        final var latest = now.plus(EARLY_FIRE_TOLERANCE);
+        Instant scheduledAt = null;
+        for (var next = cron.next(now.minus(misfireTolerance)); next != null && !next.isAfter(latest);
+             next = cron.next(next)) {
+            scheduledAt = next.toInstant();
+        }
+        return scheduledAt;
+    }
+
+    /**
+     * Runs the task while holding a session-level advisory lock named after the job, on a connection kept for the
+     * whole run. The lock goes away with the connection if the instance dies half-way.
+     */
+    private boolean runExclusively(String job, Runnable task) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!callLockFunction(connection, TRY_ADVISORY_LOCK_SQL, job)) {
+                return false;
+            }
+            try {
+                task.run();
+                return true;
+            } finally {
+                callLockFunction(connection, ADVISORY_UNLOCK_SQL, job);
+            }
+        }));
+    }
+
+    private void run(String job, Instant scheduledAt, Supplier<IngestionResult> ingestion) {
+        final var runId = ingestionRunRepository.startRun(job, scheduledAt, instance);
+        if (runId == null) {
+            log.info("Skipping {} scheduled at {}, it already succeeded", job, scheduledAt);
+            return;
+        }
+        final IngestionResult ingestionResult;
+        try {
+            ingestionResult = ingestion.get();
+        } catch (RuntimeException ex) {
+            ingestionRunRepository.failRun(runId, ex.toString());
+            throw ex;
+        }
+        ingestionRunRepository.finishRun(runId, ingestionResult);
+    }
+
+    private static boolean callLockFunction(Connection connection, String sql, String job) throws SQLException {
+        try (final var statement = connection.prepareStatement(sql)) {
+            statement.setString(1, job);
+            try (final var rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.marcura.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time. Callers that arrive while a call is in flight wait for it and share its
+ * result or exception. A successful result is also handed to callers that arrive within the freshness window after
+ * it completed, failures are never reused.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final long freshnessNanos;
+
+    public SingleFlight(Duration freshness) {
+        this.freshnessNanos = freshness.toNanos();
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        while (true) {
+            final var flight = flights.get(key);
+            if (flight != null) {
+                if (!flight.isDone() || flight.isFresh(freshnessNanos)) {
+                    return flight.await();
+                }
+                flights.remove(key, flight);
+            }
+            final var newFlight = new Flight<V>();
+            if (flights.putIfAbsent(key, newFlight) == null) {
+                return fly(key, newFlight, call);
+            }
+        }
+    }
+
+    private V fly(K key, Flight<V> flight, Supplier<V> call) {
+        final V value;
+        try {
+            value = call.get();
+        } catch (RuntimeException | Error ex) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(ex);
+            throw ex;
+        }
+        flight.land(value);
+        if (freshnessNanos == 0) {
+            flights.remove(key, flight);
+        }
+        return value;
+    }
+
+    private static final class Flight<V> extends CompletableFuture<V> {
+        private volatile long landedAt;
+
+        void land(V value) {
+            landedAt = System.nanoTime();
+            complete(value);
+        }
+
+        boolean isFresh(long freshnessNanos) {
+            return !isCompletedExceptionally() && System.nanoTime() - landedAt < freshnessNanos;
+        }
+
+        V await() {
+            try {
+                return join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (ex.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+    }
+}
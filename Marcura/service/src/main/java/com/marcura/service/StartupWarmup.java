@@ -0,0 +1,115 @@
+package com.marcura.service;
+
+import com.marcura.configuration.ReplicaRoutingDataSource;
+import com.marcura.repository.CurrencyExchangeRateRepository;
+import com.marcura.repository.ExchangeRateJdbcRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Runs before the application reports itself ready to take traffic, as Spring Boot only does so once every
+ * {@link ApplicationRunner} returned. Opens the connection pools and reads the most accessed rates, by
+ * {@code access_counter}, through the path conversions take, so the first requests of a new instance find them cached.
+ * A failed warmup is logged and does not keep the instance from becoming ready.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StartupWarmup implements ApplicationRunner {
+    private final HikariDataSource primaryDataSource;
+    private final ReplicaRoutingDataSource replicaRoutingDataSource;
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final CurrencyExchangeRateRepository currencyExchangeRateRepository;
+    private final CrossRateMatrixCache crossRateMatrixCache;
+    private final ExchangeRateCache exchangeRateCache;
+
+    @Value("${warmup.enabled}")
+    private boolean enabled;
+
+    @Value("${warmup.hot-exchange-rates}")
+    private int hotExchangeRates;
+
+    @Value("${base-currency}")
+    private String baseCurrency;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        final var startedAt = System.nanoTime();
+        openConnections(primaryDataSource);
+        // brings healthy replicas into rotation now rather than on the first scheduled check
+        replicaRoutingDataSource.checkReplicas();
+        for (final var replica : replicaRoutingDataSource.getReplicas()) {
+            if (replica.isHealthy() && replica.dataSource() instanceof HikariDataSource hikariDataSource) {
+                openConnections(hikariDataSource);
+            }
+        }
+        var warmedUp = 0;
+        try {
+            warmedUp = warmUpConversions();
+        } catch (RuntimeException ex) {
+            log.warn("Warming up conversions failed", ex);
+        }
+        log.info("Warmed up connection pools and {} exchange rates in {}", warmedUp,
+                 Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    private void openConnections(HikariDataSource dataSource) {
+        final var connections = new ArrayList<Connection>();
+        try {
+            // the minimum is only known once the pool started, which the first connection does
+            while (connections.size() < Math.max(1, dataSource.getMinimumIdle())) {
+                connections.add(dataSource.getConnection());
+            }
+        } catch (SQLException ex) {
+            log.warn("Opening connections of pool {} failed: {}", dataSource.getPoolName(), ex.getMessage());
+        } finally {
+            connections.forEach(StartupWarmup::closeQuietly);
+        }
+    }
+
+    /**
+     * Warms what {@link CurrencyExchangeService} reads first: the cross-rate matrices of today and the dates of the hot
+     * rates, else their cached rates, else their conversion quotes.
+     */
+    private int warmUpConversions() {
+        final var hotRates = exchangeRateJdbcRepository.findMostAccessedExchangeRates(baseCurrency, hotExchangeRates);
+        if (crossRateMatrixCache.isEnabled()) {
+            final var dates = new LinkedHashSet<LocalDate>();
+            dates.add(LocalDate.now());
+            hotRates.forEach(hotRate -> dates.add(hotRate.date()));
+            dates.forEach(crossRateMatrixCache::find);
+        } else if (exchangeRateCache.isEnabled()) {
+            hotRates.forEach(hotRate -> exchangeRateCache.findLatestOnOrBefore(baseCurrency, hotRate.currency(),
+                                                                               hotRate.date()));
+        } else {
+            for (final var hotRate : hotRates) {
+                currencyExchangeRateRepository.findConversionQuote(baseCurrency, baseCurrency, hotRate.currency(),
+                                                                   hotRate.date());
+            }
+        }
+        return hotRates.size();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            log.debug("Closing warmup connection failed: {}", ex.getMessage());
+        }
+    }
+}
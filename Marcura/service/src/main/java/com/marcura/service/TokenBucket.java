@@ -0,0 +1,40 @@
+package com.marcura.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking token bucket holding up to {@code capacity} permits and refilling {@code permitsPerSecond} of them.
+ * A caller that finds it empty reserves the next permit before sleeping, so waiting callers are served in order
+ * and a burst never exceeds the capacity.
+ */
+public class TokenBucket {
+    private final long nanosPerPermit;
+    private final long burstNanos;
+    private long nextPermitAt;
+
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and capacity");
+        }
+        nanosPerPermit = (long) (Duration.ofSeconds(1).toNanos() / permitsPerSecond);
+        burstNanos = (capacity - 1) * nanosPerPermit;
+        nextPermitAt = System.nanoTime() - burstNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        final var waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private synchronized long reserve() {
+        final var now = System.nanoTime();
+        // permits beyond the capacity are not accumulated while the bucket is idle
+        nextPermitAt = Math.max(nextPermitAt, now - burstNanos);
+        final var waitNanos = nextPermitAt - now;
+        nextPermitAt += nanosPerPermit;
+        return waitNanos;
+    }
+}
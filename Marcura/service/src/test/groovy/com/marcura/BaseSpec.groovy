@@ -1,5 +1,8 @@
 package com.marcura
 
+import com.marcura.service.ConversionResponseCache
+import com.marcura.service.CrossRateMatrixCache
+import com.marcura.service.ExchangeRateCache
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
 import org.springframework.jdbc.core.JdbcTemplate
@@ -10,6 +13,7 @@ import org.testcontainers.containers.PostgreSQLContainer
 import org.testcontainers.containers.wait.strategy.Wait
 import org.testcontainers.images.builder.ImageFromDockerfile
 import org.testcontainers.utility.DockerImageName
+import org.testcontainers.utility.MountableFile
 import spock.lang.Specification
 
 import java.nio.file.Paths
@@ -21,14 +25,25 @@ class BaseSpec extends Specification {
     @Autowired
     protected JdbcTemplate jdbcTemplate
 
-    private static final Network NETWORK = Network.newNetwork()
-    private static final def POSTGRESQL_PORT = 5432
-    private static final def POSTGRES_ALIAS = "postgres"
+    @Autowired
+    protected ExchangeRateCache exchangeRateCache
+
+    @Autowired
+    protected CrossRateMatrixCache crossRateMatrixCache
+
+    @Autowired
+    protected ConversionResponseCache conversionResponseCache
+
+    protected static final Network NETWORK = Network.newNetwork()
+    protected static final def POSTGRESQL_PORT = 5432
+    protected static final def POSTGRES_ALIAS = "postgres"
 
-    private static final def postgreSQLContainer = new PostgreSQLContainer<>(
+    protected static final def postgreSQLContainer = new PostgreSQLContainer<>(
             DockerImageName.parse("postgres:12"))
             .withNetwork(NETWORK)
             .withNetworkAliases(POSTGRES_ALIAS)
+            .withCopyFileToContainer(MountableFile.forClasspathResource("replication/allow-replication.sh"),
+                                     "/docker-entrypoint-initdb.d/allow-replication.sh")
             .waitingFor(Wait.forListeningPort())
 
     private static final def dbMigration = new GenericContainer<>(
@@ -42,6 +57,15 @@ class BaseSpec extends Specification {
         configureSpringDataSource()
     }
 
+    /**
+     * Drops what the caches of conversions hold, to be called once a spec changed rates behind their back.
+     */
+    protected void invalidateCaches() {
+        exchangeRateCache.invalidateAll()
+        crossRateMatrixCache.invalidateAll()
+        conversionResponseCache.invalidateAll()
+    }
+
     private static def getPathToDbMigrationServiceDockerfile() {
         return Paths.get("")
                     .toAbsolutePath()
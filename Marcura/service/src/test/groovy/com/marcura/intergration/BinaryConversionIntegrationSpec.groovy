@@ -0,0 +1,178 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.ApiError
+import com.marcura.model.api.request.CurrencyExchangeQuery
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.protocol.BinaryConversionClient
+import com.marcura.protocol.BinaryConversionProtocol
+import com.marcura.protocol.BinaryConversionServer
+import com.marcura.service.ExchangeRateCalculator
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+
+import java.time.LocalDate
+
+class BinaryConversionIntegrationSpec extends BaseSpec {
+    private static final String EXCHANGE_ENDPOINT = "/exchange?from=%s&to=%s"
+
+    @Autowired
+    private BinaryConversionServer binaryConversionServer
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    private BinaryConversionClient client
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'PLN', 4.0, '2023-01-03'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+        client = new BinaryConversionClient("localhost", binaryConversionServer.getPort())
+    }
+
+    def cleanup() {
+        client.close()
+    }
+
+    def "shouldConvertAsRestApiDoes"() {
+        when:
+        final def result = client.convert(from, to, date)
+
+        then:
+        result.error() == null
+        result.exchange() == getExchange(from, to, date)
+
+        where:
+        from  | to    | date
+        "EUR" | "PLN" | null
+        "pln" | "eur" | LocalDate.of(2023, 1, 2)
+        "USD" | "PLN" | LocalDate.of(2023, 1, 3)
+    }
+
+    def "shouldAnswerPipelinedRequestsInOrder"() {
+        given:
+        final def distinctQueries = [new CurrencyExchangeQuery("EUR", "PLN", null),
+                                     new CurrencyExchangeQuery("PLN", "EUR", LocalDate.of(2023, 1, 2)),
+                                     new CurrencyExchangeQuery("USD", "PLN", LocalDate.of(2023, 1, 3)),
+                                     new CurrencyExchangeQuery("ABC", "PLN", null)]
+        final def expected = distinctQueries.collect { client.convert(it.from(), it.to(), it.date()) }
+        // more than are ever in flight at once
+        final def queries = (0..<5000).collect { distinctQueries[it % distinctQueries.size()] }
+
+        when:
+        final def results = client.convertAll(queries)
+
+        then:
+        results.size() == queries.size()
+        results.withIndex().every { result, index ->
+            final def expectedResult = expected[index % expected.size()]
+            result.exchange() == expectedResult.exchange() &&
+                    result.error()?.status() == expectedResult.error()?.status()
+        }
+    }
+
+    def "shouldRespondWithStatusAndMessageOfRestApi"() {
+        given:
+        final def restResponse = testRestTemplate.getForEntity(EXCHANGE_ENDPOINT.formatted(from, to) +
+                                                                       (date == null ? "" : "&date=$date"),
+                                                               ApiError.class)
+
+        when:
+        final def result = client.convert(from, to, date)
+
+        then:
+        result.exchange() == null
+        result.error().status() == status
+        result.error().status() == restResponse.statusCode
+        result.error().message() == restResponse.body.message()
+
+        where:
+        from  | to    | date                        || status
+        "ABC" | "PLN" | null                        || HttpStatus.NOT_FOUND
+        "EUR" | "PLN" | LocalDate.of(2022, 12, 31)  || HttpStatus.NOT_FOUND
+        "EUR" | "eur" | null                        || HttpStatus.BAD_REQUEST
+        "EUR" | "PLN" | LocalDate.now().plusDays(1) || HttpStatus.BAD_REQUEST
+    }
+
+    def "shouldConvertRatesManyOrdersOfMagnitudeApartAndKeepServingConnection"() {
+        given:
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'AAA', 0.000001, '2023-01-01'),\n" +
+                                     "       ('USD', 'ZZZ', 1000000000000, '2023-01-01');")
+        final def queries = [new CurrencyExchangeQuery("AAA", "ZZZ", null),
+                             new CurrencyExchangeQuery("ZZZ", "AAA", null),
+                             new CurrencyExchangeQuery("EUR", "PLN", null)]
+
+        when:
+        final def results = client.convertAll(queries)
+
+        then:
+        results.every { it.error() == null }
+        // beyond a long once unscaled
+        results[0].exchange().exchange().movePointRight(ExchangeRateCalculator.EXCHANGE_SCALE) > Long.MAX_VALUE
+        results.withIndex().every { result, index ->
+            result.exchange() == getExchange(queries[index].from(), queries[index].to(), null)
+        }
+    }
+
+    def "shouldRejectMalformedRequestAndKeepServingConnection"() {
+        given:
+        final def socket = new Socket("localhost", binaryConversionServer.getPort())
+        final def out = new DataOutputStream(socket.getOutputStream())
+        final def input = new DataInputStream(socket.getInputStream())
+
+        when:
+        out.writeShort(3)
+        out.write([BinaryConversionProtocol.CONVERT, 1, 2] as byte[])
+        BinaryConversionProtocol.writeConvertRequest(out, "EUR", "PLN", null)
+        out.flush()
+        final def malformed = BinaryConversionProtocol.readFrame(input)
+        final def converted = BinaryConversionProtocol.readFrame(input)
+
+        then:
+        readStatus(malformed) == HttpStatus.BAD_REQUEST.value()
+        readStatus(converted) == HttpStatus.OK.value()
+
+        cleanup:
+        socket.close()
+    }
+
+    def "shouldConvertFasterThanRestApi"() {
+        given:
+        final def queries = (0..<20_000).collect { new CurrencyExchangeQuery(it % 2 == 0 ? "EUR" : "PLN",
+                                                                             it % 2 == 0 ? "PLN" : "EUR", null) }
+        final def restCalls = 2_000
+        // warms up both paths and the caches they read through
+        client.convertAll(queries.take(5_000))
+        (0..<500).each { getExchange("EUR", "PLN", null) }
+
+        when:
+        def startedAt = System.nanoTime()
+        final def results = client.convertAll(queries)
+        final def binaryPerSecond = queries.size() / ((System.nanoTime() - startedAt) / 1_000_000_000)
+        startedAt = System.nanoTime()
+        (0..<restCalls).each { getExchange(it % 2 == 0 ? "EUR" : "PLN", it % 2 == 0 ? "PLN" : "EUR", null) }
+        final def restPerSecond = restCalls / ((System.nanoTime() - startedAt) / 1_000_000_000)
+
+        then:
+        results.every { it.error() == null }
+        binaryPerSecond > restPerSecond
+    }
+
+    private CurrencyExchange getExchange(String from, String to, LocalDate date) {
+        final def response = testRestTemplate.getForEntity(EXCHANGE_ENDPOINT.formatted(from, to) +
+                                                                   (date == null ? "" : "&date=$date"),
+                                                           CurrencyExchange.class)
+        assert response.statusCode == HttpStatus.OK
+        return response.body
+    }
+
+    private static int readStatus(byte[] frame) {
+        return ((frame[0] & 0xFF) << 8) | (frame[1] & 0xFF)
+    }
+}
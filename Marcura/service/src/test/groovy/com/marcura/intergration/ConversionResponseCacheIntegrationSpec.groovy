@@ -0,0 +1,154 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.repository.CurrencyExchangeRateRepository
+import com.marcura.service.ConversionResponseCache
+import com.marcura.service.ExchangeRateAccessCounter
+import com.marcura.service.ExchangeRateUpsertService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+
+import java.time.Duration
+import java.time.LocalDate
+
+import static com.marcura.service.ExchangeRateUpsertService.newExchangeRate
+
+class ConversionResponseCacheIntegrationSpec extends BaseSpec {
+    private static final String GET_EXCHANGE_ENDPOINT = "/exchange?from=%s&to=%s"
+    private static final String GET_EXCHANGE_ENDPOINT_WITH_DATE = GET_EXCHANGE_ENDPOINT + "&date=%s"
+    private static final LocalDate EXCHANGE_DATE = LocalDate.of(2023, 1, 1)
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private CurrencyExchangeRateRepository currencyExchangeRateRepository
+
+    @Autowired
+    private ExchangeRateUpsertService exchangeRateUpsertService
+
+    @Autowired
+    private ExchangeRateAccessCounter exchangeRateAccessCounter
+
+    @Autowired
+    private ConversionResponseCache conversionResponseCache
+
+    def setup() {
+        exchangeRateAccessCounter.flush()
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01'),\n" +
+                                     "       ('USD', 'JPY', 130, '2023-01-01');")
+        invalidateCaches()
+    }
+
+    def "shouldSendStrongEtagAndLongMaxAgeForPastDate"() {
+        when:
+        final def response = testRestTemplate.getForEntity(
+                GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "PLN", EXCHANGE_DATE), CurrencyExchange.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.headers.getETag() ==~ /"[0-9a-f]{32}"/
+        response.headers.getCacheControl() == "max-age=86400"
+        response.body.from() == "EUR"
+        response.body.to() == "PLN"
+    }
+
+    def "shouldSendShortMaxAgeForToday"() {
+        given:
+        jdbcTemplate.update("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                                    "VALUES ('USD', 'PLN', 3.8, ?), ('USD', 'EUR', 0.9, ?)",
+                            LocalDate.now(), LocalDate.now())
+
+        when:
+        final def response = testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT.formatted("EUR", "PLN"),
+                                                           CurrencyExchange.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.headers.getCacheControl() == "max-age=60"
+    }
+
+    def "shouldAnswerNotModifiedAndCountAccessWhenEtagMatches"() {
+        given:
+        final def endpoint = GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "PLN", EXCHANGE_DATE)
+        final def etag = testRestTemplate.getForEntity(endpoint, String.class).headers.getETag()
+
+        when:
+        final def response = testRestTemplate.exchange(endpoint, HttpMethod.GET, ifNoneMatch(etag), String.class)
+        exchangeRateAccessCounter.flush()
+
+        then:
+        response.statusCode == HttpStatus.NOT_MODIFIED
+        response.body == null
+        response.headers.getETag() == etag
+        currencyExchangeRateRepository.findAll()
+                                      .findAll { it.currencyTo in ["EUR", "PLN"] }
+                                      .every { it.accessCounter == 2 }
+    }
+
+    def "shouldServeCachedResponseUntilRatesChange"() {
+        given:
+        final def endpoint = GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "PLN", EXCHANGE_DATE)
+        final def first = testRestTemplate.getForEntity(endpoint, CurrencyExchange.class)
+        // bypasses the change events, so the cached response is still served
+        jdbcTemplate.update("UPDATE currency_exchange_rate SET rate = 4.0 WHERE currency_to = 'PLN'")
+
+        expect:
+        testRestTemplate.getForObject(endpoint, CurrencyExchange.class) == first.body
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", EXCHANGE_DATE, 4.1G)])
+        final def corrected = testRestTemplate.exchange(endpoint, HttpMethod.GET,
+                                                        ifNoneMatch(first.headers.getETag()), CurrencyExchange.class)
+
+        then:
+        corrected.statusCode == HttpStatus.OK
+        corrected.headers.getETag() != first.headers.getETag()
+        corrected.body.exchange() > first.body.exchange()
+    }
+
+    def "shouldExpireResponsesAndTodaysOnesWithinTheirMaxAge"() {
+        given:
+        jdbcTemplate.update("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                                    "VALUES ('USD', 'PLN', 3.8, ?), ('USD', 'EUR', 0.9, ?)",
+                            LocalDate.now(), LocalDate.now())
+
+        when:
+        testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "PLN", EXCHANGE_DATE),
+                                      String.class)
+        testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT.formatted("EUR", "PLN"), String.class)
+        final def pastDateExpiry = conversionResponseCache.getExpiresAfter("EUR", "PLN", EXCHANGE_DATE).orElseThrow()
+        final def todayExpiry = conversionResponseCache.getExpiresAfter("EUR", "PLN", LocalDate.now()).orElseThrow()
+
+        then:
+        pastDateExpiry > Duration.ofMinutes(9) && pastDateExpiry <= Duration.ofMinutes(10)
+        todayExpiry > Duration.ZERO && todayExpiry <= Duration.ofMinutes(1)
+    }
+
+    def "shouldKeepResponsesOfUnchangedCurrencies"() {
+        given:
+        final def endpoint = GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "JPY", EXCHANGE_DATE)
+        final def first = testRestTemplate.getForEntity(endpoint, String.class)
+        jdbcTemplate.update("UPDATE currency_exchange_rate SET rate = 140 WHERE currency_to = 'JPY'")
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", EXCHANGE_DATE, 4.1G)])
+
+        then:
+        testRestTemplate.getForEntity(endpoint, String.class).body == first.body
+    }
+
+    private static HttpEntity<Void> ifNoneMatch(String etag) {
+        final def headers = new HttpHeaders()
+        headers.setIfNoneMatch(etag)
+        return new HttpEntity<>(headers)
+    }
+}
@@ -0,0 +1,155 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.exception.CurrencyExchangeNotFoundException
+import com.marcura.service.CurrencyExchangeService
+import com.marcura.service.ExchangeRateAccessCounter
+import org.hibernate.SessionFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.test.context.TestPropertySource
+
+import javax.persistence.EntityManagerFactory
+import java.math.RoundingMode
+import java.time.LocalDate
+
+@TestPropertySource(properties = [
+        // five currencies take 265 bytes per date, so two dates stay resident
+        "cache.cross-rate-matrix.memory-budget=600B",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+])
+class CrossRateMatrixIntegrationSpec extends BaseSpec {
+    private static final List<String> CURRENCIES = ["USD", "EUR", "PLN", "JPY", "GBP"]
+    private static final Map<String, Integer> SPREADS = ["USD": 0, "EUR": 275, "PLN": 275, "JPY": 325, "GBP": 275]
+    private static final LocalDate FIRST_DATE = LocalDate.of(2023, 1, 1)
+
+    @Autowired
+    private CurrencyExchangeService currencyExchangeService
+
+    @Autowired
+    private ExchangeRateAccessCounter exchangeRateAccessCounter
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory
+
+    def setup() {
+        exchangeRateAccessCounter.flush()
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        invalidateCaches()
+    }
+
+    def "shouldReturnExactlyTheSameExchangeAsPerRequestCalculation"() {
+        given:
+        final def random = new Random(42)
+        final def rates = [:]
+        for (int day = 0; day < 3; day++) {
+            for (final currency in CURRENCIES.tail()) {
+                final def rate = BigDecimal.valueOf(1 + random.nextInt(200_000_000), 6)
+                rates[[currency, day]] = rate
+                insertRate(currency, rate, FIRST_DATE.plusDays(day))
+            }
+        }
+
+        expect:
+        for (int day = 0; day < 3; day++) {
+            for (final from in CURRENCIES) {
+                for (final to in CURRENCIES) {
+                    final def exchange = currencyExchangeService.getExchangeRate(from, to, FIRST_DATE.plusDays(day))
+                    final def expected = expectedExchange(rateOf(rates, from, day), rateOf(rates, to, day),
+                                                          Math.max(SPREADS[from], SPREADS[to]))
+                    assert exchange.exchange().equals(expected)
+                }
+            }
+        }
+    }
+
+    def "shouldAnswerFromResidentMatrixWithoutStatementsAndKeepCountingAccess"() {
+        given:
+        insertRate("EUR", 0.8, FIRST_DATE)
+        insertRate("PLN", 3.7, FIRST_DATE)
+        currencyExchangeService.getExchangeRate("EUR", "PLN", FIRST_DATE)
+        final def statistics = entityManagerFactory.unwrap(SessionFactory.class).statistics
+        statistics.clear()
+
+        when:
+        final def exchange = currencyExchangeService.getExchangeRate("eur", "pln", FIRST_DATE)
+        exchangeRateAccessCounter.flush()
+
+        then:
+        exchange.exchange() == 4.49781250
+        statistics.prepareStatementCount == 0
+        jdbcTemplate.queryForList("SELECT access_counter FROM currency_exchange_rate", Integer.class) == [2, 2]
+    }
+
+    def "shouldThrowNotFoundForCurrencyWithoutRateOnOrBeforeDate"() {
+        given:
+        insertRate("EUR", 0.8, FIRST_DATE)
+        insertRate("PLN", 3.7, FIRST_DATE.plusDays(1))
+
+        when:
+        currencyExchangeService.getExchangeRate("EUR", currency, FIRST_DATE)
+
+        then:
+        final def ex = thrown(CurrencyExchangeNotFoundException)
+        ex.message == "Currency exchange not found for %s with date %s".formatted(currency, FIRST_DATE)
+
+        where:
+        currency << ["PLN", "ABC"]
+    }
+
+    def "shouldKeepMostRecentDatesWithinMemoryBudget"() {
+        given:
+        for (int day = 0; day < 3; day++) {
+            CURRENCIES.tail().each { insertRate(it, 1.5, FIRST_DATE.plusDays(day)) }
+        }
+
+        when:
+        for (int day = 0; day < 3; day++) {
+            currencyExchangeService.getExchangeRate("EUR", "PLN", FIRST_DATE.plusDays(day))
+        }
+        currencyExchangeService.getExchangeRate("EUR", "PLN", FIRST_DATE)
+
+        then:
+        crossRateMatrixCache.getResidentDates() == [FIRST_DATE.plusDays(1), FIRST_DATE.plusDays(2)]
+        crossRateMatrixCache.getResidentBytes() <= 600
+    }
+
+    def "shouldRebuildMatricesOnOrAfterChangedDateWhenRatesLand"() {
+        given:
+        insertRate("EUR", 0.8, FIRST_DATE)
+        insertRate("PLN", 3.7, FIRST_DATE)
+        currencyExchangeService.getExchangeRate("EUR", "PLN", FIRST_DATE.plusDays(1))
+
+        when:
+        final def headers = new HttpHeaders()
+        headers.setContentType(MediaType.parseMediaType("text/csv"))
+        final def response = testRestTemplate.postForEntity(
+                "/exchange/import", new HttpEntity<>("USD,PLN,4.0,${FIRST_DATE}\n".toString(), headers), String.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        crossRateMatrixCache.getResidentDates() == [FIRST_DATE]
+        currencyExchangeService.getExchangeRate("EUR", "PLN", FIRST_DATE.plusDays(1)).exchange() == 4.86250000
+    }
+
+    private void insertRate(String currency, BigDecimal rate, LocalDate date) {
+        jdbcTemplate.update("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                                    "VALUES ('USD', ?, ?, ?)", currency, rate, date)
+    }
+
+    private static BigDecimal rateOf(Map rates, String currency, int day) {
+        return currency == "USD" ? BigDecimal.ONE : rates[[currency, day]] as BigDecimal
+    }
+
+    private static BigDecimal expectedExchange(BigDecimal rateFrom, BigDecimal rateTo, int maxSpreadBasisPoints) {
+        return rateTo.divide(rateFrom, 4, RoundingMode.HALF_EVEN)
+                     .multiply(BigDecimal.valueOf(10_000 - maxSpreadBasisPoints, 4))
+    }
+}
@@ -3,12 +3,16 @@ package com.marcura.intergration
 import com.marcura.BaseSpec
 import com.marcura.client.FixerClient
 import com.marcura.model.ApiError
+import com.marcura.model.api.request.CurrencyExchangeQuery
 import com.marcura.model.api.request.NewCurrencyExchange
 import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.model.api.response.CurrencyExchangeResult
+import com.marcura.model.api.response.ExchangeRateUpsertResult
 import com.marcura.model.entity.ExchangeRate
 import com.marcura.model.flixer.LatestExchangeRate
 import com.marcura.repository.CurrencyExchangeRateRepository
 import com.marcura.service.CurrencyExchangeService
+import com.marcura.service.ExchangeRateAccessCounter
 import org.spockframework.spring.SpringBean
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
@@ -16,12 +20,18 @@ import org.springframework.boot.test.web.client.TestRestTemplate
 import org.springframework.http.HttpEntity
 import org.springframework.http.HttpMethod
 import org.springframework.http.HttpStatus
+import org.springframework.test.context.TestPropertySource
 
+import java.time.Clock
 import java.time.Instant
 import java.time.LocalDate
+import java.time.ZoneOffset
 
+// every PUT below expects its own Fixer fetch
+@TestPropertySource(properties = "api.fixer.latest-rates-freshness=PT0S")
 class CurrencyExchangeIntegrationSpec extends BaseSpec {
     private static final String EXCHANGE_ENDPOINT = "/exchange"
+    private static final String BATCH_EXCHANGE_ENDPOINT = EXCHANGE_ENDPOINT + "/batch"
     private static final String GET_EXCHANGE_ENDPOINT = EXCHANGE_ENDPOINT + "?from=%s&to=%s"
     private static final String GET_EXCHANGE_ENDPOINT_WITH_DATE = GET_EXCHANGE_ENDPOINT + "&date=%s"
     private static final LocalDate INSERTED_CURRENCY_EXCHANGE_DATE = LocalDate.of(2023, 01, 01)
@@ -38,9 +48,18 @@ class CurrencyExchangeIntegrationSpec extends BaseSpec {
     @Autowired
     private CurrencyExchangeRateRepository currencyExchangeRateRepository
 
+    @Autowired
+    private ExchangeRateAccessCounter exchangeRateAccessCounter
+
     @SpringBean
     private FixerClient fixerClient = Mock()
 
+    // fires the latest exchange rates schedule on time
+    @SpringBean
+    private Clock clock = Stub() {
+        instant() >> LocalDate.now(ZoneOffset.UTC).atTime(12, 5, 1).toInstant(ZoneOffset.UTC)
+    }
+
     @Value('${api.fixer.access-key}')
     private String fixerApiAccessKey
 
@@ -48,10 +67,12 @@ class CurrencyExchangeIntegrationSpec extends BaseSpec {
     private String baseCurrency
 
     def setup() {
-        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        exchangeRateAccessCounter.flush()
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate, ingestion_run")
         jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
                                      "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
                                      "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
     }
 
     def "shouldReturnCurrencyExchangeAndOkResponse"() {
@@ -101,6 +122,7 @@ class CurrencyExchangeIntegrationSpec extends BaseSpec {
         testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT.formatted(currencyFrom, currencyTo), CurrencyExchange.class)
         testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT.formatted(currencyFrom, currencyTo), CurrencyExchange.class)
         testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT.formatted(currencyFrom, currencyTo), CurrencyExchange.class)
+        exchangeRateAccessCounter.flush()
 
         then:
         final def allCurrencies = currencyExchangeRateRepository.findAll()
@@ -110,6 +132,55 @@ class CurrencyExchangeIntegrationSpec extends BaseSpec {
         accessedCurrencyTo.accessCounter == 3
     }
 
+    def "shouldNotWriteAccessCounterUntilPendingAccessCountsAreFlushed"() {
+        given:
+        final def endpoint = GET_EXCHANGE_ENDPOINT.formatted("EUR", "PLN")
+
+        when:
+        testRestTemplate.getForEntity(endpoint, CurrencyExchange.class)
+        testRestTemplate.getForEntity(endpoint, CurrencyExchange.class)
+
+        then:
+        exchangeRateAccessCounter.pendingAccessCount == 4
+        currencyExchangeRateRepository.findAll().every { it.accessCounter == 0 }
+
+        when:
+        exchangeRateAccessCounter.flush()
+
+        then:
+        exchangeRateAccessCounter.pendingAccessCount == 0
+        currencyExchangeRateRepository.findAll().every { it.accessCounter == 2 }
+    }
+
+    def "shouldNotLoseAccessCountsReadWhileFlushesEvictIdleEntries"() {
+        given:
+        final def exchangeRateId = currencyExchangeRateRepository.findAll()
+                                                                 .find { it.currencyTo == "PLN" }
+                                                                 .id
+        final def readers = 4
+        final def readsPerReader = 20_000
+
+        when:
+        final def threads = (1..readers).collect {
+            Thread.start {
+                readsPerReader.times {
+                    exchangeRateAccessCounter.increment(exchangeRateId)
+                    // leaves the entry idle now and then, so flushes evict it
+                    if (it % 1_000 == 0) {
+                        Thread.sleep(1)
+                    }
+                }
+            }
+        }
+        while (threads.any { it.alive }) {
+            exchangeRateAccessCounter.flush()
+        }
+        exchangeRateAccessCounter.flush()
+
+        then:
+        currencyExchangeRateRepository.findById(exchangeRateId).get().accessCounter == readers * readsPerReader
+    }
+
     def "shouldSuccessfullyRunGetLatestExchangeRateScheduledTask"() {
         given:
         final def newCurrencyName = "TEST_CURRENCY"
@@ -165,6 +236,7 @@ class CurrencyExchangeIntegrationSpec extends BaseSpec {
         testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("USD", "EUR", INSERTED_CURRENCY_EXCHANGE_DATE),
                                       CurrencyExchange.class)
         testRestTemplate.put(EXCHANGE_ENDPOINT, List.of(newCurrencyExchange1, newCurrencyExchange2))
+        exchangeRateAccessCounter.flush()
 
         then:
         final def allCurrencies = currencyExchangeRateRepository.findAll()
@@ -182,6 +254,119 @@ class CurrencyExchangeIntegrationSpec extends BaseSpec {
         }
     }
 
+    def "shouldReportInsertedUpdatedAndUnchangedExchangeRatesForPutEndpoint"() {
+        given:
+        final def newCurrencyExchangeList = List.of(
+                new NewCurrencyExchange("USD", "PLN", BigDecimal.valueOf(3.7), INSERTED_CURRENCY_EXCHANGE_DATE),
+                new NewCurrencyExchange("usd", "eur", BigDecimal.valueOf(0.9), INSERTED_CURRENCY_EXCHANGE_DATE),
+                new NewCurrencyExchange("USD", "GBP", BigDecimal.valueOf(0.7), INSERTED_CURRENCY_EXCHANGE_DATE),
+                new NewCurrencyExchange("USD", "GBP", BigDecimal.valueOf(0.75), INSERTED_CURRENCY_EXCHANGE_DATE))
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >>
+                new LatestExchangeRate(baseCurrency, LocalDate.now(), new HashMap<String, BigDecimal>())
+
+        when:
+        final def response = testRestTemplate.exchange(EXCHANGE_ENDPOINT, HttpMethod.PUT,
+                                                       new HttpEntity(newCurrencyExchangeList),
+                                                       ExchangeRateUpsertResult.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == new ExchangeRateUpsertResult(1, 1, 1)
+        final def allCurrencies = currencyExchangeRateRepository.findAll()
+        findExchangeRateWithCurrency(allCurrencies, "EUR").rate == BigDecimal.valueOf(0.9)
+        findExchangeRateWithCurrency(allCurrencies, "GBP").rate == BigDecimal.valueOf(0.75)
+    }
+
+    def "shouldReturnUpdatedCurrencyExchangeWhenCachedExchangeRateIsUpdated"() {
+        given:
+        final def endpoint = GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "PLN", INSERTED_CURRENCY_EXCHANGE_DATE)
+        final def updatedPlnRate = BigDecimal.valueOf(4.0)
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >>
+                new LatestExchangeRate(baseCurrency, LocalDate.now(), new HashMap<String, BigDecimal>())
+
+        when:
+        final def cachedResponse = testRestTemplate.getForEntity(endpoint, CurrencyExchange.class)
+        testRestTemplate.put(EXCHANGE_ENDPOINT, List.of(new NewCurrencyExchange("USD", "PLN", updatedPlnRate,
+                                                                                INSERTED_CURRENCY_EXCHANGE_DATE)))
+        final def updatedResponse = testRestTemplate.getForEntity(endpoint, CurrencyExchange.class)
+
+        then:
+        cachedResponse.body.exchange() == BigDecimal.valueOf(4.4978125)
+        updatedResponse.body.exchange() == BigDecimal.valueOf(4.8625)
+    }
+
+    def "shouldReturnCurrencyExchangesInRequestOrderWithPerItemErrorsForBatchEndpoint"() {
+        given:
+        final def queries = List.of(
+                new CurrencyExchangeQuery("EUR", "PLN", INSERTED_CURRENCY_EXCHANGE_DATE),
+                new CurrencyExchangeQuery("eur", "ABC", INSERTED_CURRENCY_EXCHANGE_DATE),
+                new CurrencyExchangeQuery("EUR", "EUR", INSERTED_CURRENCY_EXCHANGE_DATE),
+                new CurrencyExchangeQuery("PLN", "EUR", null),
+                new CurrencyExchangeQuery("USD", "PLN", LocalDate.now().plusDays(1)),
+                new CurrencyExchangeQuery("EUR", "PLN", LocalDate.of(2022, 12, 31)))
+
+        when:
+        final def response = testRestTemplate.postForEntity(BATCH_EXCHANGE_ENDPOINT, queries,
+                                                            CurrencyExchangeResult[].class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.length == queries.size()
+        verifyAll(response.body[0]) {
+            it.exchange().from() == "EUR"
+            it.exchange().to() == "PLN"
+            it.exchange().exchange() == BigDecimal.valueOf(4.49781250)
+            it.error() == null
+        }
+        verifyAll(response.body[1]) {
+            it.exchange() == null
+            it.error().status() == HttpStatus.NOT_FOUND
+            it.error().message() == "Currency exchange not found for ABC with date 2023-01-01"
+        }
+        verifyAll(response.body[2]) {
+            it.exchange() == null
+            it.error().status() == HttpStatus.BAD_REQUEST
+            it.error().message() == "Cannot exchange the same currencies"
+        }
+        verifyAll(response.body[3]) {
+            it.exchange().exchange() == BigDecimal.valueOf(0.21025450)
+            it.error() == null
+        }
+        verifyAll(response.body[4]) {
+            it.exchange() == null
+            it.error().status() == HttpStatus.BAD_REQUEST
+            it.error().message() == "Currency exchange date cannot be set to future"
+        }
+        verifyAll(response.body[5]) {
+            it.exchange() == null
+            it.error().status() == HttpStatus.NOT_FOUND
+            it.error().message() == "Currency exchange not found for EUR with date 2022-12-31"
+        }
+    }
+
+    def "shouldReturnBadRequestStatusWhenCurrencyIsBlankForBatchEndpoint"() {
+        when:
+        final def response = testRestTemplate.postForEntity(BATCH_EXCHANGE_ENDPOINT,
+                                                            List.of(new CurrencyExchangeQuery(" ", "PLN", null)),
+                                                            ApiError.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+        response.body.status() == HttpStatus.BAD_REQUEST
+    }
+
+    def "shouldReturnBadRequestStatusWhenTooManyQueriesForBatchEndpoint"() {
+        given:
+        final def queries = (0..1000).collect { new CurrencyExchangeQuery("EUR", "PLN", null) }
+
+        when:
+        final def response = testRestTemplate.postForEntity(BATCH_EXCHANGE_ENDPOINT, queries, ApiError.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+        response.body.message() == "No more than 1000 currency exchanges can be queried at once"
+    }
+
     def "shouldReturnBadRequestStatusWhenExchangeCurrenciesAreTheSame"() {
         when:
         final def response = testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT.formatted("EUR", "EUR"), ApiError.class)
@@ -0,0 +1,70 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.api.response.CurrencyExchange
+import org.hibernate.SessionFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+import org.springframework.test.context.TestPropertySource
+
+import javax.persistence.EntityManagerFactory
+
+@TestPropertySource(properties = [
+        "cache.exchange-rate.enabled=false",
+        "cache.cross-rate-matrix.enabled=false",
+        "cache.conversion-response.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+])
+class CurrencyExchangeQueryCountIntegrationSpec extends BaseSpec {
+    private static final String GET_EXCHANGE_ENDPOINT_WITH_DATE = "/exchange?from=%s&to=%s&date=%s"
+    private static final String EXCHANGE_DATE = "2023-01-01"
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01'),\n" +
+                                     "       ('USD', 'JPY', 130, '2023-01-01');")
+    }
+
+    def "shouldExecuteSingleStatementPerGetExchangeRateRequest"() {
+        given:
+        final def statistics = entityManagerFactory.unwrap(SessionFactory.class).statistics
+        statistics.clear()
+
+        when:
+        final def response = testRestTemplate.getForEntity(
+                GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted(currencyFrom, currencyTo, EXCHANGE_DATE), CurrencyExchange.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.exchange() == BigDecimal.valueOf(expectedExchangeRate)
+        statistics.prepareStatementCount == 1
+
+        where:
+        currencyFrom << ["EUR", "PLN", "USD", "EUR"]
+        currencyTo << ["PLN", "EUR", "PLN", "JPY"]
+        expectedExchangeRate << [4.49781250, 0.21025450, 3.598250, 157.21875]
+    }
+
+    def "shouldExecuteSingleStatementWhenCurrencyExchangeRateCannotBeFound"() {
+        given:
+        final def statistics = entityManagerFactory.unwrap(SessionFactory.class).statistics
+        statistics.clear()
+
+        when:
+        final def response = testRestTemplate.getForEntity(
+                GET_EXCHANGE_ENDPOINT_WITH_DATE.formatted("EUR", "ABC", EXCHANGE_DATE), String.class)
+
+        then:
+        response.statusCode == HttpStatus.NOT_FOUND
+        statistics.prepareStatementCount == 1
+    }
+}
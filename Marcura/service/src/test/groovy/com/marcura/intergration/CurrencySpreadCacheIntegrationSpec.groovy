@@ -0,0 +1,83 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.service.CurrencySpreadCache
+import com.marcura.service.CurrencySpreadChangeListener
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+import org.springframework.test.context.TestPropertySource
+import spock.util.concurrent.PollingConditions
+
+@TestPropertySource(properties = [
+        "spread.listener.reconnect-delay=PT0.2S",
+        "spread.listener.fallback-reload-interval=PT1H"
+])
+class CurrencySpreadCacheIntegrationSpec extends BaseSpec {
+    private static final String GET_EXCHANGE_ENDPOINT_WITH_DATE = "/exchange?from=EUR&to=PLN&date=2023-01-01"
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private CurrencySpreadCache currencySpreadCache
+
+    @Autowired
+    private CurrencySpreadChangeListener currencySpreadChangeListener
+
+    private final PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+        conditions.eventually {
+            assert currencySpreadChangeListener.isListening()
+        }
+    }
+
+    def cleanup() {
+        jdbcTemplate.execute("DELETE FROM currency_spread WHERE currency = 'PLN'")
+        conditions.eventually {
+            assert currencySpreadCache.getSpreadBasisPoints("PLN") == 275
+        }
+    }
+
+    def "shouldApplyInsertedSpreadWithoutRestart"() {
+        given:
+        assert getExchange() == 4.49781250
+
+        when:
+        jdbcTemplate.execute("INSERT INTO currency_spread (currency, spread) VALUES ('PLN', 5)")
+
+        then:
+        conditions.eventually {
+            assert currencySpreadCache.getSpreadBasisPoints("PLN") == 500
+        }
+        getExchange() == 4.39375000
+    }
+
+    def "shouldReloadSpreadsChangedWhileListenerConnectionWasDown"() {
+        given:
+        jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity " +
+                                          "WHERE application_name = 'currency-spread-listener'")
+
+        when:
+        jdbcTemplate.execute("INSERT INTO currency_spread (currency, spread) VALUES ('PLN', 5)")
+
+        then:
+        conditions.eventually {
+            assert currencySpreadChangeListener.isListening()
+            assert currencySpreadCache.getSpreadBasisPoints("PLN") == 500
+        }
+    }
+
+    private BigDecimal getExchange() {
+        final def response = testRestTemplate.getForEntity(GET_EXCHANGE_ENDPOINT_WITH_DATE, CurrencyExchange.class)
+        assert response.statusCode == HttpStatus.OK
+        return response.body.exchange()
+    }
+}
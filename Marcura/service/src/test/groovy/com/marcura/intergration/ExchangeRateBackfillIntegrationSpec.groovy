@@ -0,0 +1,203 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.load.FixerStubServer
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.model.api.response.ExchangeRateBackfillStatus
+import com.marcura.service.ExchangeRateBackfillService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.test.context.TestPropertySource
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.time.LocalDate
+
+@TestPropertySource(properties = [
+        "backfill.chunk-days=10",
+        "backfill.rate-limit.permits-per-second=100",
+        "backfill.retry.max-attempts=3",
+        "backfill.retry.initial-backoff=PT0.01S",
+        "backfill.retry.max-backoff=PT0.05S"
+])
+class ExchangeRateBackfillIntegrationSpec extends BaseSpec {
+    private static final FixerStubServer FIXER_STUB_SERVER = new FixerStubServer()
+    private static final String BACKFILL_ENDPOINT = "/exchange/backfill?start=%s&end=%s"
+    private static final LocalDate START = LocalDate.of(2023, 1, 1)
+    private static final LocalDate END = LocalDate.of(2023, 1, 25)
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private ExchangeRateBackfillService exchangeRateBackfillService
+
+    private final PollingConditions conditions = new PollingConditions(timeout: 10)
+
+    @DynamicPropertySource
+    static void fixerProperties(DynamicPropertyRegistry registry) {
+        FIXER_STUB_SERVER.start()
+        FIXER_STUB_SERVER.configure(["EUR": 0.8G, "PLN": 3.7G], Duration.ZERO)
+        registry.add("api.fixer.url", FIXER_STUB_SERVER::getUrl)
+    }
+
+    def cleanupSpec() {
+        FIXER_STUB_SERVER.close()
+    }
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate, ingestion_run, exchange_rate_backfill CASCADE")
+        invalidateCaches()
+        FIXER_STUB_SERVER.reset()
+    }
+
+    def cleanup() {
+        jdbcTemplate.execute("TRUNCATE exchange_rate_backfill CASCADE")
+    }
+
+    def "shouldBackfillRangeInChunksAndServeBackfilledRates"() {
+        when:
+        final def backfill = awaitBackfill(startBackfill(START, END))
+
+        then:
+        backfill.status() == "SUCCEEDED"
+        backfill.chunks() == 3
+        backfill.doneChunks() == 3
+        backfill.inserted() == 50
+        FIXER_STUB_SERVER.historicalRequests.toSorted() ==
+                ["2023-01-01/2023-01-10", "2023-01-11/2023-01-20", "2023-01-21/2023-01-25"]
+        jdbcTemplate.queryForObject("SELECT count(*) FROM currency_exchange_rate", Long.class) == 50
+        jdbcTemplate.queryForObject("SELECT status FROM exchange_rate_backfill", String.class) == "SUCCEEDED"
+        jdbcTemplate.queryForObject("SELECT status FROM ingestion_run WHERE job = 'fixer-backfill'",
+                                    String.class) == "SUCCEEDED"
+        testRestTemplate.getForObject("/exchange?from=EUR&to=PLN&date=2023-01-15", CurrencyExchange.class)
+                        .exchange() == 4.49781250G
+    }
+
+    def "shouldFetchSingleDayChunkFromHistoricalEndpoint"() {
+        when:
+        final def backfill = awaitBackfill(startBackfill(START, START.plusDays(10)))
+
+        then:
+        backfill.chunks() == 2
+        FIXER_STUB_SERVER.historicalRequests.toSorted() == ["2023-01-01/2023-01-10", "2023-01-11"]
+        backfill.inserted() == 22
+    }
+
+    def "shouldRetryThrottledChunk"() {
+        given:
+        FIXER_STUB_SERVER.failRequests(LocalDate.of(2023, 1, 11), 2, HttpStatus.TOO_MANY_REQUESTS.value())
+
+        when:
+        final def backfill = awaitBackfill(startBackfill(START, END))
+
+        then:
+        backfill.status() == "SUCCEEDED"
+        backfill.inserted() == 50
+        // every attempt is one request, taken from the rate limit, none retried by the client on its own
+        FIXER_STUB_SERVER.historicalRequests.count("2023-01-11/2023-01-20") == 3
+        jdbcTemplate.queryForObject("SELECT attempts FROM exchange_rate_backfill_chunk WHERE start_date = ?",
+                                    Integer.class, LocalDate.of(2023, 1, 11)) == 3
+    }
+
+    def "shouldResumeFailedBackfillWithoutFetchingStoredChunksAgain"() {
+        given:
+        FIXER_STUB_SERVER.failRequests(LocalDate.of(2023, 1, 11), 3, HttpStatus.SERVICE_UNAVAILABLE.value())
+
+        when:
+        final def failedBackfill = awaitBackfill(startBackfill(START, END))
+
+        then:
+        failedBackfill.status() == "FAILED"
+        failedBackfill.doneChunks() == 2
+        jdbcTemplate.queryForObject("SELECT count(*) FROM currency_exchange_rate", Long.class) == 30
+        jdbcTemplate.queryForObject("SELECT status FROM exchange_rate_backfill", String.class) == "FAILED"
+
+        when:
+        FIXER_STUB_SERVER.reset()
+        final def resumedBackfill = awaitBackfill(startBackfill(START, END))
+
+        then:
+        resumedBackfill.backfillId() == failedBackfill.backfillId()
+        resumedBackfill.status() == "SUCCEEDED"
+        resumedBackfill.chunks() == 3
+        resumedBackfill.doneChunks() == 3
+        resumedBackfill.inserted() == 50
+        FIXER_STUB_SERVER.historicalRequests == ["2023-01-11/2023-01-20"]
+        jdbcTemplate.queryForObject("SELECT count(*) FROM exchange_rate_backfill", Long.class) == 1
+    }
+
+    def "shouldResumeInterruptedBackfill"() {
+        given:
+        final def backfillId = jdbcTemplate.queryForObject(
+                "INSERT INTO exchange_rate_backfill (base, start_date, end_date, status) " +
+                        "VALUES ('USD', '2023-01-01', '2023-01-20', 'RUNNING') RETURNING id", Long.class)
+        jdbcTemplate.update("INSERT INTO exchange_rate_backfill_chunk (backfill_id, start_date, end_date, status, " +
+                                    "attempts, inserted, updated, unchanged, changed_currencies_to) " +
+                                    "VALUES (?, '2023-01-01', '2023-01-10', 'DONE', 1, 20, 0, 0, '{EUR,PLN}'), " +
+                                    "(?, '2023-01-11', '2023-01-20', 'PENDING', 0, NULL, NULL, NULL, NULL)",
+                            backfillId, backfillId)
+
+        final def latency = Duration.ofSeconds(2)
+        FIXER_STUB_SERVER.configure(["EUR": 0.8G, "PLN": 3.7G], latency)
+
+        when:
+        final def startedAt = System.nanoTime()
+        exchangeRateBackfillService.resumeInterruptedBackfills()
+        final def resumeTook = Duration.ofNanos(System.nanoTime() - startedAt)
+        final def backfill = awaitBackfill(backfillId)
+
+        then:
+        // left to the runner, not fetched on the scheduling thread
+        resumeTook < latency
+        backfill.status() == "SUCCEEDED"
+        FIXER_STUB_SERVER.historicalRequests == ["2023-01-11/2023-01-20"]
+        jdbcTemplate.queryForObject("SELECT count(*) FROM currency_exchange_rate", Long.class) == 20
+        jdbcTemplate.queryForObject("SELECT status FROM exchange_rate_backfill", String.class) == "SUCCEEDED"
+        jdbcTemplate.queryForObject("SELECT inserted FROM ingestion_run WHERE job = 'fixer-backfill'",
+                                    Integer.class) == 40
+
+        cleanup:
+        FIXER_STUB_SERVER.configure(["EUR": 0.8G, "PLN": 3.7G], Duration.ZERO)
+    }
+
+    def "shouldRejectBackfillEndingInFuture"() {
+        when:
+        final def response = testRestTemplate.postForEntity(
+                BACKFILL_ENDPOINT.formatted(START, LocalDate.now().plusDays(1)), null, String.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+        FIXER_STUB_SERVER.historicalRequests.isEmpty()
+    }
+
+    def "shouldReturnNotFoundStatusForUnknownBackfill"() {
+        when:
+        final def response = testRestTemplate.getForEntity("/exchange/backfill/0", String.class)
+
+        then:
+        response.statusCode == HttpStatus.NOT_FOUND
+    }
+
+    private long startBackfill(LocalDate start, LocalDate end) {
+        final def response = testRestTemplate.postForEntity(BACKFILL_ENDPOINT.formatted(start, end), null,
+                                                            ExchangeRateBackfillStatus.class)
+        assert response.statusCode == HttpStatus.ACCEPTED
+        assert response.headers.getLocation().path == "/exchange/backfill/${response.body.backfillId()}"
+        return response.body.backfillId()
+    }
+
+    private ExchangeRateBackfillStatus awaitBackfill(long backfillId) {
+        conditions.eventually {
+            assert getBackfill(backfillId).status() != "RUNNING"
+        }
+        return getBackfill(backfillId)
+    }
+
+    private ExchangeRateBackfillStatus getBackfill(long backfillId) {
+        return testRestTemplate.getForObject("/exchange/backfill/$backfillId", ExchangeRateBackfillStatus.class)
+    }
+}
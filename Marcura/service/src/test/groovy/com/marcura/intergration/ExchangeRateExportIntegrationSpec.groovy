@@ -0,0 +1,119 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.api.response.ExchangeRateImportResult
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPInputStream
+
+class ExchangeRateExportIntegrationSpec extends BaseSpec {
+    private static final String HISTORY_ENDPOINT = "/exchange/history"
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv")
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @LocalServerPort
+    private int port
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'PLN', 3.8, '2023-01-02'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01'),\n" +
+                                     "       ('EUR', 'PLN', 4.6, '2023-01-03');")
+    }
+
+    def "shouldExportFilteredExchangeRateHistoryAsCsv"() {
+        when:
+        final def response = getHistory("?from=usd&start=2023-01-01&end=2023-01-01", TEXT_CSV)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        TEXT_CSV.isCompatibleWith(response.headers.getContentType())
+        response.body == "from,to,exchange,date\n" +
+                "USD,EUR,0.800000,2023-01-01\n" +
+                "USD,PLN,3.700000,2023-01-01\n"
+    }
+
+    def "shouldExportExchangeRateHistoryAsNdjsonByDefault"() {
+        when:
+        final def response = getHistory("?to=PLN", null)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        MediaType.APPLICATION_NDJSON.isCompatibleWith(response.headers.getContentType())
+        response.body == '{"from":"EUR","to":"PLN","exchange":4.600000,"date":"2023-01-03"}\n' +
+                '{"from":"USD","to":"PLN","exchange":3.700000,"date":"2023-01-01"}\n' +
+                '{"from":"USD","to":"PLN","exchange":3.800000,"date":"2023-01-02"}\n'
+    }
+
+    def "shouldReturnBadRequestStatusWhenStartDateIsAfterEndDate"() {
+        when:
+        final def response = getHistory("?start=2023-01-02&end=2023-01-01", TEXT_CSV)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+    }
+
+    def "shouldImportExportedExchangeRatesWithoutChanges"() {
+        given:
+        final def exported = getHistory("", TEXT_CSV).body
+        final def headers = new HttpHeaders()
+        headers.setContentType(TEXT_CSV)
+
+        when:
+        final def response = testRestTemplate.postForEntity("/exchange/import", new HttpEntity<>(exported, headers),
+                                                            ExchangeRateImportResult.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == new ExchangeRateImportResult(4, 0, 0, 0, 4, [])
+    }
+
+    def "shouldStreamLargeGzippedExportAtSustainedThroughput"() {
+        given:
+        final def rows = 500_000
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                                     "SELECT 'USD', 'C' || (n % 100), 1 + (n % 7) * 0.25, " +
+                                     "DATE '2000-01-01' + n / 100 FROM generate_series(0, ${rows - 1}) AS n")
+        final def connection = (HttpURLConnection) new URL("http://localhost:${port}${HISTORY_ENDPOINT}").openConnection()
+        connection.setRequestProperty(HttpHeaders.ACCEPT, TEXT_CSV.toString())
+        connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip")
+
+        when:
+        final def startedAt = System.nanoTime()
+        def lines = 0L
+        new GZIPInputStream(connection.inputStream).withReader(StandardCharsets.UTF_8.name()) { reader ->
+            while (reader.readLine() != null) {
+                lines++
+            }
+        }
+        final def rowsPerSecond = rows / ((System.nanoTime() - startedAt) / 1_000_000_000)
+
+        then:
+        connection.responseCode == HttpStatus.OK.value()
+        connection.getHeaderField(HttpHeaders.CONTENT_ENCODING) == "gzip"
+        lines == rows + 1
+        rowsPerSecond > 20_000
+    }
+
+    private def getHistory(String query, MediaType accept) {
+        final def headers = new HttpHeaders()
+        if (accept != null) {
+            headers.setAccept([accept])
+        }
+        return testRestTemplate.exchange(HISTORY_ENDPOINT + query, HttpMethod.GET, new HttpEntity<>(headers),
+                                         String.class)
+    }
+}
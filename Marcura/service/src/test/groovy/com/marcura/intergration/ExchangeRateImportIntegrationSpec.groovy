@@ -0,0 +1,153 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.api.response.ExchangeRateImportResult
+import com.marcura.model.api.response.RejectedExchangeRate
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+
+import java.nio.charset.StandardCharsets
+import java.time.LocalDate
+
+class ExchangeRateImportIntegrationSpec extends BaseSpec {
+    private static final String IMPORT_ENDPOINT = "/exchange/import"
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv")
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @LocalServerPort
+    private int port
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+    }
+
+    def "shouldImportValidCsvRowsAndReportRejectedRowsWithLineNumbers"() {
+        given:
+        final def body = "from,to,exchange,date\n" +
+                "usd,PLN,3.9,2023-01-01\n" +
+                "USD,EUR,0.8,2023-01-01\n" +
+                "\n" +
+                "USD,JPY,130,2023-01-01\n" +
+                "USD,USD,1,2023-01-01\n" +
+                "USD,GBP,-1,2023-01-01\n" +
+                "USD,GBP,abc,2023-01-01\n" +
+                "USD,GBP,1.2\n" +
+                "USD,GBP,1.0000001,2023-01-01\n" +
+                " ,GBP,1.2,2023-01-01\n"
+
+        when:
+        final def response = postImport(body, TEXT_CSV)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == new ExchangeRateImportResult(3, 6, 1, 1, 1, [
+                new RejectedExchangeRate(6, "Cannot exchange the same currencies"),
+                new RejectedExchangeRate(7, "Currency exchange rate cannot be negative or zero"),
+                new RejectedExchangeRate(8, "Cannot convert field exchange"),
+                new RejectedExchangeRate(9, "Expected 4 columns but got 3"),
+                new RejectedExchangeRate(10, "Currency exchange rate scale overflow. Max accepted length is 6"),
+                new RejectedExchangeRate(11, "from must not be blank")
+        ])
+        rateOf("USD", "PLN") == 3.9
+        rateOf("USD", "EUR") == 0.8
+        rateOf("USD", "JPY") == 130
+    }
+
+    def "shouldKeepLastOccurrenceOfDuplicatedExchangeRate"() {
+        given:
+        final def body = "USD,PLN,3.8,2023-01-01\n" +
+                "USD,PLN,3.9,2023-01-01\n" +
+                "USD,GBP,1.1,2023-01-01\n" +
+                "usd,gbp,1.2,2023-01-01\n"
+
+        when:
+        final def response = postImport(body, TEXT_CSV)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == new ExchangeRateImportResult(4, 0, 1, 1, 0, [])
+        rateOf("USD", "PLN") == 3.9
+        rateOf("USD", "GBP") == 1.2
+    }
+
+    def "shouldImportNdjsonRows"() {
+        given:
+        final def body = '{"from":"USD","to":"PLN","exchange":3.9,"date":"2023-01-01"}\n' +
+                '{"from":"USD","to":"GBP","exchange":"abc","date":"2023-01-01"}\n' +
+                '{"from":"USD","to":"GBP"\n' +
+                '{"from":"USD","to":"GBP","exchange":1.2,"date":"2023-01-01"}\n'
+
+        when:
+        final def response = postImport(body, MediaType.APPLICATION_NDJSON)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == new ExchangeRateImportResult(2, 2, 1, 1, 0, [
+                new RejectedExchangeRate(2, "Cannot convert field exchange"),
+                new RejectedExchangeRate(3, "Malformed row")
+        ])
+        rateOf("USD", "PLN") == 3.9
+        rateOf("USD", "GBP") == 1.2
+    }
+
+    def "shouldReturnCurrencyExchangeForImportedExchangeRate"() {
+        given:
+        testRestTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=2023-01-01", String.class)
+
+        when:
+        postImport("USD,PLN,4.0,2023-01-01\n", TEXT_CSV)
+        final def response = testRestTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=2023-01-01", Map.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.exchange == 4.8625
+    }
+
+    def "shouldStreamLargeImportWithoutBufferingRequestBody"() {
+        given:
+        final def rows = 100_000
+        final def connection = (HttpURLConnection) new URL("http://localhost:${port}${IMPORT_ENDPOINT}").openConnection()
+        connection.requestMethod = "POST"
+        connection.doOutput = true
+        connection.setChunkedStreamingMode(64 * 1024)
+        connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, TEXT_CSV.toString())
+
+        when:
+        connection.outputStream.withWriter(StandardCharsets.UTF_8.name()) { writer ->
+            final def startDate = LocalDate.of(2000, 1, 1)
+            for (int i = 0; i < rows; i++) {
+                writer.write("USD,C${i % 100},${1 + i % 7}.25,${startDate.plusDays(i.intdiv(100))}\n")
+            }
+        }
+
+        then:
+        connection.responseCode == HttpStatus.OK.value()
+        connection.inputStream.text.contains('"accepted":100000')
+        jdbcTemplate.queryForObject("SELECT count(*) FROM currency_exchange_rate WHERE currency_to LIKE 'C%'",
+                                    Long.class) == rows
+    }
+
+    private def postImport(String body, MediaType mediaType) {
+        final def headers = new HttpHeaders()
+        headers.setContentType(mediaType)
+        return testRestTemplate.postForEntity(IMPORT_ENDPOINT, new HttpEntity<>(body, headers),
+                                              ExchangeRateImportResult.class)
+    }
+
+    private BigDecimal rateOf(String currencyFrom, String currencyTo) {
+        return jdbcTemplate.queryForObject("SELECT rate FROM currency_exchange_rate " +
+                                                   "WHERE currency_from = ? AND currency_to = ?",
+                                           BigDecimal.class, currencyFrom, currencyTo)
+    }
+}
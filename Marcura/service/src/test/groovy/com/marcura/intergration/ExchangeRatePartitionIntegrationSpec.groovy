@@ -0,0 +1,98 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.model.CurrencyDate
+import com.marcura.repository.CurrencyExchangeRateRepository
+import com.marcura.repository.ExchangeRateJdbcRepository
+import com.marcura.repository.ExchangeRatePartitionRepository
+import com.marcura.service.ExchangeRatePartitionService
+import org.springframework.beans.factory.annotation.Autowired
+
+import java.time.LocalDate
+
+class ExchangeRatePartitionIntegrationSpec extends BaseSpec {
+    private static final String PARTITION_OF_RATE_SQL =
+            "SELECT tableoid::regclass::text FROM currency_exchange_rate WHERE currency_to = ? AND exchange_date = ?"
+
+    @Autowired
+    private ExchangeRatePartitionService exchangeRatePartitionService
+
+    @Autowired
+    private ExchangeRatePartitionRepository exchangeRatePartitionRepository
+
+    @Autowired
+    private CurrencyExchangeRateRepository currencyExchangeRateRepository
+
+    @Autowired
+    private ExchangeRateJdbcRepository exchangeRateJdbcRepository
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2020-06-01');")
+        exchangeRatePartitionService.maintainPartitions()
+    }
+
+    def cleanup() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS currency_exchange_rate_archive_y1990")
+    }
+
+    def "shouldStoreRatesInPartitionOfTheirYear"() {
+        expect:
+        jdbcTemplate.queryForObject(PARTITION_OF_RATE_SQL, String.class, "PLN", LocalDate.of(2023, 1, 1)) ==
+                "currency_exchange_rate_y2023"
+        jdbcTemplate.queryForObject(PARTITION_OF_RATE_SQL, String.class, "EUR", LocalDate.of(2020, 6, 1)) ==
+                "currency_exchange_rate_y2020"
+    }
+
+    def "shouldCreatePartitionsAheadOfToday"() {
+        expect:
+        final def nextYear = LocalDate.now().plusYears(1).year
+        jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class,
+                                    "currency_exchange_rate_y" + nextYear) == "currency_exchange_rate_y" + nextYear
+    }
+
+    def "shouldFallBackToOlderPartitionsWhenCurrencyWasNotQuotedInLastTwoYears"() {
+        given:
+        final def date = LocalDate.of(2023, 3, 1)
+
+        when:
+        final def quote = currencyExchangeRateRepository.findConversionQuote("USD", "EUR", "PLN", date)
+        final def asOfExchangeRates = exchangeRateJdbcRepository.findAsOfExchangeRates(
+                "USD", [new CurrencyDate("EUR", date), new CurrencyDate("PLN", date)])
+        final def allAsOfExchangeRates = exchangeRateJdbcRepository.findAsOfExchangeRatesForAllCurrencies("USD", date)
+
+        then:
+        quote.fromRate == 0.8G
+        quote.toRate == 3.7G
+        asOfExchangeRates*.rate() as Set == [0.8G, 3.7G] as Set
+        allAsOfExchangeRates.collectEntries { [it.currency(), it.rate()] } == ["EUR": 0.8G, "PLN": 3.7G]
+    }
+
+    def "shouldMoveRatesOfYearsWithoutPartitionOutOfDefaultPartition"() {
+        given:
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                                     "VALUES ('USD', 'JPY', 145, '1990-05-01')")
+        final def partitionBefore = jdbcTemplate.queryForObject(PARTITION_OF_RATE_SQL, String.class, "JPY",
+                                                                LocalDate.of(1990, 5, 1))
+
+        when:
+        exchangeRatePartitionService.maintainPartitions()
+
+        then:
+        partitionBefore == "currency_exchange_rate_default"
+        jdbcTemplate.queryForObject(PARTITION_OF_RATE_SQL, String.class, "JPY", LocalDate.of(1990, 5, 1)) ==
+                "currency_exchange_rate_y1990"
+        exchangeRatePartitionRepository.findEarliestUnpartitionedExchangeDate().isEmpty()
+
+        when:
+        final def detachedYears = exchangeRatePartitionRepository.detachPartitions(LocalDate.of(1991, 1, 1), false)
+
+        then:
+        detachedYears == [1990]
+        jdbcTemplate.queryForObject("SELECT count(*) FROM currency_exchange_rate WHERE currency_to = 'JPY'",
+                                    Long.class) == 0
+        jdbcTemplate.queryForObject("SELECT rate FROM currency_exchange_rate_archive_y1990", BigDecimal.class) == 145G
+    }
+}
@@ -0,0 +1,197 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.exception.CurrencyExchangeNotFoundException
+import com.marcura.model.api.request.ExchangeRateStatsInterval
+import com.marcura.model.api.response.ExchangeRatePeriodStats
+import com.marcura.model.api.response.ExchangeRateStats
+import com.marcura.service.CurrencyExchangeService
+import com.marcura.service.ExchangeRateHistoryStore
+import com.marcura.service.ExchangeRateUpsertService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+
+import java.math.RoundingMode
+import java.time.LocalDate
+
+import static com.marcura.service.ExchangeRateUpsertService.newExchangeRate
+
+class ExchangeRateStatsIntegrationSpec extends BaseSpec {
+    private static final String STATS_ENDPOINT = "/exchange/stats?from=%s&to=%s&start=%s&end=%s&interval=%s"
+    private static final LocalDate FIRST_DATE = LocalDate.of(2022, 11, 15)
+    private static final LocalDate LAST_DATE = LocalDate.of(2023, 4, 20)
+
+    @Autowired
+    private CurrencyExchangeService currencyExchangeService
+
+    @Autowired
+    private ExchangeRateHistoryStore exchangeRateHistoryStore
+
+    @Autowired
+    private ExchangeRateUpsertService exchangeRateUpsertService
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        invalidateCaches()
+        exchangeRateHistoryStore.invalidateAll()
+    }
+
+    def "shouldAggregateTheExchangeOfEveryDayAsConvertedOneByOne"() {
+        given:
+        final def random = new Random(42)
+        // EUR has no rate for the first days, both skip some days and PLN has more rates than fit between checkpoints
+        for (def date = FIRST_DATE; !date.isAfter(LAST_DATE); date = date.plusDays(1)) {
+            if (date.isAfter(FIRST_DATE.plusDays(3)) && random.nextInt(4) > 0) {
+                insertRate("EUR", BigDecimal.valueOf(800_000 + random.nextInt(100_000), 6), date)
+            }
+            if (random.nextInt(5) > 0) {
+                insertRate("PLN", BigDecimal.valueOf(3_500_000 + random.nextInt(1_000_000), 6), date)
+            }
+        }
+        final def start = FIRST_DATE.plusDays(1)
+        final def end = LAST_DATE.plusDays(3)
+
+        when:
+        final def stats = getStats(from, to, start, end, interval)
+
+        then:
+        stats.from() == from
+        stats.to() == to
+        stats.interval() == ExchangeRateStatsInterval.valueOf(interval.toUpperCase())
+        stats.periods() == expectedPeriods(from, to, start, end, stats.interval())
+
+        where:
+        from  | to    | interval
+        "EUR" | "PLN" | "day"
+        "EUR" | "PLN" | "week"
+        "EUR" | "PLN" | "month"
+        "PLN" | "EUR" | "quarter"
+        "USD" | "EUR" | "year"
+        "PLN" | "USD" | "month"
+    }
+
+    def "shouldCarryLastRateForwardOverDaysWithoutOne"() {
+        given:
+        insertRate("EUR", 0.8, LocalDate.of(2023, 1, 1))
+        insertRate("PLN", 3.7, LocalDate.of(2023, 1, 1))
+        insertRate("PLN", 4.0, LocalDate.of(2023, 1, 3))
+
+        when:
+        final def stats = getStats("EUR", "PLN", LocalDate.of(2022, 12, 30), LocalDate.of(2023, 1, 4), "month")
+
+        then:
+        stats.periods() == [new ExchangeRatePeriodStats(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 4), 4,
+                                                        4.49781250, 4.86250000, 4.49781250, 4.86250000, 4.68015625)]
+    }
+
+    def "shouldKeepHistoryCurrentWhenRatesAreIngested"() {
+        given:
+        insertRate("EUR", 0.8, LocalDate.of(2023, 1, 1))
+        insertRate("PLN", 3.7, LocalDate.of(2023, 1, 1))
+        getStats("EUR", "PLN", LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2), "day")
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", LocalDate.of(2023, 1, 2), 4.0G),
+                                                       newExchangeRate("USD", "GBP", LocalDate.of(2023, 1, 2), 0.9G)])
+
+        then:
+        getStats("EUR", "PLN", LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2), "day").periods()*.close() ==
+                [4.49781250, 4.86250000]
+        getStats("GBP", "PLN", LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2), "day").periods()*.close() ==
+                [4.32217900]
+    }
+
+    def "shouldAggregateExchangeOfRatesManyOrdersOfMagnitudeApartAsConvertedOneByOne"() {
+        given:
+        insertRate("AAA", 0.000001, LocalDate.of(2023, 1, 1))
+        insertRate("ZZZ", 1000000000000G, LocalDate.of(2023, 1, 1))
+        insertRate("ZZZ", 2000000000000G, LocalDate.of(2023, 1, 2))
+
+        when:
+        final def stats = getStats("AAA", "ZZZ", LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2), "month")
+
+        then:
+        stats.periods() == expectedPeriods("AAA", "ZZZ", LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2),
+                                           ExchangeRateStatsInterval.MONTH)
+    }
+
+    def "shouldReportMemoryFootprintOfHistoryStore"() {
+        given:
+        for (int day = 0; day < 65; day++) {
+            insertRate("EUR", 0.8, FIRST_DATE.plusDays(day))
+        }
+        insertRate("PLN", 3.7, FIRST_DATE)
+
+        when:
+        final def stats = getStats("EUR", "PLN", FIRST_DATE, FIRST_DATE, "day")
+
+        then:
+        // two bytes per date, eight per rate and four per checkpoint of every 64 dates
+        stats.historyStoreSizeInBytes() == 65 * 10 + 2 * 4 + 10 + 4
+        exchangeRateHistoryStore.getSizeInBytes() == stats.historyStoreSizeInBytes()
+    }
+
+    def "shouldReturnBadRequestStatusForInvalidQuery"() {
+        when:
+        final def response = testRestTemplate.getForEntity(query, String.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+
+        where:
+        query << ["/exchange/stats?from=EUR&to=PLN&start=2023-01-02&end=2023-01-01",
+                  "/exchange/stats?from=EUR&to=eur&start=2023-01-01&end=2023-01-02",
+                  "/exchange/stats?from=EUR&to=PLN&start=2023-01-01&end=2023-01-02&interval=hour",
+                  "/exchange/stats?from=EUR&to=PLN&start=2023-01-01&end=${LocalDate.now().plusDays(1)}",
+                  "/exchange/stats?from=EUR&to=PLN&start=2023-01-01",
+                  "/exchange/stats?from=EUR&to=PLN&start=0001-01-01&end=2023-01-01"]
+    }
+
+    def "shouldReturnNotFoundStatusForCurrencyWithoutHistory"() {
+        given:
+        insertRate("EUR", 0.8, FIRST_DATE)
+
+        when:
+        final def response = testRestTemplate.getForEntity(
+                STATS_ENDPOINT.formatted("EUR", "ABC", FIRST_DATE, FIRST_DATE, "day"), String.class)
+
+        then:
+        response.statusCode == HttpStatus.NOT_FOUND
+    }
+
+    private ExchangeRateStats getStats(String from, String to, LocalDate start, LocalDate end, String interval) {
+        final def response = testRestTemplate.getForEntity(STATS_ENDPOINT.formatted(from, to, start, end, interval),
+                                                           ExchangeRateStats.class)
+        assert response.statusCode == HttpStatus.OK
+        return response.body
+    }
+
+    private List<ExchangeRatePeriodStats> expectedPeriods(String from, String to, LocalDate start, LocalDate end,
+                                                          ExchangeRateStatsInterval interval) {
+        final def exchangesByPeriod = new LinkedHashMap<LocalDate, Map<LocalDate, BigDecimal>>()
+        for (def date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            try {
+                final def exchange = currencyExchangeService.getExchangeRate(from, to, date).exchange()
+                exchangesByPeriod.computeIfAbsent(interval.getPeriodStart(date)) { [:] }[date] = exchange
+            } catch (CurrencyExchangeNotFoundException ignored) {
+                // no rate yet for one of the currencies
+            }
+        }
+        return exchangesByPeriod.values().collect { exchanges ->
+            final def values = exchanges.values()
+            new ExchangeRatePeriodStats(exchanges.keySet().first(), exchanges.keySet().last(), exchanges.size(),
+                                        values.first(), values.max(), values.min(), values.last(),
+                                        values.sum().divide(BigDecimal.valueOf(exchanges.size()), 8,
+                                                          RoundingMode.HALF_EVEN))
+        }
+    }
+
+    private void insertRate(String currency, BigDecimal rate, LocalDate date) {
+        jdbcTemplate.update("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date) " +
+                                    "VALUES ('USD', ?, ?, ?)", currency, rate, date)
+    }
+}
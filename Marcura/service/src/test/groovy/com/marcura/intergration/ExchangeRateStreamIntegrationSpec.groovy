@@ -0,0 +1,236 @@
+package com.marcura.intergration
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.marcura.BaseSpec
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.service.CurrencySpreadCache
+import com.marcura.service.CurrencySpreadChangeListener
+import com.marcura.service.ExchangeRateAccessCounter
+import com.marcura.service.ExchangeRateStreamService
+import com.marcura.service.ExchangeRateUpsertService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+import spock.util.concurrent.PollingConditions
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.time.LocalDate
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+import static com.marcura.service.ExchangeRateUpsertService.newExchangeRate
+
+class ExchangeRateStreamIntegrationSpec extends BaseSpec {
+    private static final long EVENT_TIMEOUT_SECONDS = 5
+    // the client closes its connections once it is garbage collected, even while a stream is being read
+    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient()
+
+    @Autowired
+    private ExchangeRateStreamService exchangeRateStreamService
+
+    @Autowired
+    private ExchangeRateUpsertService exchangeRateUpsertService
+
+    @Autowired
+    private CurrencySpreadCache currencySpreadCache
+
+    @Autowired
+    private CurrencySpreadChangeListener currencySpreadChangeListener
+
+    @Autowired
+    private ExchangeRateAccessCounter exchangeRateAccessCounter
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private ObjectMapper objectMapper
+
+    private final List<InputStream> openStreams = []
+    private final PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+    }
+
+    def cleanup() {
+        openStreams.each { it.close() }
+        conditions.eventually {
+            exchangeRateStreamService.sendHeartbeats()
+            assert exchangeRateStreamService.getSubscribers() == 0
+        }
+    }
+
+    def "shouldPushCurrentExchangeOnSubscribeAndRecomputedOneWhenRateChanges"() {
+        given:
+        final def events = subscribe("EUR:PLN,usd:pln")
+
+        expect:
+        [nextEvent(events), nextEvent(events)].toSet() == [new CurrencyExchange("EUR", "PLN", 4.49781250),
+                                                           new CurrencyExchange("USD", "PLN", 3.59825000)].toSet()
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", LocalDate.now(), 4.0G)])
+
+        then:
+        [nextEvent(events), nextEvent(events)].toSet() == [new CurrencyExchange("EUR", "PLN", 4.86250000),
+                                                           new CurrencyExchange("USD", "PLN", 3.89000000)].toSet()
+    }
+
+    def "shouldOnlyPushWhenConversionOfTodayChanges"() {
+        given:
+        final def events = subscribe("EUR:PLN")
+        nextEvent(events)
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "GBP", LocalDate.now(), 0.9G)])
+        // an older rate than the one in force today
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", LocalDate.of(2022, 12, 1),
+                                                                       5.0G)])
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "EUR", LocalDate.now(), 1.0G)])
+
+        then:
+        nextEvent(events) == new CurrencyExchange("EUR", "PLN", 3.59825000)
+        events.isEmpty()
+    }
+
+    def "shouldNotCountRecomputedExchangesAsAccesses"() {
+        given:
+        exchangeRateAccessCounter.flush()
+        final def events = subscribe("EUR:PLN")
+        nextEvent(events)
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", LocalDate.now(), 4.0G)])
+        nextEvent(events)
+
+        then:
+        exchangeRateAccessCounter.getPendingAccessCount() == 0
+    }
+
+    def "shouldPushRecomputedExchangeWhenSpreadChanges"() {
+        given:
+        conditions.eventually {
+            assert currencySpreadChangeListener.isListening()
+        }
+        final def events = subscribe("EUR:PLN")
+        nextEvent(events)
+
+        when:
+        jdbcTemplate.execute("INSERT INTO currency_spread (currency, spread) VALUES ('PLN', 5)")
+
+        then:
+        nextEvent(events) == new CurrencyExchange("EUR", "PLN", 4.39375000)
+
+        cleanup:
+        jdbcTemplate.execute("DELETE FROM currency_spread WHERE currency = 'PLN'")
+        conditions.eventually {
+            assert currencySpreadCache.getSpreadBasisPoints("PLN") == 275
+        }
+    }
+
+    def "shouldDropSubscriberOnceClientWentAway"() {
+        given:
+        final def events = subscribe("EUR:PLN")
+        nextEvent(events)
+        assert exchangeRateStreamService.getSubscribers() == 1
+
+        when:
+        openStreams.each { it.close() }
+
+        then:
+        conditions.eventually {
+            exchangeRateStreamService.sendHeartbeats()
+            assert exchangeRateStreamService.getSubscribers() == 0
+        }
+    }
+
+    def "shouldEvictSubscriberThatStoppedReadingAndKeepDeliveringToOthers"() {
+        given:
+        subscribeWithoutReading("EUR:PLN")
+        final def events = subscribe("EUR:PLN")
+        nextEvent(events)
+        conditions.eventually {
+            assert exchangeRateStreamService.getSubscribers() == 2
+        }
+
+        when: "heartbeats are sent until the buffers of the client that stopped reading are full"
+        final def deadline = System.nanoTime() + Duration.ofMinutes(1).toNanos()
+        while (exchangeRateStreamService.getSubscribers() == 2 && System.nanoTime() < deadline) {
+            exchangeRateStreamService.sendHeartbeats()
+        }
+
+        then:
+        exchangeRateStreamService.getSubscribers() == 1
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", LocalDate.now(), 4.0G)])
+
+        then:
+        nextEvent(events) == new CurrencyExchange("EUR", "PLN", 4.86250000)
+    }
+
+    def "shouldReturnBadRequestStatusForInvalidCurrencyPairs"() {
+        when:
+        final def response = testRestTemplate.getForEntity("/exchange/stream?pairs=$pairs", String.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+
+        where:
+        pairs << ["EUR", "EUR:", "EUR:PLN:GBP", "EUR:eur", (1..101).collect { "EUR:P${it}" }.join(",")]
+    }
+
+    private BlockingQueue<CurrencyExchange> subscribe(String pairs) {
+        final def uri = URI.create("${testRestTemplate.rootUri}/exchange/stream?pairs=$pairs")
+        final def request = HttpRequest.newBuilder(uri)
+                                       .header("Accept", "text/event-stream")
+                                       .build()
+        final def response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream())
+        assert response.statusCode() == 200
+        openStreams << response.body()
+        final def events = new LinkedBlockingQueue<CurrencyExchange>()
+        Thread.start {
+            try {
+                response.body().newReader().eachLine { line ->
+                    if (line.startsWith("data:")) {
+                        events.add(objectMapper.readValue(line.substring("data:".length()), CurrencyExchange.class))
+                    }
+                }
+            } catch (IOException ignored) {
+                // the stream was closed by the feature
+            }
+        }
+        return events
+    }
+
+    /**
+     * Subscribes through a socket with a small receive buffer that is never read from.
+     */
+    private void subscribeWithoutReading(String pairs) {
+        final def uri = URI.create(testRestTemplate.rootUri)
+        final def socket = new Socket()
+        socket.receiveBufferSize = 1024
+        socket.connect(new InetSocketAddress(uri.host, uri.port))
+        openStreams << socket.inputStream
+        socket.outputStream.write(("GET /exchange/stream?pairs=$pairs HTTP/1.1\r\n" +
+                "Host: ${uri.host}\r\n" +
+                "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII))
+        socket.outputStream.flush()
+    }
+
+    private static CurrencyExchange nextEvent(BlockingQueue<CurrencyExchange> events) {
+        final def event = events.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        assert event != null: "no event within $EVENT_TIMEOUT_SECONDS seconds"
+        return event
+    }
+}
@@ -0,0 +1,167 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.client.FixerCircuitBreaker
+import com.marcura.client.FixerClient
+import com.marcura.exception.FixerUnavailableException
+import com.marcura.model.api.request.NewCurrencyExchange
+import com.marcura.model.api.response.ExchangeRateUpsertResult
+import feign.FeignException
+import feign.RetryableException
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.test.context.TestPropertySource
+
+import java.nio.file.Files
+import java.time.LocalDate
+import java.util.concurrent.TimeUnit
+
+@TestPropertySource(properties = [
+        "api.fixer.latest-rates-freshness=PT0S",
+        "api.fixer.http.read-timeout=PT0.5S",
+        "api.fixer.http.retry.max-attempts=1",
+        "api.fixer.circuit-breaker.failure-threshold=2",
+        "api.fixer.circuit-breaker.open-duration=PT3S"
+])
+class FixerClientIntegrationSpec extends BaseSpec {
+    private static final MockWebServer FIXER_SERVER = new MockWebServer()
+    private static final String LATEST_RATES_BODY = '{"success": true, "base": "USD", "date": "2023-01-01", ' +
+            '"rates": {"EUR": 0.8, "PLN": 3.7}}'
+
+    @Autowired
+    private FixerClient fixerClient
+
+    @Autowired
+    private FixerCircuitBreaker fixerCircuitBreaker
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @DynamicPropertySource
+    static void fixerProperties(DynamicPropertyRegistry registry) {
+        FIXER_SERVER.start()
+        registry.add("api.fixer.url", () -> FIXER_SERVER.url("/").toString())
+        registry.add("api.fixer.http.cache.directory",
+                     () -> Files.createTempDirectory("fixer-http-cache").toString())
+    }
+
+    def cleanupSpec() {
+        FIXER_SERVER.shutdown()
+    }
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+        fixerCircuitBreaker.reset()
+        // requests recorded by earlier features
+        while (FIXER_SERVER.takeRequest(10, TimeUnit.MILLISECONDS) != null) {
+        }
+    }
+
+    def "shouldTimeOutSlowFixerResponse"() {
+        given:
+        FIXER_SERVER.enqueue(latestRatesResponse().setHeadersDelay(2, TimeUnit.SECONDS))
+        final def start = System.nanoTime()
+
+        when:
+        fixerClient.getLatestExchangeRate("key", "USD")
+
+        then:
+        thrown(RetryableException)
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500
+    }
+
+    def "shouldOpenCircuitAfterConsecutiveFailuresAndFailFast"() {
+        given:
+        2.times { FIXER_SERVER.enqueue(new MockResponse().setResponseCode(500)) }
+        2.times {
+            try {
+                fixerClient.getLatestExchangeRate("key", "USD")
+            } catch (FeignException ignored) {
+            }
+        }
+        final def requestCount = FIXER_SERVER.requestCount
+
+        when:
+        fixerClient.getLatestExchangeRate("key", "USD")
+
+        then:
+        thrown(FixerUnavailableException)
+        fixerCircuitBreaker.state == FixerCircuitBreaker.State.OPEN
+        FIXER_SERVER.requestCount == requestCount
+    }
+
+    def "shouldCloseCircuitAfterSuccessfulTrialCall"() {
+        given:
+        2.times { FIXER_SERVER.enqueue(new MockResponse().setResponseCode(503)) }
+        2.times {
+            try {
+                fixerClient.getLatestExchangeRate("key", "USD")
+            } catch (FeignException ignored) {
+            }
+        }
+        FIXER_SERVER.enqueue(latestRatesResponse())
+
+        when:
+        Thread.sleep(3100)
+        final def latestExchangeRate = fixerClient.getLatestExchangeRate("key", "USD")
+
+        then:
+        latestExchangeRate.rates()["PLN"] == 3.7G
+        fixerCircuitBreaker.state == FixerCircuitBreaker.State.CLOSED
+    }
+
+    def "shouldServeLastIngestedRatesWhileFixerIsUnavailable"() {
+        given:
+        2.times { FIXER_SERVER.enqueue(new MockResponse().setResponseCode(502)) }
+        2.times {
+            try {
+                fixerClient.getLatestExchangeRate("key", "USD")
+            } catch (FeignException ignored) {
+            }
+        }
+        final def requestCount = FIXER_SERVER.requestCount
+        final def body = [new NewCurrencyExchange("USD", "JPY", 130G, LocalDate.of(2023, 1, 1))]
+
+        when:
+        final def response = testRestTemplate.exchange("/exchange", HttpMethod.PUT, new HttpEntity<>(body),
+                                                       ExchangeRateUpsertResult.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == new ExchangeRateUpsertResult(1, 0, 0)
+        FIXER_SERVER.requestCount == requestCount
+        testRestTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=2023-01-01", String.class).statusCode ==
+                HttpStatus.OK
+    }
+
+    def "shouldRevalidateCachedResponseWithConditionalRequest"() {
+        given:
+        FIXER_SERVER.enqueue(latestRatesResponse().setHeader("Cache-Control", "no-cache")
+                                                  .setHeader("ETag", '"rates-v1"'))
+        FIXER_SERVER.enqueue(new MockResponse().setResponseCode(304))
+        final def first = fixerClient.getLatestExchangeRate("key", "USD")
+        FIXER_SERVER.takeRequest(1, TimeUnit.SECONDS)
+
+        when:
+        final def second = fixerClient.getLatestExchangeRate("key", "USD")
+
+        then:
+        FIXER_SERVER.takeRequest(1, TimeUnit.SECONDS).getHeader("If-None-Match") == '"rates-v1"'
+        second == first
+    }
+
+    private static MockResponse latestRatesResponse() {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(LATEST_RATES_BODY)
+    }
+}
@@ -0,0 +1,229 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.client.FixerClient
+import com.marcura.model.api.request.NewCurrencyExchange
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.model.api.response.ExchangeRateImportResult
+import com.marcura.model.api.response.ExchangeRateUpsertResult
+import com.marcura.model.flixer.LatestExchangeRate
+import com.marcura.service.CurrencyExchangeService
+import com.marcura.service.IngestionRunCoordinator
+import org.spockframework.spring.SpringBean
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.test.context.TestPropertySource
+
+import javax.sql.DataSource
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneOffset
+
+// repeated runs below must be told apart by scheduled time, not by the Fixer freshness window
+@TestPropertySource(properties = "api.fixer.latest-rates-freshness=PT0S")
+class IngestionRunIntegrationSpec extends BaseSpec {
+    private static final String JOB = "fixer-latest-exchange-rates"
+    private static final Instant SCHEDULED_AT = LocalDate.now(ZoneOffset.UTC).atTime(12, 5).toInstant(ZoneOffset.UTC)
+
+    @SpringBean
+    private FixerClient fixerClient = Mock()
+
+    @SpringBean
+    private Clock clock = Stub() {
+        instant() >> { firedAt }
+    }
+
+    private Instant firedAt
+
+    @Autowired
+    private CurrencyExchangeService currencyExchangeService
+
+    @Autowired
+    private IngestionRunCoordinator ingestionRunCoordinator
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private DataSource dataSource
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate, ingestion_run")
+        invalidateCaches()
+        firedAt = SCHEDULED_AT.plusSeconds(1)
+    }
+
+    def "shouldRecordScheduledIngestionAndRunItOncePerScheduledTime"() {
+        when:
+        currencyExchangeService.getLatestExchangeRate()
+        currencyExchangeService.getLatestExchangeRate()
+
+        then:
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >>
+                new LatestExchangeRate("USD", LocalDate.now(), ["EUR": 0.9G] as HashMap)
+        final def runs = jdbcTemplate.queryForList("SELECT * FROM ingestion_run")
+        runs.size() == 1
+        verifyAll(runs[0]) {
+            it.job == JOB
+            it.status == "SUCCEEDED"
+            it.inserted == 1
+            it.updated == 0
+            it.unchanged == 0
+            (it.currencies_from.array as List) == ["USD"]
+            (it.currencies_to.array as List) == ["EUR"]
+            it.latest_exchange_date.toLocalDate() == LocalDate.now()
+            it.finished_at != null
+        }
+        jdbcTemplate.queryForObject("SELECT scheduled_at FROM ingestion_run", Instant.class) == SCHEDULED_AT
+    }
+
+    def "shouldSkipScheduledIngestionFiredLaterThanMisfireTolerance"() {
+        given:
+        firedAt = SCHEDULED_AT.plus(Duration.ofHours(2))
+
+        when:
+        currencyExchangeService.getLatestExchangeRate()
+
+        then:
+        0 * fixerClient.getLatestExchangeRate(_, _)
+        jdbcTemplate.queryForObject("SELECT count(*) FROM ingestion_run", Long.class) == 0
+
+        when:
+        firedAt = SCHEDULED_AT.plus(Duration.ofMinutes(59))
+        currencyExchangeService.getLatestExchangeRate()
+
+        then:
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >>
+                new LatestExchangeRate("USD", LocalDate.now(), ["EUR": 0.9G] as HashMap)
+        jdbcTemplate.queryForObject("SELECT scheduled_at FROM ingestion_run", Instant.class) == SCHEDULED_AT
+    }
+
+    def "shouldSkipScheduledIngestionWhileAnotherInstanceHoldsTheLock"() {
+        given:
+        final def connection = dataSource.getConnection()
+        connection.createStatement().execute("SELECT pg_advisory_lock(hashtext('" + JOB + "'))")
+
+        when:
+        currencyExchangeService.getLatestExchangeRate()
+
+        then:
+        0 * fixerClient.getLatestExchangeRate(_, _)
+        jdbcTemplate.queryForObject("SELECT count(*) FROM ingestion_run", Long.class) == 0
+
+        cleanup:
+        connection.createStatement().execute("SELECT pg_advisory_unlock(hashtext('" + JOB + "'))")
+        connection.close()
+    }
+
+    def "shouldRetryFailedIngestionScheduledAtTheSameTime"() {
+        when:
+        currencyExchangeService.getLatestExchangeRate()
+
+        then:
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >> { throw new IllegalStateException("Fixer is down") }
+        thrown(IllegalStateException)
+        jdbcTemplate.queryForMap("SELECT status, error FROM ingestion_run") ==
+                [status: "FAILED", error: "java.lang.IllegalStateException: Fixer is down"]
+
+        when:
+        currencyExchangeService.getLatestExchangeRate()
+
+        then:
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >>
+                new LatestExchangeRate("USD", LocalDate.now(), ["EUR": 0.9G] as HashMap)
+        jdbcTemplate.queryForMap("SELECT status, error FROM ingestion_run") == [status: "SUCCEEDED", error: null]
+    }
+
+    def "shouldDropCachedRatesChangedByIngestionFinishedOnAnotherInstance"() {
+        given:
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'EUR', 0.8, '2023-01-01'),\n" +
+                                     "       ('USD', 'PLN', 3.7, '2023-01-01');")
+        final def cached = getExchange()
+        jdbcTemplate.execute("UPDATE currency_exchange_rate SET rate = 0.9 WHERE currency_to = 'EUR'")
+        insertRunFinishedElsewhere(JOB, "now()")
+
+        expect:
+        getExchange() == cached
+
+        when:
+        ingestionRunCoordinator.publishRunsFinishedElsewhere()
+
+        then:
+        getExchange() == new CurrencyExchange("EUR", "PLN", 3.99804475G)
+    }
+
+    def "shouldPublishRunCommittedAfterLaterFinishedRunOnlyOnce"() {
+        given:
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'EUR', 0.8, '2023-01-01'),\n" +
+                                     "       ('USD', 'PLN', 3.7, '2023-01-01');")
+        getExchange()
+        jdbcTemplate.execute("UPDATE currency_exchange_rate SET rate = 0.9 WHERE currency_to = 'EUR'")
+        insertRunFinishedElsewhere(JOB, "now()")
+        ingestionRunCoordinator.publishRunsFinishedElsewhere()
+        final def published = getExchange()
+
+        when:
+        jdbcTemplate.execute("UPDATE currency_exchange_rate SET rate = 1.0 WHERE currency_to = 'EUR'")
+        ingestionRunCoordinator.publishRunsFinishedElsewhere()
+
+        then:
+        published == new CurrencyExchange("EUR", "PLN", 3.99804475G)
+        getExchange() == published
+
+        when:
+        // stamped finished before the run already published, but committed after it
+        insertRunFinishedElsewhere("another-job", "now() - interval '10 seconds'")
+        ingestionRunCoordinator.publishRunsFinishedElsewhere()
+
+        then:
+        getExchange() == new CurrencyExchange("EUR", "PLN", 3.59825000G)
+    }
+
+    def "shouldRecordRequestedAndImportedChangesForOtherInstances"() {
+        given:
+        final def headers = new HttpHeaders()
+        headers.setContentType(MediaType.parseMediaType("text/csv"))
+
+        when:
+        final def putResponse = testRestTemplate.exchange(
+                "/exchange", HttpMethod.PUT,
+                new HttpEntity([new NewCurrencyExchange("USD", "PLN", 3.9G, LocalDate.of(2023, 1, 1))]),
+                ExchangeRateUpsertResult.class)
+        final def importResponse = testRestTemplate.postForEntity(
+                "/exchange/import", new HttpEntity<>("USD,CHF,0.95,2023-01-02\n", headers),
+                ExchangeRateImportResult.class)
+
+        then:
+        1 * fixerClient.getLatestExchangeRate(_ as String, _ as String) >>
+                new LatestExchangeRate("USD", LocalDate.now(), ["EUR": 0.9G] as HashMap)
+        putResponse.statusCode == HttpStatus.OK
+        importResponse.statusCode == HttpStatus.OK
+        jdbcTemplate.queryForList("SELECT job, status, currencies_to, earliest_exchange_date FROM ingestion_run " +
+                                          "ORDER BY id").collect {
+            [it.job, it.status, it.currencies_to.array as List, it.earliest_exchange_date.toLocalDate()]
+        } == [["requested-fixer-latest-exchange-rates", "SUCCEEDED", ["EUR"], LocalDate.now()],
+              ["requested-exchange-rates", "SUCCEEDED", ["PLN"], LocalDate.of(2023, 1, 1)],
+              ["exchange-rate-import", "SUCCEEDED", ["CHF"], LocalDate.of(2023, 1, 2)]]
+    }
+
+    private void insertRunFinishedElsewhere(String job, String finishedAt) {
+        jdbcTemplate.execute("INSERT INTO ingestion_run (job, scheduled_at, instance, status, finished_at,\n" +
+                                     "                           inserted, updated, unchanged, currencies_from,\n" +
+                                     "                           currencies_to, earliest_exchange_date, latest_exchange_date)\n" +
+                                     "VALUES ('" + job + "', now(), 'another-instance', 'SUCCEEDED', " + finishedAt + ",\n" +
+                                     "        0, 1, 1, '{USD}', '{EUR}', '2023-01-01', '2023-01-01')")
+    }
+
+    private CurrencyExchange getExchange() {
+        return testRestTemplate.getForObject("/exchange?from=EUR&to=PLN&date=2023-01-02", CurrencyExchange.class)
+    }
+}
@@ -0,0 +1,103 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.load.FixerStubServer
+import com.marcura.model.api.request.NewCurrencyExchange
+import com.marcura.service.ConversionMetrics
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+
+import java.time.Duration
+import java.time.LocalDate
+
+@AutoConfigureMetrics
+class MetricsIntegrationSpec extends BaseSpec {
+    private static final String PROMETHEUS_ENDPOINT = "/actuator/prometheus"
+    private static final FixerStubServer FIXER_STUB_SERVER = new FixerStubServer()
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private ConversionMetrics conversionMetrics
+
+    @DynamicPropertySource
+    static void fixerProperties(DynamicPropertyRegistry registry) {
+        FIXER_STUB_SERVER.start()
+        FIXER_STUB_SERVER.configure(["EUR": 0.81G, "PLN": 3.71G], Duration.ZERO)
+        registry.add("api.fixer.url", FIXER_STUB_SERVER::getUrl)
+    }
+
+    def cleanupSpec() {
+        FIXER_STUB_SERVER.close()
+    }
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+    }
+
+    def "shouldExposeConversionMetricsTaggedByPathAndOutcome"() {
+        given:
+        final def before = scrape()
+
+        when:
+        testRestTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=2023-01-02", String.class)
+        testRestTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=2023-01-02", String.class)
+        final def notFound = testRestTemplate.getForEntity("/exchange?from=EUR&to=ABC&date=2023-01-02", String.class)
+        conversionMetrics.publishHotCurrencyPairs()
+        final def after = scrape()
+
+        then:
+        notFound.statusCode == HttpStatus.NOT_FOUND
+        increase(before, after, "exchange_rate_conversion_seconds_count", [path: "matrix", outcome: "SUCCESS"]) == 1
+        increase(before, after, "exchange_rate_conversion_seconds_count",
+                 [path: "response_cache", outcome: "SUCCESS"]) == 1
+        increase(before, after, "exchange_rate_conversion_seconds_count", [path: "matrix", outcome: "NOT_FOUND"]) == 1
+        value(after, "exchange_rate_pair_conversions", [from: "EUR", to: "PLN"]) == 2
+        value(after, "exchange_rate_pair_conversions", [from: "EUR", to: "ABC"]) == null
+        value(after, "http_server_requests_seconds_count", [uri: "/exchange", outcome: "CLIENT_ERROR"]) >= 1
+        value(after, "hikaricp_connections_max", [:]) > 0
+    }
+
+    def "shouldExposeFixerRepositoryAndIngestionMetrics"() {
+        given:
+        final def before = scrape()
+        final def body = [new NewCurrencyExchange("USD", "JPY", 130G, LocalDate.of(2023, 1, 1))]
+
+        when:
+        final def response = testRestTemplate.exchange("/exchange", HttpMethod.PUT, new HttpEntity<>(body), String.class)
+        final def after = scrape()
+
+        then:
+        response.statusCode == HttpStatus.OK
+        increase(before, after, "feign_Client_seconds_count", [method: "getLatestExchangeRate"]) == 1
+        increase(before, after, "jdbc_repository_invocations_seconds_count", [method: "upsertExchangeRates"]) == 2
+        increase(before, after, "exchange_rate_ingestion_rows_sum", [source: "request", result: "inserted"]) == 1
+        increase(before, after, "exchange_rate_ingestion_rows_sum", [source: "fixer", result: "inserted"]) == 2
+    }
+
+    private String scrape() {
+        return testRestTemplate.getForObject(PROMETHEUS_ENDPOINT, String.class)
+    }
+
+    private static double increase(String before, String after, String name, Map<String, String> labels) {
+        return (value(after, name, labels) ?: 0) - (value(before, name, labels) ?: 0)
+    }
+
+    private static Double value(String scrape, String name, Map<String, String> labels) {
+        final def line = scrape.readLines().find { line ->
+            line.startsWith(name + "{") && labels.every { label, value -> line.contains(label + "=\"" + value + "\"") }
+        }
+        return line == null ? null : Double.valueOf(line.substring(line.lastIndexOf(' ') + 1))
+    }
+}
@@ -0,0 +1,196 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.configuration.ReplicaRoutingDataSource
+import com.marcura.model.api.response.CurrencyExchange
+import com.marcura.service.ExchangeRateUpsertService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.DriverManagerDataSource
+import org.springframework.test.annotation.DirtiesContext
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.test.context.TestPropertySource
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import org.testcontainers.containers.GenericContainer
+import org.testcontainers.containers.wait.strategy.Wait
+import org.testcontainers.utility.DockerImageName
+import spock.lang.Shared
+import spock.util.concurrent.PollingConditions
+
+import java.time.LocalDate
+
+import static com.marcura.service.ExchangeRateUpsertService.newExchangeRate
+
+// the health check is triggered by the features, the scheduled one only runs at startup
+@DirtiesContext
+@TestPropertySource(properties = [
+        "datasource.replicas.max-lag=PT2S",
+        "datasource.replicas.health-check-interval=PT1H",
+        "cache.exchange-rate.enabled=false",
+        "cache.cross-rate-matrix.enabled=false",
+        "cache.conversion-response.enabled=false"
+])
+class ReplicaRoutingIntegrationSpec extends BaseSpec {
+    private static final String GET_EXCHANGE_ENDPOINT = "/exchange?from=EUR&to=PLN&date=2023-01-01"
+    private static final LocalDate EXCHANGE_DATE = LocalDate.of(2023, 1, 1)
+    private static final String STANDBY_DIRECTORY = "/tmp/standby"
+
+    private static final def replicaContainer = new GenericContainer<>(DockerImageName.parse("postgres:12"))
+            .withNetwork(NETWORK)
+            .withExposedPorts(POSTGRESQL_PORT)
+            .withEnv("PGPASSWORD", postgreSQLContainer.getPassword())
+            .withCreateContainerCmdModifier { it.withEntrypoint("bash", "-c") }
+            .withCommand("until rm -rf $STANDBY_DIRECTORY && gosu postgres pg_basebackup -h $POSTGRES_ALIAS " +
+                                 "-U ${postgreSQLContainer.getUsername()} -D $STANDBY_DIRECTORY -R -X stream; " +
+                                 "do sleep 1; done; exec gosu postgres postgres -D $STANDBY_DIRECTORY")
+            .waitingFor(Wait.forLogMessage(".*ready to accept read.only connections.*", 1))
+
+    @Shared
+    private JdbcTemplate replicaJdbcTemplate
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource
+
+    @Autowired
+    private ExchangeRateUpsertService exchangeRateUpsertService
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private PlatformTransactionManager transactionManager
+
+    private final PollingConditions conditions = new PollingConditions(timeout: 10)
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("datasource.replicas.urls", () -> replicaJdbcUrl())
+    }
+
+    def cleanupSpec() {
+        replicaContainer.stop()
+    }
+
+    def setup() {
+        if (replicaJdbcTemplate == null) {
+            replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                    replicaJdbcUrl(), postgreSQLContainer.getUsername(), postgreSQLContainer.getPassword()))
+        }
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        final def primaryLsn = jdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text", String.class)
+        conditions.eventually {
+            assert replicaJdbcTemplate.queryForObject("SELECT pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn)",
+                                                      Boolean.class, primaryLsn)
+            replicaRoutingDataSource.checkReplicas()
+            // also waits out the primary reads after the rates changed in an earlier feature
+            assert readOnly { isInRecovery() }
+        }
+    }
+
+    def cleanup() {
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_resume()")
+    }
+
+    def "shouldRouteOnlyReadOnlyTransactionsToReplica"() {
+        expect:
+        replicaRoutingDataSource.healthyReplicas == 1
+        readOnly { isInRecovery() }
+        !new TransactionTemplate(transactionManager).execute { isInRecovery() }
+        !isInRecovery()
+    }
+
+    def "shouldServeConversionsFromReplica"() {
+        given:
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()")
+        // bypasses the change events, so only the primary sees the new rate until replay resumes
+        jdbcTemplate.update("UPDATE currency_exchange_rate SET rate = 4.0 WHERE currency_to = 'PLN'")
+
+        when:
+        final def exchange = testRestTemplate.getForObject(GET_EXCHANGE_ENDPOINT, CurrencyExchange.class)
+
+        then:
+        exchange.exchange() == 4.49781250G
+    }
+
+    def "shouldReadOwnWritesFromPrimaryWhileReplicaLags"() {
+        given:
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()")
+
+        when:
+        exchangeRateUpsertService.upsertExchangeRates([newExchangeRate("USD", "PLN", EXCHANGE_DATE, 4.0G)])
+
+        then:
+        replicaRoutingDataSource.healthyReplicas == 1
+        !readOnly { isInRecovery() }
+        testRestTemplate.getForObject(GET_EXCHANGE_ENDPOINT, CurrencyExchange.class).exchange() == 4.86250000G
+    }
+
+    def "shouldFallBackToPrimaryWhileReplicaLagsBehindMaxLag"() {
+        given:
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()")
+        jdbcTemplate.update("UPDATE currency_exchange_rate SET rate = 4.0 WHERE currency_to = 'PLN'")
+        Thread.sleep(2100)
+
+        when:
+        replicaRoutingDataSource.checkReplicas()
+
+        then:
+        replicaRoutingDataSource.healthyReplicas == 0
+        !readOnly { isInRecovery() }
+        testRestTemplate.getForObject(GET_EXCHANGE_ENDPOINT, CurrencyExchange.class).exchange() == 4.86250000G
+
+        when:
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_resume()")
+
+        then:
+        conditions.eventually {
+            replicaRoutingDataSource.checkReplicas()
+            assert replicaRoutingDataSource.healthyReplicas == 1
+        }
+    }
+
+    def "shouldFallBackToPrimaryOnceReplicaStoppedStreaming"() {
+        given:
+        // keeps the replica from reconnecting until the cleanup
+        replicaJdbcTemplate.execute("ALTER SYSTEM SET wal_retrieve_retry_interval = '1h'")
+        replicaJdbcTemplate.execute("SELECT pg_reload_conf()")
+        final def walReceiverPid = replicaJdbcTemplate.queryForObject("SELECT pid FROM pg_stat_wal_receiver",
+                                                                      Integer.class)
+
+        when:
+        replicaContainer.execInContainer("bash", "-c", "kill $walReceiverPid")
+
+        then:
+        conditions.eventually {
+            replicaRoutingDataSource.checkReplicas()
+            assert replicaRoutingDataSource.healthyReplicas == 0
+        }
+        !readOnly { isInRecovery() }
+
+        cleanup:
+        replicaJdbcTemplate.execute("ALTER SYSTEM RESET wal_retrieve_retry_interval")
+        replicaJdbcTemplate.execute("SELECT pg_reload_conf()")
+    }
+
+    private static String replicaJdbcUrl() {
+        replicaContainer.start()
+        return "jdbc:postgresql://${replicaContainer.getHost()}:${replicaContainer.getMappedPort(POSTGRESQL_PORT)}/" +
+                postgreSQLContainer.getDatabaseName()
+    }
+
+    private boolean isInRecovery() {
+        return jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class)
+    }
+
+    private <T> T readOnly(Closure<T> action) {
+        final def transactionTemplate = new TransactionTemplate(transactionManager)
+        transactionTemplate.setReadOnly(true)
+        return transactionTemplate.execute { action() }
+    }
+}
@@ -0,0 +1,102 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.load.FixerStubServer
+import com.marcura.model.api.request.NewCurrencyExchange
+import com.marcura.model.api.response.CurrencyExchange
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.transaction.support.TransactionTemplate
+
+import java.time.Duration
+import java.time.LocalDate
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class SingleFlightIntegrationSpec extends BaseSpec {
+    private static final FixerStubServer FIXER_STUB_SERVER = new FixerStubServer()
+    private static final int CONCURRENT_REQUESTS = 5
+
+    @Autowired
+    private TestRestTemplate testRestTemplate
+
+    @Autowired
+    private TransactionTemplate transactionTemplate
+
+    @Autowired
+    private MeterRegistry meterRegistry
+
+    private final def executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS)
+
+    @DynamicPropertySource
+    static void fixerProperties(DynamicPropertyRegistry registry) {
+        FIXER_STUB_SERVER.start()
+        // long enough for every concurrent PUT to arrive while the first fetch is in flight
+        FIXER_STUB_SERVER.configure(["EUR": 0.81G, "PLN": 3.71G], Duration.ofSeconds(1))
+        registry.add("api.fixer.url", FIXER_STUB_SERVER::getUrl)
+    }
+
+    def cleanupSpec() {
+        FIXER_STUB_SERVER.close()
+    }
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01'),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01');")
+        invalidateCaches()
+    }
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "shouldShareOneFixerFetchBetweenConcurrentAndRepeatedPuts"() {
+        given:
+        final def body = [new NewCurrencyExchange("USD", "JPY", 130G, LocalDate.of(2023, 1, 1))]
+        final def put = { testRestTemplate.exchange("/exchange", HttpMethod.PUT, new HttpEntity<>(body), String.class) }
+
+        when:
+        final def concurrentResponses = executor.invokeAll((1..CONCURRENT_REQUESTS).collect { put as Callable })*.get()
+        final def repeatedResponse = put()
+
+        then:
+        (concurrentResponses + repeatedResponse).every { it.statusCode == HttpStatus.OK }
+        FIXER_STUB_SERVER.latestRequests == 1
+        jdbcTemplate.queryForObject("SELECT count(*) FROM currency_exchange_rate WHERE exchange_date = current_date",
+                                    Long.class) == 2
+    }
+
+    def "shouldBuildOneCrossRateMatrixForConcurrentLookupsOfTheSameDate"() {
+        given:
+        final def builds = { ->
+            meterRegistry.find("jdbc.repository.invocations")
+                         .tag("method", "findAsOfExchangeRatesForAllCurrencies")
+                         .timer()?.count() ?: 0
+        }
+        final def buildsBefore = builds()
+        final def get = {
+            testRestTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=2023-01-02", CurrencyExchange.class)
+        }
+
+        when: "the first build is held up by a table lock until every lookup has arrived"
+        final def responses = transactionTemplate.execute {
+            jdbcTemplate.execute("LOCK TABLE currency_exchange_rate IN ACCESS EXCLUSIVE MODE")
+            final def futures = (1..CONCURRENT_REQUESTS).collect { executor.submit(get as Callable) }
+            Thread.sleep(1000)
+            futures
+        }*.get()
+
+        then:
+        responses.every { it.statusCode == HttpStatus.OK }
+        responses*.body.unique().size() == 1
+        builds() - buildsBefore == 1
+    }
+}
@@ -0,0 +1,84 @@
+package com.marcura.intergration
+
+import com.marcura.BaseSpec
+import com.marcura.Main
+import com.marcura.service.CrossRateMatrixCache
+import com.zaxxer.hikari.HikariDataSource
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.boot.availability.ApplicationAvailability
+import org.springframework.boot.availability.ReadinessState
+import org.springframework.boot.builder.SpringApplicationBuilder
+import org.springframework.boot.web.client.RestTemplateBuilder
+import org.springframework.context.ConfigurableApplicationContext
+import org.springframework.http.HttpStatus
+
+import java.time.Duration
+import java.time.LocalDate
+
+class StartupWarmupIntegrationSpec extends BaseSpec {
+    private static final LocalDate HOT_DATE = LocalDate.of(2023, 1, 1)
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.execute("INSERT INTO currency_exchange_rate " +
+                                     "(currency_from, currency_to, rate, exchange_date, access_counter)\n" +
+                                     "VALUES ('USD', 'PLN', 3.7, '2023-01-01', 10),\n" +
+                                     "       ('USD', 'EUR', 0.8, '2023-01-01', 5),\n" +
+                                     "       ('USD', 'PLN', 4.0, '2023-01-03', 0);")
+    }
+
+    def "shouldWarmUpPoolAndMostAccessedRatesBeforeReportingReady"() {
+        when:
+        final def cold = startInstance(false)
+        final def warm = startInstance(true)
+        println "Ready in ${cold.timeToReady.toMillis()} ms, first request in ${cold.firstRequest.toMillis()} ms " +
+                "without warmup and ready in ${warm.timeToReady.toMillis()} ms, first request in " +
+                "${warm.firstRequest.toMillis()} ms with it"
+
+        then:
+        cold.residentDates.isEmpty()
+        warm.residentDates.toSet() == [LocalDate.now(), HOT_DATE].toSet()
+        warm.openConnections >= warm.minimumIdle
+        warm.ready
+        // a cold instance reads the rates of its first conversion from the database, a warmed one has them at hand
+        cold.matricesBuiltByFirstRequest == 1
+        warm.matricesBuiltByFirstRequest == 0
+    }
+
+    /**
+     * Starts a second instance next to the one of the spec, measures how long it takes to report ready and to answer
+     * its first conversion, what was warmed up at the time it reported ready and what the first conversion built.
+     */
+    private static StartupMeasurement startInstance(boolean warmupEnabled) {
+        final def startedAt = System.nanoTime()
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(Main)
+                .profiles("test")
+                .run("--server.port=0", "--warmup.enabled=$warmupEnabled")
+        try {
+            final def timeToReady = Duration.ofNanos(System.nanoTime() - startedAt)
+            final def ready = context.getBean(ApplicationAvailability).readinessState ==
+                    ReadinessState.ACCEPTING_TRAFFIC
+            final def residentDates = List.copyOf(context.getBean(CrossRateMatrixCache).residentDates)
+            final def pool = context.getBean(HikariDataSource)
+            final def openConnections = pool.hikariPoolMXBean.totalConnections
+            final def builtMatrices = context.getBean(MeterRegistry).counter("exchange.rate.matrix.builds")
+            final def builtBeforeFirstRequest = builtMatrices.count()
+            final def restTemplate = new RestTemplateBuilder()
+                    .rootUri("http://localhost:${context.environment.getProperty("local.server.port")}")
+                    .build()
+            final def requestedAt = System.nanoTime()
+            final def response = restTemplate.getForEntity("/exchange?from=EUR&to=PLN&date=$HOT_DATE", String)
+            final def firstRequest = Duration.ofNanos(System.nanoTime() - requestedAt)
+            assert response.statusCode == HttpStatus.OK
+            return new StartupMeasurement(timeToReady, firstRequest, ready, residentDates, openConnections,
+                                          pool.minimumIdle, (int) (builtMatrices.count() - builtBeforeFirstRequest))
+        } finally {
+            context.close()
+        }
+    }
+
+    private record StartupMeasurement(Duration timeToReady, Duration firstRequest, boolean ready,
+                                      List<LocalDate> residentDates, int openConnections, int minimumIdle,
+                                      int matricesBuiltByFirstRequest) {
+    }
+}
@@ -0,0 +1,156 @@
+package com.marcura.load
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.marcura.BaseSpec
+import com.marcura.model.api.request.NewCurrencyExchange
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.context.annotation.Import
+import org.springframework.test.context.ActiveProfiles
+import spock.lang.Shared
+
+import java.math.RoundingMode
+import java.net.http.HttpRequest
+import java.nio.file.Files
+import java.nio.file.Paths
+import java.time.Duration
+import java.time.LocalDate
+import java.util.concurrent.ThreadLocalRandom
+
+/**
+ * Drives GET and PUT /exchange against the full stack with a seeded rate history and fails when latency or
+ * throughput regress past the objectives in application-load-test.yml. Only run by the load-test Maven profile.
+ */
+@ActiveProfiles("load-test")
+@Import(LoadTestConfiguration)
+class ExchangeRateLoadSpec extends BaseSpec {
+    private static final String REPORT_DIRECTORY = "target/load-test"
+    private static final int RECENT_DAYS = 30
+    private static final double RECENT_DATE_RATIO = 0.8
+
+    @Shared
+    private FixerStubServer fixerStubServer = new FixerStubServer()
+
+    @Autowired
+    private LoadTestProperties properties
+
+    @Autowired
+    private ObjectMapper objectMapper
+
+    @Value('${base-currency}')
+    private String baseCurrency
+
+    @LocalServerPort
+    private int port
+
+    private List<String> currencies
+
+    def setupSpec() {
+        fixerStubServer.start()
+        System.setProperty("api.fixer.url", fixerStubServer.url)
+    }
+
+    def cleanupSpec() {
+        System.clearProperty("api.fixer.url")
+        fixerStubServer.close()
+    }
+
+    def setup() {
+        jdbcTemplate.execute("TRUNCATE currency_exchange_rate")
+        jdbcTemplate.update("INSERT INTO currency_exchange_rate (currency_from, currency_to, rate, exchange_date)\n" +
+                                    "SELECT ?, c.currency,\n" +
+                                    "       round((c.rate * (1 + 0.1 * sin(d.n / 45.0 + c.phase) + 0.01 * random()))::numeric, 6),\n" +
+                                    "       d.exchange_date\n" +
+                                    "FROM (SELECT 'X' || chr(65 + i / 26 % 26) || chr(65 + i % 26) AS currency,\n" +
+                                    "             power(10, random() * 4 - 1) AS rate, random() * 6.28 AS phase\n" +
+                                    "      FROM generate_series(0, ? - 1) AS i) AS c\n" +
+                                    "CROSS JOIN (SELECT n, current_date - n AS exchange_date\n" +
+                                    "            FROM generate_series(1, ?) AS n) AS d\n" +
+                                    "WHERE extract(isodow FROM d.exchange_date) < 6",
+                            baseCurrency, properties.seed.currencies, properties.seed.days)
+        jdbcTemplate.execute("ANALYZE currency_exchange_rate")
+        invalidateCaches()
+
+        currencies = jdbcTemplate.queryForList(
+                "SELECT DISTINCT currency_to FROM currency_exchange_rate ORDER BY currency_to", String.class)
+        fixerStubServer.configure(currencies.collectEntries { [(it): randomRate()] }, properties.fixer.latency)
+        currencies.add(baseCurrency)
+    }
+
+    def "shouldMeetLatencyAndThroughputObjectivesUnderMixedLoad"() {
+        given:
+        final def slo = properties.slo
+        final def loadGenerator = new LoadGenerator(properties.concurrency, properties.putRatio, this::createRequest)
+
+        when:
+        final def result = loadGenerator.run(properties.warmup, properties.duration)
+        writeReport(result)
+
+        then:
+        result.errorRate <= slo.maxErrorRate
+        result.throughput >= slo.minThroughput
+        result.getLatency(LoadOperation.GET_EXCHANGE, 50) <= slo.get.p50
+        result.getLatency(LoadOperation.GET_EXCHANGE, 99) <= slo.get.p99
+        result.getLatency(LoadOperation.GET_EXCHANGE, 99.9) <= slo.get.p999
+        properties.putRatio == 0 || result.getLatency(LoadOperation.PUT_EXCHANGE, 50) <= slo.put.p50
+        properties.putRatio == 0 || result.getLatency(LoadOperation.PUT_EXCHANGE, 99) <= slo.put.p99
+        properties.putRatio == 0 || result.getLatency(LoadOperation.PUT_EXCHANGE, 99.9) <= slo.put.p999
+        properties.putRatio == 0 || fixerStubServer.latestRequests > 0
+    }
+
+    private HttpRequest createRequest(LoadOperation operation) {
+        switch (operation) {
+            case LoadOperation.GET_EXCHANGE:
+                final def from = randomCurrency()
+                def to = randomCurrency()
+                while (to == from) {
+                    to = randomCurrency()
+                }
+                return HttpRequest.newBuilder(uri("/exchange?from=%s&to=%s&date=%s".formatted(from, to, randomDate())))
+                                  .GET()
+                                  .build()
+            case LoadOperation.PUT_EXCHANGE:
+                final def exchangeRates = (1..properties.putBatchSize).collect {
+                    new NewCurrencyExchange(baseCurrency, currencies[ThreadLocalRandom.current().nextInt(currencies.size() - 1)],
+                                            randomRate(), randomDate())
+                }
+                return HttpRequest.newBuilder(uri("/exchange"))
+                                  .header("Content-Type", "application/json")
+                                  .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(exchangeRates)))
+                                  .build()
+        }
+        throw new IllegalArgumentException(operation.name())
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path)
+    }
+
+    private String randomCurrency() {
+        return currencies[ThreadLocalRandom.current().nextInt(currencies.size())]
+    }
+
+    private LocalDate randomDate() {
+        final def random = ThreadLocalRandom.current()
+        final def days = random.nextDouble() < RECENT_DATE_RATIO ? RECENT_DAYS : properties.seed.days
+        return LocalDate.now().minusDays(1 + random.nextInt(days))
+    }
+
+    private static BigDecimal randomRate() {
+        return BigDecimal.valueOf(ThreadLocalRandom.current().nextDouble(0.1, 1000)).setScale(6, RoundingMode.HALF_EVEN)
+    }
+
+    private static void writeReport(LoadGenerator.LoadResult result) {
+        final def directory = Files.createDirectories(Paths.get(REPORT_DIRECTORY))
+        final def summary = result.summary()
+        println(summary)
+        Files.writeString(directory.resolve("summary.txt"), summary)
+        result.latencies.each { operation, histogram ->
+            try (final def stream = new PrintStream(
+                    Files.newOutputStream(directory.resolve(operation.name().toLowerCase() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(stream, 1000d)
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.marcura.load
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+
+import java.time.Duration
+import java.time.LocalDate
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Local stand-in for the Fixer API that answers {@code /latest}, {@code /timeseries} and historical dates with a
+ * fixed set of rates after a configurable delay, so that PUT /exchange under load and backfills do not depend on
+ * the real service. Failures can be injected per requested start date.
+ */
+class FixerStubServer implements Closeable {
+    private final ObjectMapper objectMapper = new ObjectMapper()
+    private final MockWebServer server = new MockWebServer()
+    private final AtomicInteger latestRequests = new AtomicInteger()
+    private final Queue<String> historicalRequests = new ConcurrentLinkedQueue<>()
+    private final Map<String, AtomicInteger> remainingFailures = new ConcurrentHashMap<>()
+    private volatile int failureStatus
+    private volatile Map<String, BigDecimal> rates = [:]
+    private volatile Duration latency = Duration.ZERO
+
+    FixerStubServer() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return respond(request)
+            }
+        })
+    }
+
+    void start() {
+        server.start()
+    }
+
+    String getUrl() {
+        return server.url("/").toString()
+    }
+
+    void configure(Map<String, BigDecimal> rates, Duration latency) {
+        this.rates = Map.copyOf(rates)
+        this.latency = latency
+    }
+
+    int getLatestRequests() {
+        return latestRequests.get()
+    }
+
+    /**
+     * @return "start/end" of every timeseries request and the date of every historical one, in arrival order
+     */
+    List<String> getHistoricalRequests() {
+        return List.copyOf(historicalRequests)
+    }
+
+    void failRequests(LocalDate startDate, int times, int status) {
+        failureStatus = status
+        remainingFailures.put(startDate.toString(), new AtomicInteger(times))
+    }
+
+    void reset() {
+        latestRequests.set(0)
+        historicalRequests.clear()
+        remainingFailures.clear()
+    }
+
+    @Override
+    void close() {
+        server.shutdown()
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        final def url = request.requestUrl
+        final def base = url.queryParameter("base")
+        final def path = url.encodedPath()
+        if (path == "/latest") {
+            latestRequests.incrementAndGet()
+            return json([success: true, base: base, date: LocalDate.now().toString(), rates: rates])
+        }
+        if (path == "/timeseries") {
+            final def startDate = LocalDate.parse(url.queryParameter("start_date"))
+            final def endDate = LocalDate.parse(url.queryParameter("end_date"))
+            historicalRequests.add("$startDate/$endDate".toString())
+            if (shouldFail(startDate)) {
+                return failure()
+            }
+            final def timeseriesRates = startDate.datesUntil(endDate.plusDays(1)).toList()
+                                                 .collectEntries { [(it.toString()): rates] }
+            return json([success: true, timeseries: true, start_date: startDate.toString(),
+                         end_date: endDate.toString(), base: base, rates: timeseriesRates])
+        }
+        if (path ==~ /\/\d{4}-\d{2}-\d{2}/) {
+            final def date = LocalDate.parse(path.substring(1))
+            historicalRequests.add(date.toString())
+            if (shouldFail(date)) {
+                return failure()
+            }
+            return json([success: true, historical: true, base: base, date: date.toString(), rates: rates])
+        }
+        return new MockResponse().setResponseCode(404)
+    }
+
+    private boolean shouldFail(LocalDate startDate) {
+        final def failures = remainingFailures.get(startDate.toString())
+        return failures != null && failures.getAndDecrement() > 0
+    }
+
+    /**
+     * Throttles the way Fixer does, telling when to retry, which Feign clients take as a reason to retry on their own.
+     */
+    private MockResponse failure() {
+        final def response = new MockResponse().setResponseCode(failureStatus)
+        return failureStatus == 429 ? response.setHeader("Retry-After", "0") : response
+    }
+
+    private MockResponse json(Map body) {
+        return new MockResponse().setHeader("Content-Type", "application/json")
+                                 .setBody(objectMapper.writeValueAsString(body))
+                                 .setHeadersDelay(latency.toMillis(), TimeUnit.MILLISECONDS)
+    }
+}
@@ -0,0 +1,154 @@
+package com.marcura.load
+
+import groovy.transform.CompileStatic
+import org.HdrHistogram.Histogram
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.time.Duration
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+/**
+ * Closed-loop load generator: every worker sends its next request as soon as the previous one completes. Requests
+ * sent during the warmup are not recorded. Latencies are recorded in microseconds per {@link LoadOperation}.
+ */
+@CompileStatic
+class LoadGenerator {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1)
+    private static final int SIGNIFICANT_DIGITS = 3
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+                                                    .version(HttpClient.Version.HTTP_1_1)
+                                                    .connectTimeout(Duration.ofSeconds(5))
+                                                    .build()
+    private final int concurrency
+    private final double putRatio
+    private final Function<LoadOperation, HttpRequest> requestFactory
+
+    LoadGenerator(int concurrency, double putRatio, Function<LoadOperation, HttpRequest> requestFactory) {
+        this.concurrency = concurrency
+        this.putRatio = putRatio
+        this.requestFactory = requestFactory
+    }
+
+    LoadResult run(Duration warmup, Duration duration) {
+        final long measureFrom = System.nanoTime() + warmup.toNanos()
+        final long measureUntil = measureFrom + duration.toNanos()
+        final def workers = (0..<concurrency).collect { int i -> new Worker(measureFrom, measureUntil) }
+        final def threads = workers.withIndex().collect { Worker worker, int i ->
+            final def thread = new Thread(worker, "load-generator-" + i)
+            thread.start()
+            thread
+        }
+        threads.each { Thread thread -> thread.join() }
+
+        final def result = new LoadResult(duration)
+        workers.each { Worker worker -> result.add(worker) }
+        return result
+    }
+
+    private LoadOperation nextOperation() {
+        return ThreadLocalRandom.current().nextDouble() < putRatio ? LoadOperation.PUT_EXCHANGE
+                                                                   : LoadOperation.GET_EXCHANGE
+    }
+
+    private final class Worker implements Runnable {
+        final EnumMap<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation)
+        final EnumMap<LoadOperation, Long> errors = new EnumMap<>(LoadOperation)
+        private final long measureFrom
+        private final long measureUntil
+
+        Worker(long measureFrom, long measureUntil) {
+            this.measureFrom = measureFrom
+            this.measureUntil = measureUntil
+            for (final operation in LoadOperation.values()) {
+                latencies.put(operation, new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS))
+                errors.put(operation, 0L)
+            }
+        }
+
+        @Override
+        void run() {
+            long start
+            while ((start = System.nanoTime()) < measureUntil) {
+                final def operation = nextOperation()
+                final def failed = !send(requestFactory.apply(operation))
+                if (start >= measureFrom) {
+                    final def micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)
+                    latencies.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS))
+                    if (failed) {
+                        errors.put(operation, errors.get(operation) + 1)
+                    }
+                }
+            }
+        }
+
+        private boolean send(HttpRequest request) {
+            try {
+                final def response = httpClient.send(request, HttpResponse.BodyHandlers.discarding())
+                return response.statusCode() < 400
+            } catch (IOException ignored) {
+                return false
+            }
+        }
+    }
+
+    static class LoadResult {
+        final Duration duration
+        final EnumMap<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation)
+        final EnumMap<LoadOperation, Long> errors = new EnumMap<>(LoadOperation)
+
+        LoadResult(Duration duration) {
+            this.duration = duration
+            for (final operation in LoadOperation.values()) {
+                latencies.put(operation, new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS))
+                errors.put(operation, 0L)
+            }
+        }
+
+        private void add(Worker worker) {
+            for (final operation in LoadOperation.values()) {
+                latencies.get(operation).add(worker.latencies.get(operation))
+                errors.put(operation, errors.get(operation) + worker.errors.get(operation))
+            }
+        }
+
+        long getRequests() {
+            return latencies.values().sum { Histogram histogram -> histogram.totalCount } as long
+        }
+
+        double getThroughput() {
+            return requests * 1000d / duration.toMillis()
+        }
+
+        double getErrorRate() {
+            return requests == 0 ? 1d : (errors.values().sum() as long) / (double) requests
+        }
+
+        Duration getLatency(LoadOperation operation, double percentile) {
+            return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(
+                    latencies.get(operation).getValueAtPercentile(percentile)))
+        }
+
+        String summary() {
+            final def summary = new StringBuilder()
+            summary.append(String.format("%-14s %10s %8s %10s %10s %10s %10s%n",
+                                         "operation", "requests", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms"))
+            for (final operation in LoadOperation.values()) {
+                final def histogram = latencies.get(operation)
+                summary.append(String.format("%-14s %10d %8d %10.3f %10.3f %10.3f %10.3f%n",
+                                             operation, histogram.totalCount, errors.get(operation),
+                                             histogram.getValueAtPercentile(50) / 1000d,
+                                             histogram.getValueAtPercentile(99) / 1000d,
+                                             histogram.getValueAtPercentile(99.9d) / 1000d,
+                                             histogram.maxValue / 1000d))
+            }
+            summary.append(String.format("throughput %.1f requests/s over %s, error rate %.5f%n",
+                                         throughput, duration, errorRate))
+            return summary.toString()
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.marcura.load
+
+enum LoadOperation {
+    GET_EXCHANGE,
+    PUT_EXCHANGE
+}
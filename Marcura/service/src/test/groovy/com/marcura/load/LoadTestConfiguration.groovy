@@ -0,0 +1,9 @@
+package com.marcura.load
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties
+import org.springframework.boot.test.context.TestConfiguration
+
+@TestConfiguration
+@EnableConfigurationProperties(LoadTestProperties)
+class LoadTestConfiguration {
+}
@@ -0,0 +1,39 @@
+package com.marcura.load
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+import java.time.Duration
+
+@ConfigurationProperties("load-test")
+class LoadTestProperties {
+    Seed seed = new Seed()
+    Fixer fixer = new Fixer()
+    int concurrency
+    Duration warmup
+    Duration duration
+    double putRatio
+    int putBatchSize
+    Slo slo = new Slo()
+
+    static class Seed {
+        int currencies
+        int days
+    }
+
+    static class Fixer {
+        Duration latency
+    }
+
+    static class Slo {
+        double minThroughput
+        double maxErrorRate
+        Latency get = new Latency()
+        Latency put = new Latency()
+    }
+
+    static class Latency {
+        Duration p50
+        Duration p99
+        Duration p999
+    }
+}
@@ -0,0 +1,141 @@
+package com.marcura.service
+
+import spock.lang.Specification
+
+import java.math.RoundingMode
+
+class ExchangeRateCalculatorSpec extends Specification {
+    private static final int SAMPLES = 100_000
+    private static final long SEED = 20_230_101L
+
+    def "shouldAgreeWithBigDecimalReferenceForRatesOfUsualMagnitudes"() {
+        given:
+        final def random = new Random(SEED)
+
+        expect:
+        SAMPLES.times {
+            // 0.0001 to 1 000 000, spread evenly over the orders of magnitude
+            final long rateFrom = randomRate(random, 3, 12)
+            final long rateTo = randomRate(random, 3, 12)
+            final int spreadFrom = random.nextInt(10_000)
+            final int spreadTo = random.nextInt(10_000)
+            final def expected = reference(rateFrom, rateTo, spreadFrom, spreadTo)
+            final def unscaled = ExchangeRateCalculator.calculateUnscaledExchange(rateFrom, rateTo, spreadFrom,
+                                                                                  spreadTo)
+            assert BigDecimal.valueOf(unscaled, ExchangeRateCalculator.EXCHANGE_SCALE).equals(expected):
+                    "$rateFrom -> $rateTo, spreads $spreadFrom/$spreadTo"
+            assert ExchangeRateCalculator.calculateExchange(rateFrom, rateTo, spreadFrom, spreadTo).equals(expected)
+        }
+    }
+
+    def "shouldFallBackToBigDecimalWhenExchangeDoesNotFitInLong"() {
+        given:
+        final def random = new Random(SEED)
+        def overflows = 0
+
+        expect:
+        SAMPLES.times {
+            final long rateFrom = randomRate(random, 1, 18)
+            final long rateTo = randomRate(random, 1, 18)
+            final int spread = random.nextInt(10_000)
+            final def expected = reference(rateFrom, rateTo, spread, spread)
+            try {
+                final def unscaled = ExchangeRateCalculator.calculateUnscaledExchange(rateFrom, rateTo, spread, spread)
+                assert BigDecimal.valueOf(unscaled, ExchangeRateCalculator.EXCHANGE_SCALE).equals(expected):
+                        "$rateFrom -> $rateTo, spread $spread"
+            } catch (ArithmeticException ignored) {
+                overflows++
+            }
+            assert ExchangeRateCalculator.calculateExchange(rateFrom, rateTo, spread, spread).equals(expected):
+                    "$rateFrom -> $rateTo, spread $spread"
+        }
+        overflows > 0
+    }
+
+    def "shouldDivideLikeBigDecimalWithHalfEvenRounding"() {
+        given:
+        final def random = new Random(SEED)
+
+        expect:
+        SAMPLES.times {
+            final long dividend = random.nextLong() >> random.nextInt(64)
+            final long divisor = (random.nextLong() >> random.nextInt(64)) ?: 1L
+            final int scale = random.nextInt(FixedPointRate.SCALE + 1)
+            final def expected = BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), scale,
+                                                                     RoundingMode.HALF_EVEN)
+            final def fits = expected.unscaledValue().bitLength() < Long.SIZE
+            try {
+                final def quotient = FixedPointRate.divide(dividend, divisor, scale)
+                assert fits && quotient == expected.unscaledValue().longValue(): "$dividend / $divisor at scale $scale"
+            } catch (ArithmeticException ignored) {
+                // the quotient or a partial remainder does not fit in a long
+                assert !fits || Math.abs(divisor) > Long.MAX_VALUE / 10: "$dividend / $divisor at scale $scale"
+            }
+        }
+    }
+
+    def "shouldRoundTiesToEven"() {
+        expect:
+        FixedPointRate.divide(dividend, divisor, scale) == quotient
+
+        where:
+        dividend | divisor | scale || quotient
+        5        | 2       | 0     || 2
+        15       | 2       | 0     || 8
+        -5       | 2       | 0     || -2
+        -15      | 2       | 0     || -8
+        1        | 8       | 2     || 12
+        3        | 8       | 2     || 38
+        2        | 3       | 4     || 6667
+        -2       | 3       | 4     || -6667
+    }
+
+    def "shouldKeepFixedPointRatesExact"() {
+        expect:
+        FixedPointRate.of(rate) == fixedPointRate
+        FixedPointRate.toBigDecimal(fixedPointRate) == rate
+
+        where:
+        rate                     || fixedPointRate
+        new BigDecimal("1")      || FixedPointRate.ONE
+        new BigDecimal("3.7")    || 3_700_000L
+        new BigDecimal("0.0001") || 100L
+        FixedPointRate.MAX_VALUE || Long.MAX_VALUE
+    }
+
+    def "shouldRejectRatesThatDoNotFitFixedPoint"() {
+        when:
+        FixedPointRate.of(rate)
+
+        then:
+        thrown(ArithmeticException)
+
+        where:
+        rate << [new BigDecimal("0.0000001"), FixedPointRate.MAX_VALUE + 0.000001G]
+    }
+
+    def "shouldConvertSpreadPercentagesToBasisPoints"() {
+        expect:
+        ExchangeRateCalculator.toBasisPoints(percentage) == basisPoints
+
+        where:
+        percentage              || basisPoints
+        new BigDecimal("0.0")   || 0
+        new BigDecimal("2.75")  || 275
+        new BigDecimal("6")     || 600
+        new BigDecimal("99.99") || 9999
+    }
+
+    private static long randomRate(Random random, int minDigits, int maxDigits) {
+        final def digits = minDigits + random.nextInt(maxDigits - minDigits + 1)
+        final def lowerBound = (long) Math.pow(10, digits - 1)
+        return lowerBound + Math.floorMod(random.nextLong(), lowerBound * 9)
+    }
+
+    private static BigDecimal reference(long rateFrom, long rateTo, int spreadFrom, int spreadTo) {
+        final def quotient = BigDecimal.valueOf(rateTo, FixedPointRate.SCALE)
+                                       .divide(BigDecimal.valueOf(rateFrom, FixedPointRate.SCALE), 4,
+                                               RoundingMode.HALF_EVEN)
+        return quotient * BigDecimal.valueOf(10_000 - Math.max(spreadFrom, spreadTo), 4)
+    }
+}
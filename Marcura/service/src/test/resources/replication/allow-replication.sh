@@ -0,0 +1,3 @@
+#!/bin/bash
+# lets ReplicaRoutingIntegrationSpec clone the database into a streaming replica with pg_basebackup
+echo "host replication all all md5" >> "$PGDATA/pg_hba.conf"